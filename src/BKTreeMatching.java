@@ -0,0 +1,276 @@
+// Copyright (c) 2013 Gratian Lup. All rights reserved.
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are
+// met:
+//
+// * Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+//
+// * Redistributions in binary form must reproduce the above
+// copyright notice, this list of conditions and the following
+// disclaimer in the documentation and/or other materials provided
+// with the distribution.
+//
+// * The name "FuzzyStringMatching" must not be used to endorse or promote
+// products derived from this software without prior written permission.
+//
+// * Products derived from this software may not be called "FuzzyStringMatching" nor
+// may "FuzzyStringMatching" appear in their names without prior written
+// permission of the author.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+// A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+// OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+// SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+// LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+// DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+// Finds the matching words using a BK-tree ("Some approaches to best-match
+// file searching" by W. Burkhard, R. Keller), a metric tree built using the
+// Levenshtein distance. Each node holds a word, and the children are grouped
+// by their distance to it. By the triangle inequality, only the children
+// whose distance is within K of the query distance must be searched.
+// Unlike the trie, it does not depend on the words sharing prefixes,
+// which makes it an alternative for long words such as codes and IDs.
+public class BKTreeMatching implements MatchingEngine {
+    // Below this number of words the distances are computed by a single task.
+    private static final int MIN_PARALLEL_WORDS = 8192;
+    private static final int TASK_WORDS = 4096;
+
+    // A group of words that still must be added below a node.
+    private static class PendingGroup {
+        public int nodeId;     // The node created for the group.
+        public IntList words;  // The first word is stored in the node.
+
+        public PendingGroup(int nodeId, IntList words) {
+            this.nodeId = nodeId;
+            this.words = words;
+        }
+    }
+
+
+    private String[] words;
+    private int maxError;
+    private ExecutorService executor;
+
+    // The tree is stored in arrays, similar to CompactTrie. The children
+    // of a node are stored one after another, sorted by distance.
+    private IntList nodeWords;       // The ordinal of the word stored in each node.
+    private IntList firstChildren;   // The index of the first child, -1 if none.
+    private IntList childrenCount;
+    private IntList children;
+    private IntList childrenDistances;
+
+    public BKTreeMatching(List<String> words, int maxError, ExecutorService executor) {
+        if(words == null) {
+            throw new IllegalArgumentException("Word list is null");
+        }
+
+        // A word appearing multiple times in the list is stored once,
+        // so that it is found only once, like in the trie.
+        Set<String> distinctWords = new LinkedHashSet<String>(words);
+        this.words = distinctWords.toArray(new String[distinctWords.size()]);
+        this.maxError = maxError;
+        this.executor = executor;
+        this.nodeWords = new IntList(this.words.length);
+        this.firstChildren = new IntList(this.words.length);
+        this.childrenCount = new IntList(this.words.length);
+        this.children = new IntList(this.words.length);
+        this.childrenDistances = new IntList(this.words.length);
+        buildTree();
+    }
+
+    public BKTreeMatching(List<String> words, int maxError) {
+        this(words, maxError, null);
+    }
+
+    @Override
+    public int getMaxError() {
+        return maxError;
+    }
+
+    @Override
+    public DistanceModel getDistanceModel() {
+        return DistanceModel.LEVENSHTEIN;
+    }
+
+    @Override
+    public double estimateCost(String word, DictionaryStatistics statistics) {
+        // The fraction of visited nodes grows quickly with the maximum error
+        // (about 10% for one error, more than a third for two errors).
+        double visitedFraction = Math.min(1.0, 0.08 * maxError * maxError + 0.02);
+        return getNodeCount() * visitedFraction * Math.max(1, word.length());
+    }
+
+    public int getNodeCount() {
+        return nodeWords.size();
+    }
+
+    private int addNode(int wordOrdinal) {
+        nodeWords.add(wordOrdinal);
+        firstChildren.add(-1);
+        childrenCount.add(0);
+        return nodeWords.size() - 1;
+    }
+
+    private void buildTree() {
+        if(words.length == 0) {
+            return;
+        }
+
+        // The tree is built top-down: the words of a group are split by their
+        // distance to the first word, which becomes the node, and each
+        // resulting group becomes a child. The distances of the large groups
+        // near the root, where most of the time is spent, are computed in parallel.
+        IntList allWords = new IntList(words.length);
+
+        for(int i = 0; i < words.length; i++) {
+            allWords.add(i);
+        }
+
+        List<PendingGroup> worklist = new ArrayList<PendingGroup>();
+        worklist.add(new PendingGroup(addNode(0), allWords));
+
+        while(!worklist.isEmpty()) {
+            PendingGroup group = worklist.remove(worklist.size() - 1);
+
+            if(group.words.size() == 1) {
+                continue;
+            }
+
+            int[] distances = computeDistances(group.words);
+            int maxDistance = 0;
+
+            for(int i = 1; i < distances.length; i++) {
+                maxDistance = Math.max(maxDistance, distances[i]);
+            }
+
+            // Split the words by distance, preserving their order.
+            IntList[] childGroups = new IntList[maxDistance + 1];
+
+            for(int i = 1; i < distances.length; i++) {
+                if(childGroups[distances[i]] == null) {
+                    childGroups[distances[i]] = new IntList();
+                }
+
+                childGroups[distances[i]].add(group.words.get(i));
+            }
+
+            // Create the child nodes, stored one after another.
+            int childCount = 0;
+            firstChildren.set(group.nodeId, children.size());
+
+            for(int distance = 0; distance <= maxDistance; distance++) {
+                if(childGroups[distance] != null) {
+                    int childId = addNode(childGroups[distance].get(0));
+                    children.add(childId);
+                    childrenDistances.add(distance);
+                    worklist.add(new PendingGroup(childId, childGroups[distance]));
+                    childCount++;
+                }
+            }
+
+            childrenCount.set(group.nodeId, childCount);
+        }
+    }
+
+    // Computes the distance from the first word in the group to the other words.
+    private int[] computeDistances(final IntList group) {
+        final int[] distances = new int[group.size()];
+
+        if(executor == null || group.size() < MIN_PARALLEL_WORDS) {
+            computeDistances(group, 1, group.size(), distances);
+            return distances;
+        }
+
+        List<Future<Void>> results = new ArrayList<Future<Void>>();
+
+        for(int start = 1; start < group.size(); start += TASK_WORDS) {
+            final int taskStart = start;
+            final int taskEnd = Math.min(group.size(), start + TASK_WORDS);
+
+            results.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    computeDistances(group, taskStart, taskEnd, distances);
+                    return null;
+                }
+            }));
+        }
+
+        try {
+            for(Future<Void> result : results) {
+                result.get();
+            }
+        }
+        catch(InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while building the BK-tree", ex);
+        }
+        catch(ExecutionException ex) {
+            throw new RuntimeException("Failed to build the BK-tree", ex.getCause());
+        }
+
+        return distances;
+    }
+
+    private void computeDistances(IntList group, int start, int end, int[] distances) {
+        LevenshteinDistance.PatternMask mask =
+                new LevenshteinDistance.PatternMask(words[group.get(0)]);
+
+        for(int i = start; i < end; i++) {
+            distances[i] = mask.computeDistance(words[group.get(i)]);
+        }
+    }
+
+    @Override
+    public List<String> findMatchingWords(String word) {
+        List<String> matchingWords = new ArrayList<String>();
+
+        if(nodeWords.size() == 0) {
+            return matchingWords;
+        }
+
+        LevenshteinDistance.PatternMask mask = new LevenshteinDistance.PatternMask(word);
+        IntList worklist = new IntList();
+        worklist.add(0);
+
+        while(worklist.size() > 0) {
+            int nodeId = worklist.removeLast();
+            String nodeWord = words[nodeWords.get(nodeId)];
+            int distance = mask.computeDistance(nodeWord);
+
+            if(distance <= maxError) {
+                matchingWords.add(nodeWord);
+            }
+
+            // Only the children having a distance in the range
+            // [distance - maxError, distance + maxError] can contain matching words.
+            int firstChild = firstChildren.get(nodeId);
+            int childCount = childrenCount.get(nodeId);
+
+            for(int i = firstChild; i < firstChild + childCount; i++) {
+                int childDistance = childrenDistances.get(i);
+
+                if(childDistance > distance + maxError) {
+                    break; // The children are sorted by distance.
+                }
+                else if(childDistance >= distance - maxError) {
+                    worklist.add(children.get(i));
+                }
+            }
+        }
+
+        return matchingWords;
+    }
+}
@@ -0,0 +1,198 @@
+// Copyright (c) 2013 Gratian Lup. All rights reserved.
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are
+// met:
+//
+// * Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+//
+// * Redistributions in binary form must reproduce the above
+// copyright notice, this list of conditions and the following
+// disclaimer in the documentation and/or other materials provided
+// with the distribution.
+//
+// * The name "FuzzyStringMatching" must not be used to endorse or promote
+// products derived from this software without prior written permission.
+//
+// * Products derived from this software may not be called "FuzzyStringMatching" nor
+// may "FuzzyStringMatching" appear in their names without prior written
+// permission of the author.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+// A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+// OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+// SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+// LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+// DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+// Finds the matching words by comparing the query word against every
+// dictionary word having a compatible length. Useful as a baseline
+// when measuring the other engines, and as the fastest option
+// for very small dictionaries, where building a trie is not worth it.
+public class BruteForceMatching implements MatchingEngine {
+    // Below this number of candidates the search is not split into tasks.
+    private static final int MIN_PARALLEL_CANDIDATES = 16384;
+
+    // The words having the same length are stored one after another
+    // in a single array, avoiding a String object for each of them.
+    private char[][] lengthBuckets;
+    private int[] lengthBucketSizes; // Number of words in each bucket.
+    private int maxError;
+    private ExecutorService executor;
+
+    public BruteForceMatching(List<String> words, int maxError, ExecutorService executor) {
+        if(words == null) {
+            throw new IllegalArgumentException("Word list is null");
+        }
+
+        this.maxError = maxError;
+        this.executor = executor;
+
+        // A word appearing multiple times in the list is stored once,
+        // so that it is found only once, like in the trie.
+        buildLengthBuckets(new ArrayList<String>(new LinkedHashSet<String>(words)));
+    }
+
+    public BruteForceMatching(List<String> words, int maxError) {
+        this(words, maxError, null);
+    }
+
+    private void buildLengthBuckets(List<String> words) {
+        int maxLength = 0;
+
+        for(String word : words) {
+            maxLength = Math.max(maxLength, word.length());
+        }
+
+        // Count the words of each length first so that
+        // the buckets can be allocated with the exact size.
+        lengthBucketSizes = new int[maxLength + 1];
+
+        for(String word : words) {
+            lengthBucketSizes[word.length()]++;
+        }
+
+        lengthBuckets = new char[maxLength + 1][];
+        int[] positions = new int[maxLength + 1];
+
+        for(int length = 0; length <= maxLength; length++) {
+            lengthBuckets[length] = new char[lengthBucketSizes[length] * length];
+        }
+
+        for(String word : words) {
+            int length = word.length();
+            word.getChars(0, length, lengthBuckets[length], positions[length]);
+            positions[length] += length;
+        }
+    }
+
+    @Override
+    public int getMaxError() {
+        return maxError;
+    }
+
+    @Override
+    public DistanceModel getDistanceModel() {
+        return DistanceModel.LEVENSHTEIN;
+    }
+
+    @Override
+    public double estimateCost(String word, DictionaryStatistics statistics) {
+        // Each letter of a candidate is one step of the bit-parallel algorithm.
+        int candidateCount = statistics.getWordCount(word.length() - maxError,
+                                                     word.length() + maxError);
+        int blockCount = 1 + word.length() / 64;
+        return (double)candidateCount * word.length() * blockCount;
+    }
+
+    private void findMatchingWordsInBucket(LevenshteinDistance.PatternMask mask, int length,
+                                           List<String> matchingWords) {
+        char[] bucket = lengthBuckets[length];
+        int wordCount = lengthBucketSizes[length];
+
+        for(int i = 0; i < wordCount; i++) {
+            int offset = i * length;
+
+            if(mask.computeDistance(bucket, offset, length) <= maxError) {
+                matchingWords.add(new String(bucket, offset, length));
+            }
+        }
+    }
+
+    private List<String> findMatchingWordsParallel(final String word, int minLength, int maxLength) {
+        // Each bucket is searched by a separate task, using its own
+        // pattern masks, since these are not safe to share between threads.
+        List<Future<List<String>>> results = new ArrayList<Future<List<String>>>();
+
+        for(int length = minLength; length <= maxLength; length++) {
+            if(lengthBucketSizes[length] == 0) {
+                continue;
+            }
+
+            final int bucketLength = length;
+            results.add(executor.submit(new Callable<List<String>>() {
+                @Override
+                public List<String> call() {
+                    List<String> bucketWords = new ArrayList<String>();
+                    LevenshteinDistance.PatternMask mask = new LevenshteinDistance.PatternMask(word);
+                    findMatchingWordsInBucket(mask, bucketLength, bucketWords);
+                    return bucketWords;
+                }
+            }));
+        }
+
+        List<String> matchingWords = new ArrayList<String>();
+
+        try {
+            for(Future<List<String>> result : results) {
+                matchingWords.addAll(result.get());
+            }
+        }
+        catch(InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while searching for matching words", ex);
+        }
+        catch(ExecutionException ex) {
+            throw new RuntimeException("Failed to search for matching words", ex.getCause());
+        }
+
+        return matchingWords;
+    }
+
+    @Override
+    public List<String> findMatchingWords(String word) {
+        // Only words with a length difference of at most 'maxError' can match.
+        int minLength = Math.max(0, word.length() - maxError);
+        int maxLength = Math.min(lengthBuckets.length - 1, word.length() + maxError);
+        int candidateCount = 0;
+
+        for(int length = minLength; length <= maxLength; length++) {
+            candidateCount += lengthBucketSizes[length];
+        }
+
+        if(executor != null && candidateCount >= MIN_PARALLEL_CANDIDATES) {
+            return findMatchingWordsParallel(word, minLength, maxLength);
+        }
+
+        List<String> matchingWords = new ArrayList<String>();
+        LevenshteinDistance.PatternMask mask = new LevenshteinDistance.PatternMask(word);
+
+        for(int length = minLength; length <= maxLength; length++) {
+            findMatchingWordsInBucket(mask, length, matchingWords);
+        }
+
+        return matchingWords;
+    }
+}
@@ -0,0 +1,334 @@
+// Copyright (c) 2013 Gratian Lup. All rights reserved.
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are
+// met:
+//
+// * Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+//
+// * Redistributions in binary form must reproduce the above
+// copyright notice, this list of conditions and the following
+// disclaimer in the documentation and/or other materials provided
+// with the distribution.
+//
+// * The name "FuzzyStringMatching" must not be used to endorse or promote
+// products derived from this software without prior written permission.
+//
+// * Products derived from this software may not be called "FuzzyStringMatching" nor
+// may "FuzzyStringMatching" appear in their names without prior written
+// permission of the author.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+// A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+// OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+// SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+// LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+// DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// A path-compressed variant of CompactTrie: a chain of nodes having a single
+// child and not ending a word is replaced by one edge labeled with all the
+// letters of the chain (a radix trie). The labels are stored in a single
+// array of letters shared by all edges. For long words this reduces the number
+// of nodes a lot, and a search can process all the letters of an edge in a loop
+// (see FuzzyMatching). To be usable by the code working one letter at a time,
+// the proxy nodes can also represent a position inside an edge label.
+public class CompactRadixTrie extends Trie {
+    // Used to create links into the main trie. If 'edgeId' is -1
+    // the proxy represents the node, otherwise the position
+    // after the first 'offset' letters of the edge label.
+    public class CompactRadixTrieProxy extends Trie {
+        private CompactRadixTrie trie;
+        private int nodeId;
+        private int edgeId;
+        private int offset;
+
+        public CompactRadixTrieProxy(CompactRadixTrie trie, int nodeId, int edgeId, int offset) {
+            this.trie = trie;
+            this.nodeId = nodeId;
+            this.edgeId = edgeId;
+            this.offset = offset;
+        }
+
+        @Override
+        public void addWords(List<String> words) {
+            // This is just a proxy for an already created trie.
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public TrieChildren getChildren() {
+            if(edgeId == -1) {
+                return trie.getChildren(nodeId);
+            }
+
+            // Inside an edge label there is a single child.
+            TrieChildren result = new TrieChildren(1);
+            result.putPair(0, trie.getEdgeLetter(edgeId, offset),
+                           trie.createPosition(edgeId, offset + 1));
+            return result;
+        }
+
+        @Override
+        public boolean isTerminator() {
+            return (edgeId == -1) && trie.isTerminatorNode(nodeId);
+        }
+
+        // Inside an edge label the rest of the label must still follow.
+        @Override
+        public int getMinRemainingLength() {
+            if(edgeId == -1) {
+                return trie.getMinRemainingLength(nodeId);
+            }
+
+            return trie.getLabelLength(edgeId) - offset +
+                   trie.getMinRemainingLength(trie.getEdgeTarget(edgeId));
+        }
+
+        @Override
+        public int getMaxRemainingLength() {
+            if(edgeId == -1) {
+                return trie.getMaxRemainingLength(nodeId);
+            }
+
+            return trie.getLabelLength(edgeId) - offset +
+                   trie.getMaxRemainingLength(trie.getEdgeTarget(edgeId));
+        }
+    }
+
+    // The nodes, with their edges stored consecutively.
+    private int[] firstEdges;
+    private int[] edgeCounts;
+    private boolean[] terminatorNodes;
+    private int[] minRemainingLengths; // The range of the number of letters
+    private int[] maxRemainingLengths; // that can follow the node in a word.
+
+    // The edges, with the label letters found in the shared letter pool.
+    private int[] labelStarts;
+    private int[] labelLengths;
+    private int[] edgeTargets;
+    private char[] letterPool;
+
+    public CompactRadixTrie() {
+        firstEdges = new int[1];
+        edgeCounts = new int[1];
+        terminatorNodes = new boolean[1];
+        minRemainingLengths = new int[1];
+        maxRemainingLengths = new int[1];
+        labelStarts = new int[0];
+        labelLengths = new int[0];
+        edgeTargets = new int[0];
+        letterPool = new char[0];
+    }
+
+    @Override
+    public void addWords(List<String> words) {
+        // The nodes are created in breadth-first order, each one being associated
+        // with the range of the sorted words having the node's word as prefix.
+        // The words of an edge's range share the letters of the label, and since
+        // the words are sorted, the label is the common prefix of the first and last
+        // word of the range, after the letters of the parent node. A word ending
+        // inside this prefix is the first one in the range, so the label ends there.
+        if(edgeTargets.length > 0) {
+            throw new IllegalStateException("Words were already added to the trie!");
+        }
+
+        // A sorted copy is used, leaving the caller's list unchanged.
+        words = new ArrayList<String>(words);
+        Collections.sort(words);
+        IntList rangeStarts = new IntList();
+        IntList rangeEnds = new IntList();
+        IntList depths = new IntList();
+        IntList nodeFirstEdges = new IntList();
+        IntList nodeEdgeCounts = new IntList();
+        IntList edgeStarts = new IntList();
+        IntList edgeLengths = new IntList();
+        IntList targets = new IntList();
+        StringBuilder pool = new StringBuilder();
+        boolean[] terminators = new boolean[2 * words.size() + 1]; // At most 2 nodes for each word.
+
+        rangeStarts.add(0);
+        rangeEnds.add(words.size());
+        depths.add(0);
+
+        for(int nodeId = 0; nodeId < rangeStarts.size(); nodeId++) {
+            int start = rangeStarts.get(nodeId);
+            int end = rangeEnds.get(nodeId);
+            int depth = depths.get(nodeId);
+
+            // The words ending at the node come first in the range.
+            while(start < end && words.get(start).length() == depth) {
+                terminators[nodeId] = true;
+                start++;
+            }
+
+            nodeFirstEdges.add(targets.size());
+
+            while(start < end) {
+                // Find the words starting with the same letter after the node.
+                char letter = words.get(start).charAt(depth);
+                int edgeEnd = start + 1;
+
+                while(edgeEnd < end && words.get(edgeEnd).charAt(depth) == letter) {
+                    edgeEnd++;
+                }
+
+                String first = words.get(start);
+                String last = words.get(edgeEnd - 1);
+                int labelEnd = depth + 1;
+
+                while(labelEnd < first.length() && first.charAt(labelEnd) == last.charAt(labelEnd)) {
+                    labelEnd++;
+                }
+
+                edgeStarts.add(pool.length());
+                edgeLengths.add(labelEnd - depth);
+                targets.add(rangeStarts.size());
+                pool.append(first, depth, labelEnd);
+
+                rangeStarts.add(start);
+                rangeEnds.add(edgeEnd);
+                depths.add(labelEnd);
+                start = edgeEnd;
+            }
+
+            nodeEdgeCounts.add(targets.size() - nodeFirstEdges.get(nodeId));
+        }
+
+        int nodeCount = rangeStarts.size();
+        firstEdges = nodeFirstEdges.toArray();
+        edgeCounts = nodeEdgeCounts.toArray();
+        terminatorNodes = new boolean[nodeCount];
+        System.arraycopy(terminators, 0, terminatorNodes, 0, nodeCount);
+        labelStarts = edgeStarts.toArray();
+        labelLengths = edgeLengths.toArray();
+        edgeTargets = targets.toArray();
+        letterPool = new char[pool.length()];
+        pool.getChars(0, pool.length(), letterPool, 0);
+        computeRemainingLengths();
+    }
+
+    private void computeRemainingLengths() {
+        // The nodes are created breadth-first, so the target of an edge always
+        // has a larger identifier than its source and the values can be
+        // propagated upwards by visiting the nodes in reverse order.
+        int nodeCount = getNodeCount();
+        minRemainingLengths = new int[nodeCount];
+        maxRemainingLengths = new int[nodeCount];
+
+        for(int nodeId = nodeCount - 1; nodeId >= 0; nodeId--) {
+            int minLength = terminatorNodes[nodeId] ? 0 : Integer.MAX_VALUE;
+            int maxLength = 0;
+
+            for(int i = 0; i < edgeCounts[nodeId]; i++) {
+                int edgeId = firstEdges[nodeId] + i;
+                int targetId = edgeTargets[edgeId];
+                minLength = Math.min(minLength, labelLengths[edgeId] + minRemainingLengths[targetId]);
+                maxLength = Math.max(maxLength, labelLengths[edgeId] + maxRemainingLengths[targetId]);
+            }
+
+            // Only an empty trie has a node without words below it.
+            minRemainingLengths[nodeId] = (minLength == Integer.MAX_VALUE) ? 0 : minLength;
+            maxRemainingLengths[nodeId] = maxLength;
+        }
+    }
+
+    public int getMinRemainingLength(int nodeId) {
+        return minRemainingLengths[nodeId];
+    }
+
+    public int getMaxRemainingLength(int nodeId) {
+        return maxRemainingLengths[nodeId];
+    }
+
+    public int getNodeCount() {
+        return firstEdges.length;
+    }
+
+    public int getEdgeCount() {
+        return edgeTargets.length;
+    }
+
+    public boolean isTerminatorNode(int nodeId) {
+        return terminatorNodes[nodeId];
+    }
+
+    public int getEdgeCount(int nodeId) {
+        return edgeCounts[nodeId];
+    }
+
+    // Returns the identifier of an edge of the node.
+    public int getEdgeAt(int nodeId, int edgeIndex) {
+        return firstEdges[nodeId] + edgeIndex;
+    }
+
+    public int getEdgeTarget(int edgeId) {
+        return edgeTargets[edgeId];
+    }
+
+    public int getLabelLength(int edgeId) {
+        return labelLengths[edgeId];
+    }
+
+    // The label of the edge starts at this position in the letter pool.
+    public int getLabelStart(int edgeId) {
+        return labelStarts[edgeId];
+    }
+
+    public char[] getLetterPool() {
+        return letterPool;
+    }
+
+    public char getEdgeLetter(int edgeId, int offset) {
+        return letterPool[labelStarts[edgeId] + offset];
+    }
+
+    // Returns the node or the edge label position reached after
+    // the first 'offset' letters of the edge label.
+    private Trie createPosition(int edgeId, int offset) {
+        if(offset == labelLengths[edgeId]) {
+            return new CompactRadixTrieProxy(this, edgeTargets[edgeId], -1, 0);
+        }
+
+        return new CompactRadixTrieProxy(this, -1, edgeId, offset);
+    }
+
+    protected TrieChildren getChildren(int nodeId) {
+        int edgeCount = edgeCounts[nodeId];
+        TrieChildren result = new TrieChildren(edgeCount);
+
+        for(int i = 0; i < edgeCount; i++) {
+            int edgeId = firstEdges[nodeId] + i;
+            result.putPair(i, getEdgeLetter(edgeId, 0), createPosition(edgeId, 1));
+        }
+
+        return result;
+    }
+
+    @Override
+    public TrieChildren getChildren() {
+        return getChildren(0);
+    }
+
+    @Override
+    public boolean isTerminator() {
+        return isTerminatorNode(0);
+    }
+
+    @Override
+    public int getMinRemainingLength() {
+        return getMinRemainingLength(0);
+    }
+
+    @Override
+    public int getMaxRemainingLength() {
+        return getMaxRemainingLength(0);
+    }
+}
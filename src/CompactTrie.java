@@ -29,22 +29,38 @@
 // THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
 // (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
 // OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE
-import java.util.Collections;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
 import java.util.List;
 
 // A compact representation of a trie using only arrays.
 // For large tries it can use up to 30 times less memory than SimpleTrie,
 // and it is also much faster to query (better use of the CPU cache).
+// The edges are labeled with Unicode code points, numbered densely
+// in increasing order (the symbols), so that small alphabets need only
+// one byte for each edge. The children of a node are sorted by symbol.
 public class CompactTrie extends Trie {
     // Used to create links into the main Trie 
     // which hols the actual node and edge data.
+    // The Trie interface works with UTF-16 letters, so a code point outside
+    // the Basic Multilingual Plane is seen as two letters: if 'highSurrogate'
+    // is not zero the proxy represents the position after this surrogate,
+    // whose children are the low surrogates of the node's code points.
     public class CompactTrieProxy extends Trie {
         private CompactTrie trie;
         private int nodeId;
+        private char highSurrogate;
 
-        public CompactTrieProxy(CompactTrie trie, int nodeId) {
+        public CompactTrieProxy(CompactTrie trie, int nodeId, char highSurrogate) {
             this.trie = trie;
             this.nodeId = nodeId;
+            this.highSurrogate = highSurrogate;
+        }
+
+        public CompactTrieProxy(CompactTrie trie, int nodeId) {
+            this(trie, nodeId, '\0');
         }
 
         @Override
@@ -55,94 +71,217 @@ public class CompactTrie extends Trie {
 
         @Override
         public TrieChildren getChildren() {
+            if(highSurrogate != 0) {
+                return trie.getChildrenAfterSurrogate(nodeId, highSurrogate);
+            }
+
             return trie.getChildren(nodeId);
         }
 
+        @Override
+        public Trie getChildForLetter(char letter) {
+            return trie.getChildForLetter(nodeId, highSurrogate, letter);
+        }
+
         @Override
         public boolean isTerminator() {
-             return trie.isTerminator(nodeId);
+             return (highSurrogate == 0) && trie.isTerminator(nodeId);
+        }
+
+        @Override
+        public int getFrequency() {
+            return (highSurrogate == 0) ? trie.getFrequency(nodeId) : 0;
+        }
+
+        @Override
+        public int getMaxSubtreeFrequency() {
+            // After a high surrogate only some of the words below the node remain,
+            // the bound of the node still applies to them.
+            return trie.getMaxSubtreeFrequency(nodeId);
+        }
+
+        @Override
+        public long getWordId() {
+            return (highSurrogate == 0) ? trie.getWordId(nodeId) : -1;
+        }
+
+        @Override
+        public int getMinRemainingLength() {
+            return (highSurrogate == 0) ? trie.getMinRemainingLength(nodeId) : 0;
+        }
+
+        @Override
+        public long getLetterSignature() {
+            return (highSurrogate == 0) ? trie.getLetterSignature(nodeId) : -1L;
+        }
+
+        @Override
+        public int getMaxRemainingLength() {
+            return (highSurrogate == 0) ? trie.getMaxRemainingLength(nodeId) : Integer.MAX_VALUE;
         }
     }
 
+    // Above this number of children the child of a node
+    // is found using binary search instead of linear search.
+    private static final int BINARY_SEARCH_THRESHOLD = 8;
+
     // The entire trie is stored in one place using simple arrays.
     // This representation is much more compact, and also is
     // at least twice as fast, due to abetter cache usage.
-    private int[] firstChildren;
-    private byte[] childrenCount;
-    private boolean[] terminatorNodes;
-    private char[] childrenLetters;
-    private int[] children;
-    private int lastNodeId;
-    private int lastChildId;
+    // The arrays are kept by a storage, on the heap or outside it.
+    private CompactTrieStorage storage;
+
+    // Optional data stored with the words. The terminator nodes are numbered
+    // in the order of their words, and the data is indexed by this ordinal.
+    private int[] terminatorOrdinals; // -1 for nodes that are not terminators.
+    private int[] frequencies;
+    private long[] wordIds;
+    private int[] maxSubtreeFrequencies; // Largest frequency of a word below each node.
+    private int[] frequencyChildOrders; // See getChildIndexByFrequency.
+    private long[] letterSignatures; // Optional, see buildLetterSignatures.
+
+    // The code point of each symbol, in increasing order, and the symbol plus one
+    // of the code points in the Basic Multilingual Plane. Until words are added
+    // the symbols are the code points themselves.
+    private int[] symbolCodePoints;
+    private char[] basicPlaneSymbols;
 
     public CompactTrie() {
-        firstChildren = new int[1024];
-        childrenCount = new byte[1024];
-        terminatorNodes = new boolean[1024];
-        children = new int[1024];
-        childrenLetters = new char[1024];
-        lastNodeId = 0;
-        lastChildId = 0;
+        this(new HeapCompactTrieStorage());
     }
 
-    private void resizeNodeInfoIfRequired() {
-        if(lastNodeId == firstChildren.length - 1) {
-            int[] newFirstChildren = new int[firstChildren.length * 2];
-            System.arraycopy(firstChildren, 0, newFirstChildren, 0, firstChildren.length);
-            firstChildren = newFirstChildren;
-
-            byte[] newChildrenCount = new byte[childrenCount.length * 2];
-            System.arraycopy(childrenCount, 0, newChildrenCount, 0, childrenCount.length);
-            childrenCount = newChildrenCount;
-
-            boolean[] newTerminatorNodes = new boolean[terminatorNodes.length * 2];
-            System.arraycopy(terminatorNodes, 0, newTerminatorNodes, 0, terminatorNodes.length);
-            terminatorNodes = newTerminatorNodes;
-        }
+    public CompactTrie(CompactTrieStorage storage) {
+        this.storage = storage;
     }
 
-    private void resizeChildInfoIfRequired() {
-        if(lastChildId == children.length - 1) {
-            int[] newChildren = new int[children.length * 2];
-            System.arraycopy(children, 0, newChildren, 0, children.length);
-            children = newChildren;
-
-            char[] newChildrenLetters = new char[childrenLetters.length * 2];
-            System.arraycopy(childrenLetters, 0, newChildrenLetters, 0, childrenLetters.length);
-            childrenLetters = newChildrenLetters;
-        }
+    public CompactTrieStorage getStorage() {
+        return storage;
     }
 
     public boolean isTerminatorNode(int nodeId) {
-        return terminatorNodes[nodeId];
+        return storage.isTerminator(nodeId);
     }
 
     public void setTerminatorNode(int nodeId) {
-        terminatorNodes[nodeId] = true;
+        storage.setTerminator(nodeId, true);
+    }
+
+    public int getNodeCount() {
+        return storage.getNodeCount();
     }
 
     public int getChildrenCount(int nodeId) {
-        return childrenCount[nodeId];
+        return storage.getChildrenCount(nodeId);
     }
 
     public int getChildAt(int nodeId, int childIndex) {
-        int firstIndex = firstChildren[nodeId];
-        return children[firstIndex + childIndex];
+        int firstIndex = storage.getFirstChild(nodeId);
+        return storage.getChild(firstIndex + childIndex);
     }
 
     public void setChildAt(int nodeId, int childIndex, int newChildId) {
-        int firstIndex = firstChildren[nodeId];
-        children[firstIndex + childIndex] = newChildId;
+        int firstIndex = storage.getFirstChild(nodeId);
+        storage.setChild(firstIndex + childIndex, newChildId);
+    }
+
+    public int getChildSymbolAt(int nodeId, int childIndex) {
+        int firstIndex = storage.getFirstChild(nodeId);
+        return storage.getChildSymbol(firstIndex + childIndex);
+    }
+
+    public void setChildSymbolAt(int nodeId, int childIndex, int newSymbol) {
+        int firstIndex = storage.getFirstChild(nodeId);
+        storage.setChildSymbol(firstIndex + childIndex, newSymbol);
+    }
+
+    public int getChildCodePointAt(int nodeId, int childIndex) {
+        return getCodePoint(getChildSymbolAt(nodeId, childIndex));
     }
 
+    // Returns the letter of the child. For a code point outside
+    // the Basic Multilingual Plane this is its high surrogate.
     public char getChildLetterAt(int nodeId, int childIndex) {
-        int firstIndex = firstChildren[nodeId];
-        return childrenLetters[firstIndex + childIndex];
+        int codePoint = getChildCodePointAt(nodeId, childIndex);
+        return Character.isBmpCodePoint(codePoint) ? (char)codePoint :
+                                                      Character.highSurrogate(codePoint);
+    }
+
+    public int getAlphabetSize() {
+        return (symbolCodePoints != null) ? symbolCodePoints.length : Character.MAX_CODE_POINT + 1;
+    }
+
+    public int getCodePoint(int symbol) {
+        return (symbolCodePoints != null) ? symbolCodePoints[symbol] : symbol;
+    }
+
+    // Returns the symbol of the code point, or -1 if it's not found in any word.
+    public int getSymbol(int codePoint) {
+        if(symbolCodePoints == null) {
+            return codePoint;
+        }
+
+        if(codePoint < basicPlaneSymbols.length) {
+            return basicPlaneSymbols[codePoint] - 1;
+        }
+
+        int symbol = Arrays.binarySearch(symbolCodePoints, codePoint);
+        return (symbol >= 0) ? symbol : -1;
+    }
+
+    private void buildAlphabet(List<String> words) {
+        // The symbols are given in the order of the code points, so that
+        // sorting the words by symbols sorts them by code points.
+        BitSet usedCodePoints = new BitSet();
+
+        for(String word : words) {
+            for(int i = 0; i < word.length(); ) {
+                int codePoint = word.codePointAt(i);
+                usedCodePoints.set(codePoint);
+                i += Character.charCount(codePoint);
+            }
+        }
+
+        symbolCodePoints = new int[usedCodePoints.cardinality()];
+        int maxBasicPlaneCodePoint = -1;
+        int symbol = 0;
+
+        for(int codePoint = usedCodePoints.nextSetBit(0); codePoint >= 0;
+            codePoint = usedCodePoints.nextSetBit(codePoint + 1)) {
+            symbolCodePoints[symbol++] = codePoint;
+
+            if(Character.isBmpCodePoint(codePoint)) {
+                maxBasicPlaneCodePoint = codePoint;
+            }
+        }
+
+        basicPlaneSymbols = new char[maxBasicPlaneCodePoint + 1];
+
+        for(symbol = 0; symbol < symbolCodePoints.length &&
+                        symbolCodePoints[symbol] <= maxBasicPlaneCodePoint; symbol++) {
+            basicPlaneSymbols[symbolCodePoints[symbol]] = (char)(symbol + 1);
+        }
+
+        // Use the smallest storage for the symbols.
+        if(symbolCodePoints.length <= 256) {
+            storage.setSymbolWidth(1);
+        }
+        else if(symbolCodePoints.length <= 65536) {
+            storage.setSymbolWidth(2);
+        }
+        else storage.setSymbolWidth(4);
     }
 
-    public void setChildLetterAt(int nodeId, int childIndex, char newLetter) {
-        int firstIndex = firstChildren[nodeId];
-        childrenLetters[firstIndex + childIndex] = newLetter;
+    private int[] toSymbols(String word) {
+        int[] symbols = new int[word.codePointCount(0, word.length())];
+        int position = 0;
+
+        for(int i = 0; i < word.length(); ) {
+            int codePoint = word.codePointAt(i);
+            symbols[position++] = getSymbol(codePoint);
+            i += Character.charCount(codePoint);
+        }
+
+        return symbols;
     }
 
     @Override
@@ -151,108 +290,656 @@ public class CompactTrie extends Trie {
         // then the second letter, and so on, until nu suffix part remains.
         // This algorithm always builds the children array correctly,
         // but only if the words are sorted lexicographically.
+        // The words are converted to symbols and sorted by them, which also
+        // makes the children of each node sorted by symbol.
         int layer = 0;
         boolean changed = true;
         int rootNode = addNode(-1);
-        Collections.sort(words);
+        buildAlphabet(words);
+        int[][] wordSymbols = new int[words.size()][];
+
+        for(int i = 0; i < wordSymbols.length; i++) {
+            wordSymbols[i] = toSymbols(words.get(i));
+        }
+
+        Arrays.sort(wordSymbols, new Comparator<int[]>() {
+            @Override
+            public int compare(int[] a, int[] b) {
+                int length = Math.min(a.length, b.length);
+
+                for(int i = 0; i < length; i++) {
+                    if(a[i] != b[i]) {
+                        return (a[i] < b[i]) ? -1 : 1;
+                    }
+                }
+
+                return a.length - b.length;
+            }
+        });
 
         while(changed) {
             changed = false;
             layer++;
 
-            for(String word : words) {
-                if(layer <= word.length()) {
+            for(int[] symbols : wordSymbols) {
+                if(layer <= symbols.length) {
                     // At least another iteration is required.
                     changed = true;
-                    addWord(word, 0, layer, rootNode);
+                    addWord(symbols, 0, layer, rootNode);
+                }
+            }
+        }
+
+        computeRemainingLengths();
+    }
+
+    private void computeRemainingLengths() {
+        // Like the subtree frequencies, computed by visiting the nodes in reverse order.
+        // Values that don't fit are stored as Short.MAX_VALUE, meaning "unknown".
+        for(int nodeId = getNodeCount() - 1; nodeId >= 0; nodeId--) {
+            int minLength = isTerminatorNode(nodeId) ? 0 : Short.MAX_VALUE;
+            int maxLength = 0;
+            int childCount = getChildrenCount(nodeId);
+
+            for(int i = 0; i < childCount; i++) {
+                // The lengths are in UTF-16 letters, like the searched words.
+                int childId = getChildAt(nodeId, i);
+                int letterCount = Character.charCount(getChildCodePointAt(nodeId, i));
+                minLength = Math.min(minLength, storage.getMinRemainingLength(childId) + letterCount);
+                maxLength = Math.max(maxLength, storage.getMaxRemainingLength(childId) + letterCount);
+            }
+
+            storage.setRemainingLengths(nodeId, (short)Math.min(minLength, Short.MAX_VALUE),
+                                        (short)Math.min(maxLength, Short.MAX_VALUE));
+        }
+    }
+
+    // Builds the trie and stores with each word its frequency and/or identifier,
+    // found at the same position in the arrays as the word in the list.
+    // Any of the arrays can be null. For repeated words the first values are kept.
+    public void addWords(final List<String> words, int[] frequencies, long[] wordIds) {
+        // Sort the positions instead of the words, so that the word data can be found.
+        Integer[] order = new Integer[words.size()];
+
+        for(int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return words.get(a).compareTo(words.get(b));
+            }
+        });
+
+        List<String> sortedWords = new ArrayList<String>(words.size());
+
+        for(int index : order) {
+            sortedWords.add(words.get(index));
+        }
+
+        addWords(sortedWords);
+        terminatorOrdinals = new int[getNodeCount()];
+        Arrays.fill(terminatorOrdinals, -1);
+        this.frequencies = (frequencies != null) ? new int[words.size()] : null;
+        this.wordIds = (wordIds != null) ? new long[words.size()] : null;
+        int ordinal = 0;
+
+        for(int index : order) {
+            int nodeId = findNode(words.get(index));
+
+            if(terminatorOrdinals[nodeId] != -1) {
+                continue;
+            }
+
+            terminatorOrdinals[nodeId] = ordinal;
+
+            if(frequencies != null) {
+                this.frequencies[ordinal] = frequencies[index];
+            }
+
+            if(wordIds != null) {
+                this.wordIds[ordinal] = wordIds[index];
+            }
+
+            ordinal++;
+        }
+
+        if(frequencies != null) {
+            computeMaxSubtreeFrequencies();
+        }
+    }
+
+    private void computeMaxSubtreeFrequencies() {
+        // The nodes are created layer by layer, so a child always has
+        // a larger identifier than its parent and the values can be
+        // propagated upwards by visiting the nodes in reverse order.
+        maxSubtreeFrequencies = new int[getNodeCount()];
+
+        for(int nodeId = getNodeCount() - 1; nodeId >= 0; nodeId--) {
+            int maxFrequency = getFrequency(nodeId);
+            int childCount = getChildrenCount(nodeId);
+
+            for(int i = 0; i < childCount; i++) {
+                maxFrequency = Math.max(maxFrequency, maxSubtreeFrequencies[getChildAt(nodeId, i)]);
+            }
+
+            maxSubtreeFrequencies[nodeId] = maxFrequency;
+        }
+
+        computeFrequencyChildOrders();
+    }
+
+    private void computeFrequencyChildOrders() {
+        // Stored like the children, at the position of the first child of the node.
+        // The children are sorted by a key made of the subtree frequency
+        // followed by the child index, keeping the index order for equal frequencies.
+        frequencyChildOrders = new int[storage.getChildCount()];
+        long[] keys = new long[0];
+
+        for(int nodeId = 0; nodeId < getNodeCount(); nodeId++) {
+            int childCount = getChildrenCount(nodeId);
+
+            if(childCount == 0) {
+                continue;
+            }
+
+            if(keys.length < childCount) {
+                keys = new long[Math.max(childCount, 2 * keys.length)];
+            }
+
+            for(int i = 0; i < childCount; i++) {
+                long frequency = maxSubtreeFrequencies[getChildAt(nodeId, i)];
+                keys[i] = (frequency << 32) | i;
+            }
+
+            Arrays.sort(keys, 0, childCount);
+            int firstIndex = storage.getFirstChild(nodeId);
+
+            for(int i = 0; i < childCount; i++) {
+                frequencyChildOrders[firstIndex + i] = (int)keys[i];
+            }
+        }
+    }
+
+    // Returns the node reached by following the letters of the word
+    // starting from the root, or -1 if there is no such node.
+    public int findNode(String word) {
+        int nodeId = 0;
+
+        for(int position = 0; position < word.length() && nodeId != -1; ) {
+            int codePoint = word.codePointAt(position);
+            nodeId = findChild(nodeId, codePoint);
+            position += Character.charCount(codePoint);
+        }
+
+        return nodeId;
+    }
+
+    // Returns the child of the node for the code point, or -1 if there is no such child.
+    public int findChild(int nodeId, int codePoint) {
+        int symbol = getSymbol(codePoint);
+        int childIndex = (symbol != -1) ? findChildIndex(nodeId, symbol) : -1;
+        return (childIndex != -1) ? getChildAt(nodeId, childIndex) : -1;
+    }
+
+    // Returns the position of the child with the symbol among
+    // the children of the node, or -1 if there is no such child.
+    private int findChildIndex(int nodeId, int symbol) {
+        int childCount = getChildrenCount(nodeId);
+
+        if(childCount <= BINARY_SEARCH_THRESHOLD) {
+            for(int i = 0; i < childCount; i++) {
+                if(getChildSymbolAt(nodeId, i) == symbol) {
+                    return i;
                 }
             }
+
+            return -1;
         }
+
+        // The children are sorted by symbol.
+        int low = 0;
+        int high = childCount - 1;
+
+        while(low <= high) {
+            int middle = (low + high) >>> 1;
+            int middleSymbol = getChildSymbolAt(nodeId, middle);
+
+            if(middleSymbol == symbol) {
+                return middle;
+            }
+            else if(middleSymbol < symbol) {
+                low = middle + 1;
+            }
+            else high = middle - 1;
+        }
+
+        return -1;
     }
 
-    public void addWord(String word, int position, int maxPosition, int nodeId) {
+    // Returns all words stored in the trie, sorted by their code points.
+    public List<String> getWords() {
+        List<String> words = new ArrayList<String>();
+
+        if(getNodeCount() > 0) {
+            collectWords(0, new StringBuilder(), words);
+        }
+
+        return words;
+    }
+
+    private void collectWords(int nodeId, StringBuilder word, List<String> words) {
+        if(isTerminatorNode(nodeId)) {
+            words.add(word.toString());
+        }
+
+        int childCount = getChildrenCount(nodeId);
+        int length = word.length();
+
+        for(int i = 0; i < childCount; i++) {
+            word.appendCodePoint(getChildCodePointAt(nodeId, i));
+            collectWords(getChildAt(nodeId, i), word, words);
+            word.setLength(length);
+        }
+    }
+
+    public boolean hasFrequencies() {
+        return frequencies != null;
+    }
+
+    public boolean hasWordIds() {
+        return wordIds != null;
+    }
+
+    public int getTerminatorOrdinal(int nodeId) {
+        return (terminatorOrdinals != null) ? terminatorOrdinals[nodeId] : -1;
+    }
+
+    public int getFrequency(int nodeId) {
+        int ordinal = getTerminatorOrdinal(nodeId);
+        return (ordinal != -1 && frequencies != null) ? frequencies[ordinal] : 0;
+    }
+
+    // Returns the largest frequency of a word having the node's word as prefix,
+    // or zero if no frequencies are stored.
+    public int getMaxSubtreeFrequency(int nodeId) {
+        return (maxSubtreeFrequencies != null) ? maxSubtreeFrequencies[nodeId] : 0;
+    }
+
+    // Returns the index of the child having the specified rank when the children
+    // of the node are sorted by increasing subtree frequency (see getMaxSubtreeFrequency).
+    // Without frequencies the rank is the index itself.
+    public int getChildIndexByFrequency(int nodeId, int rank) {
+        if(frequencyChildOrders == null) {
+            return rank;
+        }
+
+        return frequencyChildOrders[storage.getFirstChild(nodeId) + rank];
+    }
+
+    // Computes for each node the set of letters found below it,
+    // as a bitmask (see Trie.getLetterSignature). The signatures use
+    // 8 bytes for each node, so they are built only if requested.
+    public void buildLetterSignatures() {
+        letterSignatures = new long[getNodeCount()];
+
+        for(int nodeId = getNodeCount() - 1; nodeId >= 0; nodeId--) {
+            long signature = 0;
+            int childCount = getChildrenCount(nodeId);
+
+            for(int i = 0; i < childCount; i++) {
+                int codePoint = getChildCodePointAt(nodeId, i);
+
+                if(Character.isBmpCodePoint(codePoint)) {
+                    signature |= getLetterBit((char)codePoint);
+                }
+                else {
+                    signature |= getLetterBit(Character.highSurrogate(codePoint)) |
+                                 getLetterBit(Character.lowSurrogate(codePoint));
+                }
+
+                signature |= letterSignatures[getChildAt(nodeId, i)];
+            }
+
+            letterSignatures[nodeId] = signature;
+        }
+    }
+
+    public boolean hasLetterSignatures() {
+        return letterSignatures != null;
+    }
+
+    public long getLetterSignature(int nodeId) {
+        return (letterSignatures != null) ? letterSignatures[nodeId] : -1L;
+    }
+
+    // Renumbers the nodes to improve the cache usage when descending the trie.
+    // The nodes are built in layers (breadth-first), so the nodes on the path
+    // of a word are far apart. After the first 'breadthFirstLevels' levels,
+    // which are visited by most searches and are kept in breadth-first order,
+    // each subtree is stored in depth-first order, together with the children
+    // of its nodes. The first child of a node then follows it immediately.
+    // A child still has a larger identifier than its parent.
+    // The storage is replaced by a new one of the same kind (see getStorage),
+    // so both are allocated until the relayout completes.
+    public void relayout(int breadthFirstLevels) {
+        int nodeCount = getNodeCount();
+        int[] order = new int[nodeCount]; // The old identifiers, in the new order.
+        int orderedCount = 1;
+        int levelStart = 0;
+
+        for(int level = 0; level < breadthFirstLevels && levelStart < orderedCount; level++) {
+            int levelEnd = orderedCount;
+
+            for(int i = levelStart; i < levelEnd; i++) {
+                int childCount = getChildrenCount(order[i]);
+
+                for(int j = 0; j < childCount; j++) {
+                    order[orderedCount++] = getChildAt(order[i], j);
+                }
+            }
+
+            levelStart = levelEnd;
+        }
+
+        // The subtrees of the last level, depth-first. The children of a node
+        // are numbered together when the node is visited, then pushed
+        // in reverse order to visit them sorted by symbol.
+        int[] stack = new int[nodeCount];
+        int levelEnd = orderedCount;
+
+        for(int i = levelStart; i < levelEnd; i++) {
+            int stackTop = 0;
+            stack[stackTop++] = order[i];
+
+            while(stackTop > 0) {
+                int nodeId = stack[--stackTop];
+                int firstChild = orderedCount;
+                int childCount = getChildrenCount(nodeId);
+
+                for(int j = 0; j < childCount; j++) {
+                    order[orderedCount++] = getChildAt(nodeId, j);
+                }
+
+                for(int j = orderedCount - 1; j >= firstChild; j--) {
+                    stack[stackTop++] = order[j];
+                }
+            }
+        }
+
+        int[] newIds = new int[nodeCount];
+
+        for(int i = 0; i < nodeCount; i++) {
+            newIds[order[i]] = i;
+        }
+
+        reorderStorage(order, newIds);
+        terminatorOrdinals = reorder(terminatorOrdinals, order);
+        maxSubtreeFrequencies = reorder(maxSubtreeFrequencies, order);
+
+        if(frequencyChildOrders != null) {
+            // The children moved together with the nodes.
+            computeFrequencyChildOrders();
+        }
+
+        if(letterSignatures != null) {
+            long[] oldSignatures = letterSignatures;
+            letterSignatures = new long[nodeCount];
+
+            for(int i = 0; i < nodeCount; i++) {
+                letterSignatures[i] = oldSignatures[order[i]];
+            }
+        }
+    }
+
+    private static int[] reorder(int[] values, int[] order) {
+        if(values == null) {
+            return null;
+        }
+
+        int[] result = new int[order.length];
+
+        for(int i = 0; i < order.length; i++) {
+            result[i] = values[order[i]];
+        }
+
+        return result;
+    }
+
+    private void reorderStorage(int[] order, int[] newIds) {
+        // The nodes are copied in the new order to a new storage of the same kind,
+        // so an off-heap trie is not copied to the heap. The children of the nodes
+        // are stored in the new order of the nodes.
+        int nodeCount = getNodeCount();
+        CompactTrieStorage newStorage = storage.createEmpty();
+        newStorage.setSymbolWidth(storage.getSymbolWidth());
+
+        for(int nodeId = 0; nodeId < nodeCount; nodeId++) {
+            newStorage.addNode();
+        }
+
+        for(int nodeId = 0; nodeId < nodeCount; nodeId++) {
+            int oldId = order[nodeId];
+            int childCount = storage.getChildrenCount(oldId);
+            int firstChild = storage.getFirstChild(oldId);
+            newStorage.setTerminator(nodeId, storage.isTerminator(oldId));
+            newStorage.setRemainingLengths(nodeId, storage.getMinRemainingLength(oldId),
+                                           storage.getMaxRemainingLength(oldId));
+
+            for(int i = 0; i < childCount; i++) {
+                int childIndex = newStorage.addChild(newIds[storage.getChild(firstChild + i)],
+                                                     storage.getChildSymbol(firstChild + i));
+
+                if(i == 0) {
+                    newStorage.setFirstChild(nodeId, childIndex);
+                }
+            }
+
+            newStorage.setChildrenCount(nodeId, childCount);
+        }
+
+        storage = newStorage;
+    }
+
+    // The range of the number of letters that can follow the node in a word.
+    public int getMinRemainingLength(int nodeId) {
+        return storage.getMinRemainingLength(nodeId);
+    }
+
+    public int getMaxRemainingLength(int nodeId) {
+        short maxLength = storage.getMaxRemainingLength(nodeId);
+        return (maxLength == Short.MAX_VALUE) ? Integer.MAX_VALUE : maxLength;
+    }
+
+    public long getWordId(int nodeId) {
+        int ordinal = getTerminatorOrdinal(nodeId);
+        return (ordinal != -1 && wordIds != null) ? wordIds[ordinal] : -1;
+    }
+
+    public void addWord(int[] symbols, int position, int maxPosition, int nodeId) {
         if(position == maxPosition) {
             // Mark as terminator if the entire word has been processed.
-            if(position == word.length()) {
+            if(position == symbols.length) {
                 setTerminatorNode(nodeId);
             }
         }
         else {
-            char letter = word.charAt(position);
+            int symbol = symbols[position];
             int childNodeId = -1;
-            int actualChildCount = getChildrenCount(nodeId);
-
-            if(actualChildCount > 0) {
-                // A previous word having the current letter
-                // might have been inserted by a previous step.
-                for(int i = 0; i < actualChildCount; i++) {
-                    if(getChildLetterAt(nodeId, i) == letter) {
-                        childNodeId = getChildAt(nodeId, i);
-                        break;
-                    }
-                }
-            }
 
-            if(childNodeId == -1) {
+            // A previous word having the current letter
+            // might have been inserted by a previous step.
+            int childIndex = findChildIndex(nodeId, symbol);
+
+            if(childIndex != -1) {
+                childNodeId = getChildAt(nodeId, childIndex);
+            }
+            else {
                 // First time this letter is inserted as a child.
                 childNodeId = addNode(nodeId);
-                addChildNode(nodeId, childNodeId, letter);
+                addChildNode(nodeId, childNodeId, symbol);
             }
 
-            addWord(word, position + 1, maxPosition, childNodeId);
+            addWord(symbols, position + 1, maxPosition, childNodeId);
         }
     }
 
     public int addNode(int parentNodeId) {
-        resizeNodeInfoIfRequired();
-        firstChildren[lastNodeId] = (-1);
-        childrenCount[lastNodeId] = ((byte)0);
-        lastNodeId++;
-        return lastNodeId - 1;
+        return storage.addNode();
     }
 
-    public void addChildNode(int parentNodeId, int childNodeId, char letter) {
-        resizeChildInfoIfRequired();
-        childrenLetters[lastChildId] = (letter);
-        children[lastChildId] = (childNodeId);
-        lastChildId++;
-
-        int firstIndex = firstChildren[parentNodeId];
+    public void addChildNode(int parentNodeId, int childNodeId, int symbol) {
+        int childIndex = storage.addChild(childNodeId, symbol);
+        int firstIndex = storage.getFirstChild(parentNodeId);
 
         if(firstIndex == -1) {
-            firstChildren[parentNodeId] =  lastChildId - 1;
-            childrenCount[parentNodeId] = (byte)1;
+            storage.setFirstChild(parentNodeId, childIndex);
+            storage.setChildrenCount(parentNodeId, 1);
         }
         else {
-            byte actualCount = childrenCount[parentNodeId];
-            childrenCount[parentNodeId] = (byte)(actualCount + 1);
+            int actualCount = storage.getChildrenCount(parentNodeId);
+            storage.setChildrenCount(parentNodeId, actualCount + 1);
         }
     }
 
     protected TrieChildren getChildren(int nodeId) {
+        // The children with code points outside the Basic Multilingual Plane
+        // are sorted, so those sharing the high surrogate are consecutive,
+        // and are represented by a single child for the high surrogate.
         int childCount = getChildrenCount(nodeId);
-        TrieChildren result = new TrieChildren(childCount);
+        int letterCount = 0;
+        char previousSurrogate = 0;
 
         for(int i = 0; i < childCount; i++) {
-            char letter = getChildLetterAt(nodeId, i);
-            int childId = getChildAt(nodeId, i);
-            result.putPair(i, letter, new CompactTrieProxy(this, childId));
+            int codePoint = getChildCodePointAt(nodeId, i);
+
+            if(Character.isBmpCodePoint(codePoint)) {
+                letterCount++;
+            }
+            else if(Character.highSurrogate(codePoint) != previousSurrogate) {
+                previousSurrogate = Character.highSurrogate(codePoint);
+                letterCount++;
+            }
+        }
+
+        TrieChildren result = new TrieChildren(letterCount);
+        int letterIndex = 0;
+        previousSurrogate = 0;
+
+        for(int i = 0; i < childCount; i++) {
+            int codePoint = getChildCodePointAt(nodeId, i);
+
+            if(Character.isBmpCodePoint(codePoint)) {
+                int childId = getChildAt(nodeId, i);
+                result.putPair(letterIndex++, (char)codePoint, new CompactTrieProxy(this, childId));
+            }
+            else if(Character.highSurrogate(codePoint) != previousSurrogate) {
+                previousSurrogate = Character.highSurrogate(codePoint);
+                result.putPair(letterIndex++, previousSurrogate,
+                               new CompactTrieProxy(this, nodeId, previousSurrogate));
+            }
         }
 
         return result;
     }
 
+    // Returns the children of the node for the code points having the high surrogate.
+    protected TrieChildren getChildrenAfterSurrogate(int nodeId, char highSurrogate) {
+        int childCount = getChildrenCount(nodeId);
+        int letterCount = 0;
+
+        for(int i = 0; i < childCount; i++) {
+            int codePoint = getChildCodePointAt(nodeId, i);
+
+            if(!Character.isBmpCodePoint(codePoint) && Character.highSurrogate(codePoint) == highSurrogate) {
+                letterCount++;
+            }
+        }
+
+        TrieChildren result = new TrieChildren(letterCount);
+        int letterIndex = 0;
+
+        for(int i = 0; i < childCount; i++) {
+            int codePoint = getChildCodePointAt(nodeId, i);
+
+            if(!Character.isBmpCodePoint(codePoint) && Character.highSurrogate(codePoint) == highSurrogate) {
+                result.putPair(letterIndex++, Character.lowSurrogate(codePoint),
+                               new CompactTrieProxy(this, getChildAt(nodeId, i)));
+            }
+        }
+
+        return result;
+    }
+
+    // Returns the child of the node, or of the position after the high surrogate
+    // if it is not zero, associated with the letter, or null if there is no such child.
+    protected Trie getChildForLetter(int nodeId, char highSurrogate, char letter) {
+        if(highSurrogate != 0) {
+            if(!Character.isLowSurrogate(letter)) {
+                return null;
+            }
+
+            int childId = findChild(nodeId, Character.toCodePoint(highSurrogate, letter));
+            return (childId != -1) ? new CompactTrieProxy(this, childId) : null;
+        }
+
+        if(Character.isHighSurrogate(letter)) {
+            // Check if any code point starts with the surrogate.
+            TrieChildren children = getChildrenAfterSurrogate(nodeId, letter);
+            return (children.size() > 0) ? new CompactTrieProxy(this, nodeId, letter) : null;
+        }
+
+        int childId = Character.isLowSurrogate(letter) ? -1 : findChild(nodeId, letter);
+        return (childId != -1) ? new CompactTrieProxy(this, childId) : null;
+    }
+
     @Override
     public TrieChildren getChildren() {
         return getChildren(0);
     }
 
+    @Override
+    public Trie getChildForLetter(char letter) {
+        return getChildForLetter(0, '\0', letter);
+    }
+
     protected  boolean isTerminator(int nodeId) {
-        return terminatorNodes[nodeId];
+        return storage.isTerminator(nodeId);
     }
 
     @Override
     public boolean isTerminator() {
         return isTerminator(0);
     }
+
+    @Override
+    public int getFrequency() {
+        return getFrequency(0);
+    }
+
+    @Override
+    public int getMaxSubtreeFrequency() {
+        return getMaxSubtreeFrequency(0);
+    }
+
+    @Override
+    public long getWordId() {
+        return getWordId(0);
+    }
+
+    @Override
+    public int getMinRemainingLength() {
+        return getMinRemainingLength(0);
+    }
+
+    @Override
+    public long getLetterSignature() {
+        return getLetterSignature(0);
+    }
+
+    @Override
+    public int getMaxRemainingLength() {
+        return getMaxRemainingLength(0);
+    }
 }
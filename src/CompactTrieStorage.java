@@ -0,0 +1,89 @@
+// Copyright (c) 2013 Gratian Lup. All rights reserved.
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are
+// met:
+//
+// * Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+//
+// * Redistributions in binary form must reproduce the above
+// copyright notice, this list of conditions and the following
+// disclaimer in the documentation and/or other materials provided
+// with the distribution.
+//
+// * The name "FuzzyStringMatching" must not be used to endorse or promote
+// products derived from this software without prior written permission.
+//
+// * Products derived from this software may not be called "FuzzyStringMatching" nor
+// may "FuzzyStringMatching" appear in their names without prior written
+// permission of the author.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+// A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+// OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+// SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+// LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+// DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE
+// The arrays holding the nodes and the edges of a CompactTrie.
+// The nodes and the children are numbered in the order they are added;
+// the children of a node are consecutive, starting with its first child.
+// The edges are labeled by symbols, the dense numbers given by CompactTrie
+// to the letters of the words, stored using 1, 2 or 4 bytes.
+public interface CompactTrieStorage {
+    public int getNodeCount();
+
+    // Adds a node without children and returns its number.
+    public int addNode();
+
+    // Returns the position of the first child of the node, or -1 if it has no children.
+    public int getFirstChild(int nodeId);
+
+    public void setFirstChild(int nodeId, int childIndex);
+
+    public int getChildrenCount(int nodeId);
+
+    public void setChildrenCount(int nodeId, int count);
+
+    public boolean isTerminator(int nodeId);
+
+    public void setTerminator(int nodeId, boolean terminator);
+
+    // The number of letters that can follow the node in a word (see CompactTrie),
+    // initially 0 and Short.MAX_VALUE, meaning "unknown".
+    public short getMinRemainingLength(int nodeId);
+
+    public short getMaxRemainingLength(int nodeId);
+
+    public void setRemainingLengths(int nodeId, short minLength, short maxLength);
+
+    public int getChildCount();
+
+    // Sets the number of bytes used for a symbol (1, 2 or 4, initially 2),
+    // the largest symbol being 255, 65535 and Integer.MAX_VALUE.
+    // Can be changed only before the first child is added.
+    public void setSymbolWidth(int symbolWidth);
+
+    public int getSymbolWidth();
+
+    // Adds a child and returns its position.
+    public int addChild(int childNodeId, int symbol);
+
+    public int getChild(int childIndex);
+
+    public void setChild(int childIndex, int childNodeId);
+
+    public int getChildSymbol(int childIndex);
+
+    public void setChildSymbol(int childIndex, int symbol);
+
+    // Returns the number of bytes allocated for the arrays.
+    public long getSizeInBytes();
+
+    // Returns a new, empty storage of the same kind, kept in the same kind of memory.
+    public CompactTrieStorage createEmpty();
+}
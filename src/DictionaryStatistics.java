@@ -0,0 +1,158 @@
+// Copyright (c) 2013 Gratian Lup. All rights reserved.
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are
+// met:
+//
+// * Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+//
+// * Redistributions in binary form must reproduce the above
+// copyright notice, this list of conditions and the following
+// disclaimer in the documentation and/or other materials provided
+// with the distribution.
+//
+// * The name "FuzzyStringMatching" must not be used to endorse or promote
+// products derived from this software without prior written permission.
+//
+// * Products derived from this software may not be called "FuzzyStringMatching" nor
+// may "FuzzyStringMatching" appear in their names without prior written
+// permission of the author.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+// A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+// OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+// SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+// LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+// DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// Summary of a dictionary, used to estimate the cost of a query
+// for each of the search engines (see QueryPlanner).
+public class DictionaryStatistics {
+    private int wordCount;
+    private int alphabetSize;
+    private int[] lengthCounts;   // Number of words having each length.
+    private long[] prefixCounts;  // Number of distinct prefixes (trie nodes) at each depth.
+    private long letterCount;
+
+    public DictionaryStatistics(List<String> words) {
+        if(words == null) {
+            throw new IllegalArgumentException("Word list is null");
+        }
+
+        // A word appearing multiple times is counted once,
+        // since the engines find it only once too.
+        List<String> sortedWords = new ArrayList<String>(new HashSet<String>(words));
+        Collections.sort(sortedWords);
+        Set<Character> alphabet = new HashSet<Character>();
+        int maxLength = 0;
+
+        for(String word : sortedWords) {
+            maxLength = Math.max(maxLength, word.length());
+        }
+
+        wordCount = sortedWords.size();
+        lengthCounts = new int[maxLength + 1];
+        prefixCounts = new long[maxLength + 1];
+        String previousWord = "";
+
+        for(String word : sortedWords) {
+            // In sorted order, a word adds a new prefix for each of its
+            // letters after the common prefix with the previous word.
+            int commonLength = 0;
+            int maxCommonLength = Math.min(word.length(), previousWord.length());
+
+            while(commonLength < maxCommonLength &&
+                  word.charAt(commonLength) == previousWord.charAt(commonLength)) {
+                commonLength++;
+            }
+
+            for(int depth = commonLength + 1; depth <= word.length(); depth++) {
+                prefixCounts[depth]++;
+            }
+
+            for(int i = 0; i < word.length(); i++) {
+                alphabet.add(word.charAt(i));
+            }
+
+            lengthCounts[word.length()]++;
+            letterCount += word.length();
+            previousWord = word;
+        }
+
+        alphabetSize = Math.max(1, alphabet.size());
+    }
+
+    public int getWordCount() {
+        return wordCount;
+    }
+
+    public int getAlphabetSize() {
+        return alphabetSize;
+    }
+
+    public int getMaxLength() {
+        return lengthCounts.length - 1;
+    }
+
+    public double getAverageLength() {
+        return wordCount > 0 ? (double)letterCount / wordCount : 0;
+    }
+
+    // Returns the number of words having a length in the range [minLength, maxLength].
+    public int getWordCount(int minLength, int maxLength) {
+        int count = 0;
+
+        for(int length = Math.max(0, minLength);
+            length <= Math.min(maxLength, getMaxLength()); length++) {
+            count += lengthCounts[length];
+        }
+
+        return count;
+    }
+
+    // Returns the number of trie nodes found at the specified depth.
+    public long getPrefixCount(int depth) {
+        return (depth >= 0 && depth < prefixCounts.length) ? prefixCounts[depth] : 0;
+    }
+
+    // Returns the number of trie nodes, excluding the root.
+    public long getPrefixCount() {
+        long count = 0;
+
+        for(long depthCount : prefixCounts) {
+            count += depthCount;
+        }
+
+        return count;
+    }
+
+    // Estimates how many trie nodes are visited by a search for a word
+    // of the specified length. At each depth, at most the prefixes within
+    // 'maxError' edits of a pattern prefix can be visited, which are roughly
+    // C(depth + maxError, maxError) * alphabetSize ^ maxError.
+    public double estimateVisitedNodes(int wordLength, int maxError) {
+        double visitedNodes = 0;
+
+        for(int depth = 1; depth <= Math.min(wordLength + maxError, getMaxLength()); depth++) {
+            double neighbors = Math.pow(alphabetSize, maxError);
+
+            for(int i = 1; i <= maxError; i++) {
+                neighbors = neighbors * (depth + i) / i;
+            }
+
+            visitedNodes += Math.min(prefixCounts[depth], neighbors);
+        }
+
+        return visitedNodes;
+    }
+}
@@ -0,0 +1,82 @@
+// Copyright (c) 2013 Gratian Lup. All rights reserved.
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are
+// met:
+//
+// * Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+//
+// * Redistributions in binary form must reproduce the above
+// copyright notice, this list of conditions and the following
+// disclaimer in the documentation and/or other materials provided
+// with the distribution.
+//
+// * The name "FuzzyStringMatching" must not be used to endorse or promote
+// products derived from this software without prior written permission.
+//
+// * Products derived from this software may not be called "FuzzyStringMatching" nor
+// may "FuzzyStringMatching" appear in their names without prior written
+// permission of the author.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+// A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+// OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+// SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+// LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+// DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE
+// Describes the distance used by a MatchingEngine: the Levenshtein distance,
+// optionally counting a swap of adjacent letters as one edit (restricted
+// Damerau-Levenshtein), and optionally using weighted edit costs.
+// Engines with equal models and the same dictionary find the same words
+// for the same maximum error, so QueryPlanner can use any of them.
+public final class DistanceModel {
+    public static final DistanceModel LEVENSHTEIN = new DistanceModel(false, null);
+
+    private final boolean transpositions;
+    private final EditCosts editCosts;
+
+    // The edit costs have no notion of equality, so two models
+    // with edit costs are equal only if they use the same object.
+    public DistanceModel(boolean transpositions, EditCosts editCosts) {
+        this.transpositions = transpositions;
+        this.editCosts = editCosts;
+    }
+
+    public boolean hasTranspositions() {
+        return transpositions;
+    }
+
+    public EditCosts getEditCosts() {
+        return editCosts;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if(this == obj) {
+            return true;
+        }
+
+        if(!(obj instanceof DistanceModel)) {
+            return false;
+        }
+
+        DistanceModel other = (DistanceModel)obj;
+        return transpositions == other.transpositions && editCosts == other.editCosts;
+    }
+
+    @Override
+    public int hashCode() {
+        return (transpositions ? 1 : 0) + 31 * System.identityHashCode(editCosts);
+    }
+
+    @Override
+    public String toString() {
+        String name = transpositions ? "Damerau-Levenshtein" : "Levenshtein";
+        return (editCosts != null) ? name + " with edit costs" : name;
+    }
+}
@@ -0,0 +1,408 @@
+// Copyright (c) 2013 Gratian Lup. All rights reserved.
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are
+// met:
+//
+// * Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+//
+// * Redistributions in binary form must reproduce the above
+// copyright notice, this list of conditions and the following
+// disclaimer in the documentation and/or other materials provided
+// with the distribution.
+//
+// * The name "FuzzyStringMatching" must not be used to endorse or promote
+// products derived from this software without prior written permission.
+//
+// * Products derived from this software may not be called "FuzzyStringMatching" nor
+// may "FuzzyStringMatching" appear in their names without prior written
+// permission of the author.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+// A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+// OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+// SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+// LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+// DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+// A trie stored as a double array (see "An efficient digital search algorithm
+// by using a double-array structure" by J. Aoe). The child of node S for the
+// letter with code C is found at position base[S] + C, and belongs to S
+// only if check[base[S] + C] == S, so it is found in constant time.
+// To enumerate the children without trying all letters, each node
+// also stores the code of its first child and of its next sibling.
+// The trie is built at once from all words and can be saved and loaded.
+public class DoubleArrayTrie extends Trie {
+    // Used to create links into the arrays of the main trie.
+    public class DoubleArrayTrieProxy extends Trie {
+        private DoubleArrayTrie trie;
+        private int nodeId;
+
+        public DoubleArrayTrieProxy(DoubleArrayTrie trie, int nodeId) {
+            this.trie = trie;
+            this.nodeId = nodeId;
+        }
+
+        @Override
+        public void addWords(List<String> words) {
+            // This is just a proxy for an already created trie.
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public TrieChildren getChildren() {
+            return trie.getChildren(nodeId);
+        }
+
+        @Override
+        public Trie getChildForLetter(char letter) {
+            return trie.getChildForLetter(nodeId, letter);
+        }
+
+        @Override
+        public boolean isTerminator() {
+            return trie.isTerminator(nodeId);
+        }
+    }
+
+    // Identifies the saved trie format.
+    private static final int FILE_MAGIC = 0x44415452; // "DATR"
+    private static final int FILE_VERSION = 1;
+
+    private static final int FREE = -1;  // Value in 'check' of unused positions.
+    private static final int ROOT = 0;
+
+    private char[] alphabet;     // The letter of each code, code 0 being unused.
+    private char[] letterCodes;  // The code of each letter up to the largest one, 0 if not used.
+    private int[] base;
+    private int[] check;
+    private char[] firstChildCodes;  // 0 if the node has no children.
+    private char[] nextSiblingCodes; // 0 if the node is the last child.
+    private boolean[] terminatorNodes;
+    private int size;                // Number of used positions, including the free ones between them.
+    private int firstFree;           // No free position is found before it.
+
+    public DoubleArrayTrie() {
+        alphabet = new char[1];
+        letterCodes = new char[0];
+        allocate(1);
+        check[ROOT] = ROOT;
+        size = 1;
+    }
+
+    private void allocate(int capacity) {
+        base = new int[capacity];
+        check = new int[capacity];
+        firstChildCodes = new char[capacity];
+        nextSiblingCodes = new char[capacity];
+        terminatorNodes = new boolean[capacity];
+        Arrays.fill(check, FREE);
+    }
+
+    private void resizeIfRequired(int position) {
+        if(position < check.length) {
+            return;
+        }
+
+        int newLength = Math.max(check.length * 2, position + 1);
+        int oldLength = check.length;
+        base = Arrays.copyOf(base, newLength);
+        check = Arrays.copyOf(check, newLength);
+        firstChildCodes = Arrays.copyOf(firstChildCodes, newLength);
+        nextSiblingCodes = Arrays.copyOf(nextSiblingCodes, newLength);
+        terminatorNodes = Arrays.copyOf(terminatorNodes, newLength);
+        Arrays.fill(check, oldLength, newLength, FREE);
+    }
+
+    private int getLetterCode(char letter) {
+        return (letter < letterCodes.length) ? letterCodes[letter] : 0;
+    }
+
+    private void buildAlphabet(List<String> words) {
+        // The letters are numbered in their natural order, starting with 1,
+        // which keeps the children of a node close to each other.
+        boolean[] used = new boolean[Character.MAX_VALUE + 1];
+        int maxLetter = -1;
+        int letterCount = 0;
+
+        for(String word : words) {
+            for(int i = 0; i < word.length(); i++) {
+                char letter = word.charAt(i);
+
+                if(!used[letter]) {
+                    used[letter] = true;
+                    maxLetter = Math.max(maxLetter, letter);
+                    letterCount++;
+                }
+            }
+        }
+
+        alphabet = new char[letterCount + 1];
+        letterCodes = new char[maxLetter + 1];
+        int code = 1;
+
+        for(int letter = 0; letter <= maxLetter; letter++) {
+            if(used[letter]) {
+                alphabet[code] = (char)letter;
+                letterCodes[letter] = (char)code;
+                code++;
+            }
+        }
+    }
+
+    @Override
+    public void addWords(List<String> words) {
+        // The children of a node are the distinct letters at its depth
+        // in a range of the sorted words sharing the node's word as prefix,
+        // so the trie is built by splitting the ranges, starting with all words.
+        // A node is placed only after all its children have a base.
+        if(size > 1) {
+            throw new IllegalStateException("Words were already added to the trie!");
+        }
+
+        // A sorted copy is used, leaving the caller's list unchanged.
+        words = new ArrayList<String>(words);
+        Collections.sort(words);
+        buildAlphabet(words);
+
+        List<int[]> worklist = new ArrayList<int[]>(); // <node, first word, last word + 1, depth>
+        worklist.add(new int[] { ROOT, 0, words.size(), 0 });
+        int[] childCodes = new int[alphabet.length];
+        int[] childStarts = new int[alphabet.length + 1];
+
+        while(!worklist.isEmpty()) {
+            int[] item = worklist.remove(worklist.size() - 1);
+            int nodeId = item[0];
+            int start = item[1];
+            int end = item[2];
+            int depth = item[3];
+
+            // The words ending at the node come first in the range.
+            while(start < end && words.get(start).length() == depth) {
+                terminatorNodes[nodeId] = true;
+                start++;
+            }
+
+            // Find the letters of the children and the start of their ranges.
+            int childCount = 0;
+
+            for(int i = start; i < end; i++) {
+                int code = getLetterCode(words.get(i).charAt(depth));
+
+                if(childCount == 0 || childCodes[childCount - 1] != code) {
+                    childCodes[childCount] = code;
+                    childStarts[childCount] = i;
+                    childCount++;
+                }
+            }
+
+            if(childCount == 0) {
+                continue;
+            }
+
+            childStarts[childCount] = end;
+            int nodeBase = findBase(childCodes, childCount);
+            base[nodeId] = nodeBase;
+            firstChildCodes[nodeId] = (char)childCodes[0];
+
+            for(int i = 0; i < childCount; i++) {
+                int childId = nodeBase + childCodes[i];
+                check[childId] = nodeId;
+                nextSiblingCodes[childId] = (i + 1 < childCount) ? (char)childCodes[i + 1] : 0;
+                size = Math.max(size, childId + 1);
+                worklist.add(new int[] { childId, childStarts[i], childStarts[i + 1], depth + 1 });
+            }
+
+            while(firstFree < check.length && check[firstFree] != FREE) {
+                firstFree++;
+            }
+        }
+    }
+
+    private int findBase(int[] childCodes, int childCount) {
+        // Try the positions starting with the first free one for the first
+        // child, until all children can be placed. The codes are increasing.
+        int position = Math.max(firstFree, childCodes[0]);
+
+        while(true) {
+            resizeIfRequired(position);
+
+            if(check[position] == FREE) {
+                int nodeBase = position - childCodes[0];
+                boolean valid = true;
+
+                for(int i = 1; i < childCount; i++) {
+                    int childId = nodeBase + childCodes[i];
+                    resizeIfRequired(childId);
+
+                    if(check[childId] != FREE) {
+                        valid = false;
+                        break;
+                    }
+                }
+
+                if(valid) {
+                    return nodeBase;
+                }
+            }
+
+            position++;
+        }
+    }
+
+    public int getChildrenCount(int nodeId) {
+        int count = 0;
+
+        for(int code = firstChildCodes[nodeId]; code != 0;
+            code = nextSiblingCodes[base[nodeId] + code]) {
+            count++;
+        }
+
+        return count;
+    }
+
+    // Returns the child of the node for the letter, or -1 if there is no such child.
+    public int findChild(int nodeId, char letter) {
+        int code = getLetterCode(letter);
+
+        if(code == 0) {
+            return -1;
+        }
+
+        int childId = base[nodeId] + code;
+        return (childId < size && check[childId] == nodeId && childId != ROOT) ? childId : -1;
+    }
+
+    // Returns the node reached by following the letters of the word
+    // starting from the root, or -1 if there is no such node.
+    public int findNode(String word) {
+        int nodeId = ROOT;
+
+        for(int i = 0; i < word.length() && nodeId != -1; i++) {
+            nodeId = findChild(nodeId, word.charAt(i));
+        }
+
+        return nodeId;
+    }
+
+    public boolean contains(String word) {
+        int nodeId = findNode(word);
+        return (nodeId != -1) && terminatorNodes[nodeId];
+    }
+
+    protected TrieChildren getChildren(int nodeId) {
+        TrieChildren result = new TrieChildren(getChildrenCount(nodeId));
+        int nodeBase = base[nodeId];
+        int index = 0;
+
+        for(int code = firstChildCodes[nodeId]; code != 0; code = nextSiblingCodes[nodeBase + code]) {
+            result.putPair(index++, alphabet[code], new DoubleArrayTrieProxy(this, nodeBase + code));
+        }
+
+        return result;
+    }
+
+    protected Trie getChildForLetter(int nodeId, char letter) {
+        int childId = findChild(nodeId, letter);
+        return (childId != -1) ? new DoubleArrayTrieProxy(this, childId) : null;
+    }
+
+    protected boolean isTerminator(int nodeId) {
+        return terminatorNodes[nodeId];
+    }
+
+    @Override
+    public TrieChildren getChildren() {
+        return getChildren(ROOT);
+    }
+
+    @Override
+    public Trie getChildForLetter(char letter) {
+        return getChildForLetter(ROOT, letter);
+    }
+
+    @Override
+    public boolean isTerminator() {
+        return isTerminator(ROOT);
+    }
+
+    // Returns the number of array positions used, including the unused ones between them.
+    public int getArraySize() {
+        return size;
+    }
+
+    // Writes the trie in a binary format that can be read by 'load'.
+    public void save(OutputStream stream) throws IOException {
+        DataOutputStream output = new DataOutputStream(stream);
+        output.writeInt(FILE_MAGIC);
+        output.writeInt(FILE_VERSION);
+        output.writeInt(alphabet.length);
+
+        for(int code = 1; code < alphabet.length; code++) {
+            output.writeChar(alphabet[code]);
+        }
+
+        output.writeInt(size);
+
+        for(int i = 0; i < size; i++) {
+            output.writeInt(base[i]);
+            output.writeInt(check[i]);
+            output.writeChar(firstChildCodes[i]);
+            output.writeChar(nextSiblingCodes[i]);
+            output.writeBoolean(terminatorNodes[i]);
+        }
+
+        output.flush();
+    }
+
+    public static DoubleArrayTrie load(InputStream stream) throws IOException {
+        DataInputStream input = new DataInputStream(stream);
+
+        if(input.readInt() != FILE_MAGIC || input.readInt() != FILE_VERSION) {
+            throw new IOException("Not a saved double-array trie!");
+        }
+
+        DoubleArrayTrie trie = new DoubleArrayTrie();
+        trie.alphabet = new char[input.readInt()];
+        int maxLetter = -1;
+
+        for(int code = 1; code < trie.alphabet.length; code++) {
+            trie.alphabet[code] = input.readChar();
+            maxLetter = Math.max(maxLetter, trie.alphabet[code]);
+        }
+
+        trie.letterCodes = new char[maxLetter + 1];
+
+        for(int code = 1; code < trie.alphabet.length; code++) {
+            trie.letterCodes[trie.alphabet[code]] = (char)code;
+        }
+
+        trie.size = input.readInt();
+        trie.allocate(trie.size);
+
+        for(int i = 0; i < trie.size; i++) {
+            trie.base[i] = input.readInt();
+            trie.check[i] = input.readInt();
+            trie.firstChildCodes[i] = input.readChar();
+            trie.nextSiblingCodes[i] = input.readChar();
+            trie.terminatorNodes[i] = input.readBoolean();
+        }
+
+        trie.firstFree = trie.size;
+        return trie;
+    }
+}
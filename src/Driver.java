@@ -32,17 +32,38 @@
 import java.io.*;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class Driver {
     private static class ParsedArguments {
         public boolean valid;
         public boolean useCache;
         public boolean verbose;
+        public boolean adaptiveMaxError;
+        public boolean transpositions;
+        public boolean keyboardCosts;
+        public boolean batch;
+        public boolean letterSignatures;
+        public String trieType = "compact";
         public String dictionaryFile;
         public String reversedDictionaryFile;
         public String testFile;
         public String graphvizFile;
+        public String engine = "automaton";
         public int maxErrors;
+        public int maxCompletions;
+        public int maxCorrections;
+        public int relayoutLevels = -1; // The trie is not relaid out if negative.
+    }
+
+    // The words of a dictionary file, with the optional frequency (second column)
+    // and identifier (third column) of each word; null if the column is missing.
+    // The columns are separated by tabs.
+    private static class Dictionary {
+        public List<String> words = new ArrayList<String>();
+        public int[] frequencies;
+        public long[] wordIds;
     }
 
     private static void writeAutomatonToDOT(LevenshteinAutomaton automaton,
@@ -84,13 +105,116 @@ public class Driver {
         return words;
     }
 
-    private static Trie buildTrie(List<String> words) {
-        // Trie trie = new SimpleTrie();
-        Trie trie = new CompactTrie();
+    private static Dictionary readDictionary(String filePath) throws IOException {
+        // Each line contains a word, optionally followed by its frequency
+        // and identifier, separated by tabs. A word can contain spaces and digits,
+        // so a line without tabs is always entirely a word.
+        List<String> lines = readWordList(filePath);
+        Dictionary dictionary = new Dictionary();
+        int[] frequencies = new int[lines.size()];
+        long[] wordIds = new long[lines.size()];
+        boolean hasFrequencies = false;
+        boolean hasWordIds = false;
+
+        for(String line : lines) {
+            String[] columns = line.split("\t");
+            int index = dictionary.words.size();
+            wordIds[index] = -1;
+            dictionary.words.add(columns[0]);
+
+            if(columns.length > 3) {
+                System.out.println("Too many columns for word " + columns[0] + "!");
+                throw new IOException("Too many columns in dictionary line: " + line);
+            }
+
+            try {
+                if(columns.length > 1) {
+                    frequencies[index] = Integer.parseInt(columns[1].trim());
+                    hasFrequencies = true;
+                }
+
+                if(columns.length > 2) {
+                    wordIds[index] = Long.parseLong(columns[2].trim());
+                    hasWordIds = true;
+                }
+            }
+            catch(NumberFormatException ex) {
+                System.out.println("Invalid frequency or identifier for word " + columns[0] + "!");
+                throw new IOException(ex);
+            }
+        }
+
+        dictionary.frequencies = hasFrequencies ? frequencies : null;
+        dictionary.wordIds = hasWordIds ? wordIds : null;
+        return dictionary;
+    }
+
+    private static boolean isCompactTrie(String trieType) {
+        return "compact".equals(trieType) || "offheap".equals(trieType);
+    }
+
+    private static CompactTrie createCompactTrie(String trieType) {
+        if("offheap".equals(trieType)) {
+            return new CompactTrie(new OffHeapCompactTrieStorage());
+        }
+
+        return new CompactTrie();
+    }
+
+    private static Trie buildTrie(List<String> words, String trieType) {
+        Trie trie;
+
+        if("doublearray".equals(trieType)) {
+            trie = new DoubleArrayTrie();
+        }
+        else if("louds".equals(trieType)) {
+            trie = new LoudsTrie();
+        }
+        else if("radix".equals(trieType)) {
+            trie = new CompactRadixTrie();
+        }
+        else trie = createCompactTrie(trieType); // new SimpleTrie();
+
         trie.addWords(words);
         return trie;
     }
 
+    private static Trie buildTrie(Dictionary dictionary, String trieType) {
+        if(!isCompactTrie(trieType) ||
+           (dictionary.frequencies == null && dictionary.wordIds == null)) {
+            return buildTrie(dictionary.words, trieType);
+        }
+
+        CompactTrie trie = createCompactTrie(trieType);
+        trie.addWords(dictionary.words, dictionary.frequencies, dictionary.wordIds);
+        return trie;
+    }
+
+    private static QueryPlanner buildQueryPlanner(ParsedArguments parsedArgs,
+                                                  List<String> dictionaryWords,
+                                                  Trie dictionaryTrie, Trie reversedDictionaryTrie,
+                                                  AutomatonCache cache, ExecutorService executor) {
+        // With adaptive maximum error, engines for all errors up to
+        // the requested one are needed, otherwise only for the requested one.
+        QueryPlanner planner = new QueryPlanner(new DictionaryStatistics(dictionaryWords));
+        planner.setAdaptiveMaxError(parsedArgs.adaptiveMaxError);
+        int minError = parsedArgs.adaptiveMaxError ? 1 : parsedArgs.maxErrors;
+
+        for(int maxError = minError; maxError <= parsedArgs.maxErrors; maxError++) {
+            Trie reversedTrie = (maxError == 2) ? reversedDictionaryTrie : null;
+            planner.addEngine(new FuzzyMatching(dictionaryTrie, reversedTrie, maxError, cache));
+            planner.addEngine(new TrieDistanceMatching(dictionaryTrie, maxError));
+            planner.addEngine(new BruteForceMatching(dictionaryWords, maxError, executor));
+
+            if(maxError <= 2) {
+                planner.addEngine(new SymmetricDeleteMatching(dictionaryWords, maxError));
+            }
+            else planner.addEngine(new QGramMatching(dictionaryWords, maxError));
+        }
+
+        return planner;
+    }
+
     private static boolean nextArgumentValid(String[] args, int argIndex) {
         return (argIndex + 1 < args.length) &&
                (args[argIndex + 1].length() > 0) &&
@@ -162,10 +286,110 @@ public class Driver {
                     return parsedArgs;
                 }
             }
+            else if("-m".equals(arg)) {
+                if(nextArgumentValid(args, argIndex)) {
+                    parsedArgs.engine = args[argIndex + 1];
+                    argIndex += 2;
+                }
+                else {
+                    System.out.println("Expected search engine name after -m!");
+                    return parsedArgs;
+                }
+            }
             else if("-c".equals(arg)) {
                 parsedArgs.useCache = true;
                 argIndex++;
             }
+            else if("-x".equals(arg)) {
+                parsedArgs.transpositions = true;
+                argIndex++;
+            }
+            else if("-p".equals(arg)) {
+                if(nextArgumentValid(args, argIndex)) {
+                    String countString = args[argIndex + 1];
+                    argIndex += 2;
+
+                    try {
+                        parsedArgs.maxCompletions = Integer.parseInt(countString);
+                    }
+                    catch(NumberFormatException ex) {
+                        System.out.println("Invalid number specified for maximum completions!");
+                        return parsedArgs;
+                    }
+                }
+                else {
+                    System.out.println("Expected maximum completion count after -p!");
+                    return parsedArgs;
+                }
+            }
+            else if("-n".equals(arg)) {
+                if(nextArgumentValid(args, argIndex)) {
+                    String countString = args[argIndex + 1];
+                    argIndex += 2;
+
+                    try {
+                        parsedArgs.maxCorrections = Integer.parseInt(countString);
+                    }
+                    catch(NumberFormatException ex) {
+                        System.out.println("Invalid number specified for maximum corrections!");
+                        return parsedArgs;
+                    }
+                }
+                else {
+                    System.out.println("Expected maximum correction count after -n!");
+                    return parsedArgs;
+                }
+            }
+            else if("-f".equals(arg)) {
+                if(nextArgumentValid(args, argIndex)) {
+                    String levelsString = args[argIndex + 1];
+                    argIndex += 2;
+
+                    try {
+                        parsedArgs.relayoutLevels = Integer.parseInt(levelsString);
+                    }
+                    catch(NumberFormatException ex) {
+                        System.out.println("Invalid number specified for breadth-first levels!");
+                        return parsedArgs;
+                    }
+                }
+                else {
+                    System.out.println("Expected breadth-first level count after -f!");
+                    return parsedArgs;
+                }
+            }
+            else if("-b".equals(arg)) {
+                parsedArgs.batch = true;
+                argIndex++;
+            }
+            else if("-y".equals(arg)) {
+                parsedArgs.trieType = "doublearray";
+                argIndex++;
+            }
+            else if("-s".equals(arg)) {
+                parsedArgs.trieType = "louds";
+                argIndex++;
+            }
+            else if("-o".equals(arg)) {
+                parsedArgs.trieType = "offheap";
+                argIndex++;
+            }
+            else if("-u".equals(arg)) {
+                parsedArgs.trieType = "radix";
+                argIndex++;
+            }
+            else if("-l".equals(arg)) {
+                parsedArgs.letterSignatures = true;
+                argIndex++;
+            }
+            else if("-k".equals(arg)) {
+                parsedArgs.keyboardCosts = true;
+                argIndex++;
+            }
+            else if("-a".equals(arg)) {
+                parsedArgs.adaptiveMaxError = true;
+                argIndex++;
+            }
             else if("-v".equals(arg)) {
                 parsedArgs.verbose = true;
                 argIndex++;
@@ -191,41 +415,183 @@ public class Driver {
             return;
         }
 
+        if((parsedArgs.transpositions || parsedArgs.keyboardCosts ||
+            parsedArgs.maxCompletions > 0 || parsedArgs.maxCorrections > 0 ||
+            parsedArgs.batch) &&
+           !"automaton".equals(parsedArgs.engine)) {
+            System.out.println("Transpositions, keyboard edit costs, completions, corrections " +
+                               "and batch search are supported only by the automaton engine!");
+            return;
+        }
+
+        if("offheap".equals(parsedArgs.trieType)) {
+            System.out.println("Off-heap tries are limited by -XX:MaxDirectMemorySize, " +
+                               "which defaults to the maximum heap size (-Xmx).");
+        }
+
         // Read the dictionaries and build the tries.
-        List<String> dictionaryWords = readWordList(parsedArgs.dictionaryFile);
-        Trie dictionaryTrie = buildTrie(dictionaryWords);
+        Dictionary dictionary = readDictionary(parsedArgs.dictionaryFile);
+        List<String> dictionaryWords = dictionary.words;
+
+        if(!isCompactTrie(parsedArgs.trieType) &&
+           (parsedArgs.letterSignatures || parsedArgs.maxCorrections > 0 ||
+            parsedArgs.relayoutLevels >= 0 ||
+            dictionary.frequencies != null || dictionary.wordIds != null)) {
+            System.out.println("Letter signatures, corrections, relayout and word frequencies " +
+                               "are supported only by the compact trie!");
+            return;
+        }
+
+        Trie dictionaryTrie = buildTrie(dictionary, parsedArgs.trieType);
+
+        if(parsedArgs.letterSignatures) {
+            ((CompactTrie)dictionaryTrie).buildLetterSignatures();
+        }
+
         Trie reversedDictionaryTrie = null;
 
         if(parsedArgs.reversedDictionaryFile != null) {
-            List<String> reversedDictionaryWords = readWordList(parsedArgs.reversedDictionaryFile);
-            reversedDictionaryTrie = buildTrie(reversedDictionaryWords);
+            List<String> reversedDictionaryWords = readDictionary(parsedArgs.reversedDictionaryFile).words;
+            reversedDictionaryTrie = buildTrie(reversedDictionaryWords, parsedArgs.trieType);
+        }
+
+        if(parsedArgs.relayoutLevels >= 0) {
+            // Compare with the default layout using the visited nodes per second.
+            ((CompactTrie)dictionaryTrie).relayout(parsedArgs.relayoutLevels);
+
+            if(reversedDictionaryTrie != null) {
+                ((CompactTrie)reversedDictionaryTrie).relayout(parsedArgs.relayoutLevels);
+            }
         }
 
         AutomatonCache cache = parsedArgs.useCache ? new SimpleAutomatonCache() : null;
-        FuzzyMatching matching = new FuzzyMatching(dictionaryTrie, reversedDictionaryTrie,
-                                                   parsedArgs.maxErrors, cache);
+        EditCosts editCosts = parsedArgs.keyboardCosts ? new KeyboardEditCosts() : null;
+        ExecutorService executor = null;
+        MatchingEngine matching;
+
+        if("automaton".equals(parsedArgs.engine)) {
+            if(parsedArgs.batch) {
+                executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+            }
+
+            matching = new FuzzyMatching(dictionaryTrie, reversedDictionaryTrie,
+                                         parsedArgs.maxErrors, parsedArgs.transpositions,
+                                         editCosts, cache);
+        }
+        else if("dp".equals(parsedArgs.engine)) {
+            matching = new TrieDistanceMatching(dictionaryTrie, parsedArgs.maxErrors);
+        }
+        else if("symspell".equals(parsedArgs.engine)) {
+            matching = new SymmetricDeleteMatching(dictionaryWords, parsedArgs.maxErrors);
+        }
+        else if("qgram".equals(parsedArgs.engine)) {
+            matching = new QGramMatching(dictionaryWords, parsedArgs.maxErrors);
+        }
+        else if("bktree".equals(parsedArgs.engine)) {
+            executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+            matching = new BKTreeMatching(dictionaryWords, parsedArgs.maxErrors, executor);
+        }
+        else if("auto".equals(parsedArgs.engine)) {
+            executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+            matching = buildQueryPlanner(parsedArgs, dictionaryWords, dictionaryTrie,
+                                         reversedDictionaryTrie, cache, executor);
+        }
+        else if("brute".equals(parsedArgs.engine)) {
+            executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+            matching = new BruteForceMatching(dictionaryWords, parsedArgs.maxErrors, executor);
+        }
+        else {
+            System.out.println("Unknown search engine " + parsedArgs.engine + "!");
+            return;
+        }
 
         // Find the similar words for each word in the test file.
         List<String> testWords = readWordList(parsedArgs.testFile);
         long startTime = System.nanoTime();
         int matchingWordCount = 0;
+        List<List<String>> batchMatchingWords = null;
+        SpellingCorrector corrector = null;
+
+        if(parsedArgs.batch) {
+            // All test words are searched at once.
+            batchMatchingWords = ((FuzzyMatching)matching).findMatchingWordsBatch(testWords, executor);
+        }
+        else if(parsedArgs.maxCorrections > 0) {
+            corrector = new SpellingCorrector((CompactTrie)dictionaryTrie, parsedArgs.maxErrors,
+                                              parsedArgs.transpositions, editCosts, 0.01);
+        }
+
+        // In verbose mode the frequencies are shown together with the matching words,
+        // so these are found by findMatches, instead of searching a second time.
+        boolean showMatches = parsedArgs.verbose && dictionary.frequencies != null &&
+                              matching instanceof FuzzyMatching && batchMatchingWords == null &&
+                              corrector == null && parsedArgs.maxCompletions == 0;
+
+        for(int i = 0; i < testWords.size(); i++) {
+            // The test words are treated as typed prefixes if completions are requested.
+            String testWord = testWords.get(i);
+            List<String> matchingWords;
+            List<WordMatch> matches = null;
+
+            if(batchMatchingWords != null) {
+                matchingWords = batchMatchingWords.get(i);
+            }
+            else if(corrector != null) {
+                // The best corrections, ranked by frequency and edit cost.
+                matchingWords = new ArrayList<String>();
+
+                for(Correction correction : corrector.findCorrections(testWord,
+                                                                      parsedArgs.maxCorrections)) {
+                    matchingWords.add(correction.getWord());
+                }
+            }
+            else if(parsedArgs.maxCompletions > 0) {
+                matchingWords = ((FuzzyMatching)matching).findCompletions(testWord,
+                                                                         parsedArgs.maxCompletions);
+            }
+            else if(showMatches) {
+                matches = ((FuzzyMatching)matching).findMatches(testWord);
+                matchingWords = new ArrayList<String>(matches.size());
+
+                for(WordMatch match : matches) {
+                    matchingWords.add(match.getWord());
+                }
+            }
+            else matchingWords = matching.findMatchingWords(testWord);
 
-        for(String testWord : testWords) {
-            List<String> matchingWords = matching.findMatchingWords(testWord);
             matchingWordCount += matchingWords.size();
 
             if(parsedArgs.verbose) {
                 System.out.println("Similar words to " + testWord + ":");
 
-                for(String word : matchingWords) {
-                    System.out.println("    " + word);
+                if(matches != null) {
+                    // Show the frequencies found together with the words.
+                    for(WordMatch match : matches) {
+                        System.out.println("    " + match);
+                    }
+                }
+                else {
+                    for(String word : matchingWords) {
+                        System.out.println("    " + word);
+                    }
                 }
             }
         }
 
         double duration = (double)(System.nanoTime() - startTime) / 1.0e9;
+
+        if(executor != null) {
+            executor.shutdown();
+        }
+
         System.out.println("Operation completed.");
         System.out.println("Matching words found: " + matchingWordCount);
+
+        if(matching instanceof FuzzyMatching) {
+            long visitedNodes = ((FuzzyMatching)matching).getVisitedNodeCount();
+            System.out.println("Visited trie nodes: " + visitedNodes);
+            System.out.println("Visited trie nodes per second: " + (long)(visitedNodes / duration));
+        }
         System.out.println("Duration: " + duration);
     }
 }
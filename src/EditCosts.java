@@ -0,0 +1,59 @@
+// Copyright (c) 2013 Gratian Lup. All rights reserved.
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are
+// met:
+//
+// * Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+//
+// * Redistributions in binary form must reproduce the above
+// copyright notice, this list of conditions and the following
+// disclaimer in the documentation and/or other materials provided
+// with the distribution.
+//
+// * The name "FuzzyStringMatching" must not be used to endorse or promote
+// products derived from this software without prior written permission.
+//
+// * Products derived from this software may not be called "FuzzyStringMatching" nor
+// may "FuzzyStringMatching" appear in their names without prior written
+// permission of the author.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+// A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+// OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+// SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+// LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+// DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE
+// The costs of the edit operations used by a weighted Levenshtein distance.
+// All costs are positive integers, and no cost may exceed the default cost,
+// which is used for any edit that is not given a specific cost.
+// The letter before the current position in the pattern word is passed
+// as '\0' at the start of the word.
+public interface EditCosts {
+    // The cost of any edit without a more specific cost.
+    public int getDefaultCost();
+
+    // The cost of having 'letter' in the candidate word instead of 'patternLetter'.
+    public int getSubstitutionCost(char patternLetter, char letter);
+
+    // The cost of having 'letter' inserted in the candidate word
+    // after the pattern letter 'previousPatternLetter'.
+    public int getInsertionCost(char letter, char previousPatternLetter);
+
+    // The cost of 'patternLetter' missing from the candidate word,
+    // 'previousPatternLetter' being the letter before it in the pattern.
+    public int getDeletionCost(char patternLetter, char previousPatternLetter);
+
+    // Returns the letters whose substitution cost for 'patternLetter'
+    // may be lower than the default cost.
+    public char[] getSubstitutionLetters(char patternLetter);
+
+    // Returns the letters whose insertion cost after 'previousPatternLetter'
+    // may be lower than the default cost.
+    public char[] getInsertionLetters(char previousPatternLetter);
+}
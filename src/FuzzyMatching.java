@@ -30,13 +30,20 @@
 // (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
 // OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 
-public class FuzzyMatching {
+public class FuzzyMatching implements MatchingEngine {
     // Represents an execution point in the fuzzy matching algorithm.
     private static class ExecutionState {
         public Trie trieNode;      // The reached trie node.
         public State state;        // The reached state in the automaton.
         public String matchedWord; // The word built up to this point.
+        public long letterMask;    // The letter bits of the matched word.
+        public int maxFrequency;   // The largest frequency below the trie node (findCompletions).
 
         public ExecutionState() { }
 
@@ -48,20 +55,152 @@ public class FuzzyMatching {
     }
 
 
+    // Represents an execution point in the search of a path-compressed trie.
+    private static class RadixExecutionState {
+        public int nodeId;         // The reached trie node.
+        public State state;        // The reached state in the automaton.
+        public String matchedWord; // The word built up to this point.
+
+        public RadixExecutionState(int nodeId, State state, String matchedWord) {
+            this.nodeId = nodeId;
+            this.state = state;
+            this.matchedWord = matchedWord;
+        }
+    }
+
+
+    // Represents an execution point shared by multiple queries searched together.
+    // The automaton states of the queries that can still match are kept in parallel arrays.
+    private static class BatchExecutionState {
+        public Trie trieNode;      // The reached trie node.
+        public int[] queries;      // The index of each query in the group.
+        public State[] states;     // The reached state in the automaton of each query.
+        public int count;          // The number of queries still active.
+        public String matchedWord; // The word built up to this point.
+        public long letterMask;    // The letter bits of the matched word.
+
+        public BatchExecutionState(Trie trieNode, int capacity, String matchedWord) {
+            this.trieNode = trieNode;
+            this.queries = new int[capacity];
+            this.states = new State[capacity];
+            this.matchedWord = matchedWord;
+        }
+    }
+
+
+    // The number of letters of a searched word associated
+    // with each letter bit (see Trie.getLetterBit).
+    private static class QueryLetters {
+        public long mask;     // The bits of all letters.
+        public long[] bits;   // The distinct bits.
+        public int[] counts;  // The number of letters for each bit.
+        public int bitCount;
+
+        public QueryLetters(String word) {
+            bits = new long[word.length()];
+            counts = new int[word.length()];
+
+            for(int i = 0; i < word.length(); i++) {
+                long bit = Trie.getLetterBit(word.charAt(i));
+                int index = 0;
+
+                while(index < bitCount && bits[index] != bit) {
+                    index++;
+                }
+
+                if(index == bitCount) {
+                    bits[bitCount++] = bit;
+                    mask |= bit;
+                }
+
+                counts[index]++;
+            }
+        }
+
+        // Returns the number of letters of the word not found among
+        // the available letters. Each one must be deleted or substituted.
+        public int countMissingLetters(long availableLetters) {
+            if((mask & ~availableLetters) == 0) {
+                return 0;
+            }
+
+            int missingLetters = 0;
+
+            for(int i = 0; i < bitCount; i++) {
+                if((bits[i] & availableLetters) == 0) {
+                    missingLetters += counts[i];
+                }
+            }
+
+            return missingLetters;
+        }
+    }
+
+
+    // The order of the completions: the most frequent words first, then the shorter
+    // ones, then alphabetically, so that without frequencies the shorter words come first.
+    static final Comparator<WordMatch> COMPLETION_ORDER = new Comparator<WordMatch>() {
+        @Override
+        public int compare(WordMatch a, WordMatch b) {
+            if(a.getFrequency() != b.getFrequency()) {
+                return (a.getFrequency() > b.getFrequency()) ? -1 : 1;
+            }
+
+            if(a.getWord().length() != b.getWord().length()) {
+                return a.getWord().length() - b.getWord().length();
+            }
+
+            return a.getWord().compareTo(b.getWord());
+        }
+    };
+
+    // Number of distinct queries searched together in a single walk of the trie.
+    private static final int BATCH_GROUP_SIZE = 64;
+
     private Trie trie;
     private Trie reversedTrie;
     private int maxError;
+    private boolean transpositions;
+    private EditCosts editCosts;
     private AutomatonCache cache;
+    private AtomicLong visitedNodeCount = new AtomicLong();
 
-    public FuzzyMatching(Trie trie, Trie reversedTrie, int maxError, AutomatonCache cache) {
+    // If edit costs are specified, the maximum error is the maximum total cost
+    // of the edits, otherwise the maximum number of edits.
+    public FuzzyMatching(Trie trie, Trie reversedTrie, int maxError, boolean transpositions,
+                         EditCosts editCosts, AutomatonCache cache) {
         this.trie = trie;
         this.reversedTrie = reversedTrie;
         this.maxError = maxError;
+        this.transpositions = transpositions;
+        this.editCosts = editCosts;
+        this.cache = cache;
 
         if(reversedTrie != null && maxError != 2) {
             throw new IllegalArgumentException("Reveresed-word dictionary can be used " +
                                                "only with maximum error of two!");
         }
+
+        if(reversedTrie != null && transpositions) {
+            // A swap of the letters around the middle of the word
+            // is not covered by the cases of the split search.
+            throw new IllegalArgumentException("Reveresed-word dictionary can't be used " +
+                                               "with transpositions!");
+        }
+
+        if(reversedTrie != null && editCosts != null) {
+            throw new IllegalArgumentException("Reveresed-word dictionary can't be used " +
+                                               "with weighted edit costs!");
+        }
+    }
+
+    public FuzzyMatching(Trie trie, Trie reversedTrie, int maxError,
+                         boolean transpositions, AutomatonCache cache) {
+        this(trie, reversedTrie, maxError, transpositions, null, cache);
+    }
+
+    public FuzzyMatching(Trie trie, Trie reversedTrie, int maxError, AutomatonCache cache) {
+        this(trie, reversedTrie, maxError, false, cache);
     }
 
     public FuzzyMatching(Trie trie, Trie reversedTrie, int maxError) {
@@ -76,32 +215,82 @@ public class FuzzyMatching {
         this(trie, maxError, null);
     }
 
-    private LevenshteinAutomaton createAutomaton(String word, int maxError) {
+    public FuzzyMatching(Trie trie, int maxError, boolean transpositions) {
+        this(trie, null, maxError, transpositions, null);
+    }
+
+    @Override
+    public int getMaxError() {
+        return maxError;
+    }
+
+    @Override
+    public DistanceModel getDistanceModel() {
+        return new DistanceModel(transpositions, editCosts);
+    }
+
+    @Override
+    public double estimateCost(String word, DictionaryStatistics statistics) {
+        // The DFA construction is exponential in the maximum error.
+        double automatonCost = word.length() * (maxError + 1) * (1 << (maxError + 1));
+
+        if(reversedTrie != null) {
+            // Most of the work is done by the search with one error
+            // for the first half, the other searches starting from exact matches.
+            return automatonCost + 3 * statistics.estimateVisitedNodes(word.length() / 2, 1);
+        }
+
+        return automatonCost + statistics.estimateVisitedNodes(word.length(), maxError);
+    }
+
+    private LevenshteinAutomaton createAutomaton(String word, int maxError,
+                                                 boolean prefixMode, boolean lazyDFA) {
         // Check if the automaton has previously been requested and still
         // is available in the cache. Caching the automaton (instead of the found words)
         // is useful when using the reversed-word dictionary because many words share
         // the same first or second half, which must not be recreated.
-        if(cache != null) {
-            LevenshteinAutomaton automaton = cache.get(word, maxError);
+        // The cache is shared by the threads of a batch search. It is keyed only
+        // by the word and the maximum error, so only the complete DFA of the ordinary
+        // search is cached: a prefix automaton accepts other words, and a lazy DFA
+        // (batch search) adds states while it is used, so it can't be shared by threads.
+        boolean useCache = (cache != null) && !prefixMode && !lazyDFA;
+
+        if(useCache) {
+            LevenshteinAutomaton automaton;
+
+            synchronized(cache) {
+                automaton = cache.get(word, maxError);
+            }
 
-            if(automaton != null) {
+            if(automaton != null && automaton.transpositions == transpositions &&
+               automaton.editCosts == editCosts && !automaton.prefixMode) {
                 return automaton;
             }
         }
 
         LevenshteinAutomaton automaton = null;
-        automaton = new LevenshteinAutomaton(maxError);
+        automaton = new LevenshteinAutomaton(maxError, transpositions, editCosts, prefixMode);
         automaton.buildNFA(word);
-        automaton.convertToDFA();
+
+        if(lazyDFA) {
+            automaton.convertToLazyDFA();
+        }
+        else automaton.convertToDFA();
 
         // Cache the automaton for subsequent requests.
-        if(cache != null) {
-            cache.add(automaton, word, maxError);
+        if(useCache) {
+            synchronized(cache) {
+                cache.add(automaton, word, maxError);
+            }
         }
 
         return automaton;
     }
 
+    private LevenshteinAutomaton createAutomaton(String word, int maxError) {
+        return createAutomaton(word, maxError, false, false);
+    }
+
     private String reverseWord(String word) {
         return new StringBuilder(word).reverse().toString();
     }
@@ -122,12 +311,19 @@ public class FuzzyMatching {
         else return null;
     }
 
+    // Finds the trie nodes whose path is accepted by the automaton. The path
+    // doesn't need to be a word, since the search continues below the node.
     private void findFuzzyStates(Trie state, LevenshteinAutomaton automaton,
                                  List<Trie> fuzzyStates, List<String> fuzzyWords) {
         List<ExecutionState> worklist = new ArrayList<ExecutionState>();
         ExecutionState startState = new ExecutionState(state, automaton.startState, "");
         worklist.add(startState);
 
+        if(automaton.startState.isFinal()) {
+            fuzzyStates.add(state);
+            fuzzyWords.add("");
+        }
+
         while(!worklist.isEmpty()) {
             ExecutionState currentState = worklist.remove(worklist.size() - 1);
             Trie.TrieChildren children = currentState.trieNode.getChildren();
@@ -142,7 +338,7 @@ public class FuzzyMatching {
                     ExecutionState newState = new ExecutionState(trieChild, nextState, newWord);
                     worklist.add(newState);
 
-                    if(trieChild.isTerminator() && nextState.isFinal()) {
+                    if(nextState.isFinal()) {
                         fuzzyStates.add(trieChild);
                         fuzzyWords.add(newWord);
                     }
@@ -157,6 +353,12 @@ public class FuzzyMatching {
         ExecutionState startState = new ExecutionState(state, automaton.startState, "");
         worklist.add(startState);
 
+        if(state.isTerminator() && automaton.startState.isFinal()) {
+            // The word ending at the start node, the rest of the searched
+            // word being deleted (the empty suffix).
+            matchingWords.add("");
+        }
+
         while(!worklist.isEmpty()) {
             ExecutionState currentState = worklist.remove(worklist.size() - 1);
             Trie.TrieChildren children = currentState.trieNode.getChildren();
@@ -185,7 +387,9 @@ public class FuzzyMatching {
         // See the second half of "Fast string correction with Levenshtein automata"
         // by K. Schulz, S. Mihov for a detailed explanation of the concept of using
         // a dictionary with inverted words to greatly reduce search time.
-        List<String> matchingWords = new ArrayList<String>();
+        // A word can be found by more than one case (and by different splits
+        // in the same case), so the found words are kept in a set.
+        Set<String> matchingWords = new LinkedHashSet<String>();
         String wordA = word.substring(0, word.length() / 2);
         String wordB = word.substring(word.length() / 2, word.length());
         String reversedWordA = reverseWord(wordA);
@@ -238,9 +442,10 @@ public class FuzzyMatching {
             }
         }
 
-        return matchingWords;
+        return new ArrayList<String>(matchingWords);
     }
 
+    @Override
     public List<String> findMatchingWords(String word) {
         if(reversedTrie != null) {
             // If a reversed-word dictionary is used the search can be made
@@ -248,20 +453,96 @@ public class FuzzyMatching {
             return findMatchingWordsSplit(word);
         }
 
+        List<String> matchingWords = new ArrayList<String>();
+        findMatchingWordsImpl(word, matchingWords, null);
+        return matchingWords;
+    }
+
+    // Returns the matching words together with the frequency
+    // and identifier stored for them in the trie, if any.
+    public List<WordMatch> findMatches(String word) {
+        List<WordMatch> matches = new ArrayList<WordMatch>();
+
+        if(reversedTrie != null) {
+            // The words are built from parts found in two tries,
+            // the data is available only in the trie of complete words.
+            for(String matchingWord : findMatchingWordsSplit(word)) {
+                Trie trieNode = findMatchingState(matchingWord, trie);
+
+                if(trieNode == null || !trieNode.isTerminator()) {
+                    throw new IllegalStateException("Word " + matchingWord + " found in the reversed " +
+                                                    "dictionary is missing from the dictionary!");
+                }
+
+                matches.add(new WordMatch(matchingWord, trieNode.getFrequency(),
+                                          trieNode.getWordId()));
+            }
+
+            return matches;
+        }
+
+        findMatchingWordsImpl(word, null, matches);
+        return matches;
+    }
+
+    // Checks if the trie node at the specified depth has below it words whose
+    // length is within the maximum error of the searched word length.
+    // Each inserted or deleted letter costs at least 1, also with weighted costs.
+    private boolean isLengthPossible(Trie trieNode, int depth, int wordLength) {
+        return isLengthPossible(trieNode.getMinRemainingLength(), trieNode.getMaxRemainingLength(),
+                                depth, wordLength);
+    }
+
+    private boolean isLengthPossible(int minRemainingLength, int maxRemainingLength,
+                                     int depth, int wordLength) {
+        if(depth + minRemainingLength > wordLength + maxError) {
+            return false;
+        }
+
+        return (maxRemainingLength == Integer.MAX_VALUE) ||
+               (depth + maxRemainingLength >= wordLength - maxError);
+    }
+
+    // Checks if the words below the trie node could contain enough of the letters
+    // of the searched word, knowing the letters leading to the node. Each letter
+    // of the searched word not found in a candidate costs at least 1.
+    // Without letter signatures in the trie all letters are considered available.
+    private boolean areLettersPossible(Trie trieNode, long letterMask, QueryLetters queryLetters) {
+        long availableLetters = letterMask | trieNode.getLetterSignature();
+        return queryLetters.countMissingLetters(availableLetters) <= maxError;
+    }
+
+    // Returns the number of trie nodes visited by all searches so far,
+    // excluding the completions and the searches using the reversed-word dictionary.
+    public long getVisitedNodeCount() {
+        return visitedNodeCount.get();
+    }
+
+    // Adds the found words to 'matchingWords' or 'matches', whichever is not null.
+    private void findMatchingWordsImpl(String word, List<String> matchingWords,
+                                       List<WordMatch> matches) {
         // Create an automaton accepting the word and start the search
         // in both the automaton and the trie, keeping them synchronized.
         // A transition is taken only if the automaton allows it
         // and the trie has a child state for the associated letter.
         LevenshteinAutomaton automaton = createAutomaton(word, maxError);
-        List<String> matchingWords = new ArrayList<String>();
 
+        if(trie instanceof CompactRadixTrie) {
+            findMatchingWordsRadix((CompactRadixTrie)trie, automaton, word.length(),
+                                   matchingWords, matches);
+            return;
+        }
+
+        QueryLetters queryLetters = new QueryLetters(word);
         List<ExecutionState> worklist = new ArrayList<ExecutionState>();
         ExecutionState startState = new ExecutionState(trie, automaton.startState, "");
         worklist.add(startState);
+        long visitedNodes = 0;
 
         while(!worklist.isEmpty()) {
             ExecutionState currentState = worklist.remove(worklist.size() - 1);
             Trie.TrieChildren children = currentState.trieNode.getChildren();
+            visitedNodes++;
 
             for(int i = 0; i < children.size(); i++) {
                 // Check which of the possible letters are accepted by the automaton.
@@ -270,19 +551,354 @@ public class FuzzyMatching {
                 State nextState = currentState.state.getStateForLetter(trieLetter);
 
                 if(nextState != null) {
+                    if(!isLengthPossible(trieChild, currentState.matchedWord.length() + 1,
+                                         word.length())) {
+                        // All words below the child are too short or too long.
+                        continue;
+                    }
+
+                    long letterMask = currentState.letterMask | Trie.getLetterBit(trieLetter);
+
+                    if(!areLettersPossible(trieChild, letterMask, queryLetters)) {
+                        // Too many letters of the word are missing below the child.
+                        continue;
+                    }
+
                     // Add the next state/trie pair to the worklist as a candidate.
                     String newWord = currentState.matchedWord + trieLetter;
                     ExecutionState newState = new ExecutionState(trieChild, nextState, newWord);
+                    newState.letterMask = letterMask;
                     worklist.add(newState);
 
                     if(trieChild.isTerminator() && nextState.isFinal()) {
                         // Found a final state/trie pair, remember the word.
+                        if(matchingWords != null) {
+                            matchingWords.add(newWord);
+                        }
+                        else matches.add(new WordMatch(newWord, trieChild.getFrequency(),
+                                                       trieChild.getWordId()));
+                    }
+                }
+            }
+        }
+
+        visitedNodeCount.addAndGet(visitedNodes);
+    }
+
+    // Same as findMatchingWordsImpl, but taking advantage of the path compression:
+    // all letters of an edge label are given to the automaton in a loop, stopping
+    // as soon as no state is reached, and only the node at the end of the edge
+    // is added to the worklist. The edge is skipped without feeding its label
+    // if the length of the words below its end is not possible. The radix trie
+    // has no letter signatures, so there is no pruning by letters.
+    private void findMatchingWordsRadix(CompactRadixTrie radixTrie, LevenshteinAutomaton automaton,
+                                        int wordLength, List<String> matchingWords,
+                                        List<WordMatch> matches) {
+        char[] letterPool = radixTrie.getLetterPool();
+        List<RadixExecutionState> worklist = new ArrayList<RadixExecutionState>();
+        worklist.add(new RadixExecutionState(0, automaton.startState, ""));
+        long visitedNodes = 0;
+
+        while(!worklist.isEmpty()) {
+            RadixExecutionState currentState = worklist.remove(worklist.size() - 1);
+            int edgeCount = radixTrie.getEdgeCount(currentState.nodeId);
+            visitedNodes++;
+
+            for(int i = 0; i < edgeCount; i++) {
+                int edgeId = radixTrie.getEdgeAt(currentState.nodeId, i);
+                int labelStart = radixTrie.getLabelStart(edgeId);
+                int labelEnd = labelStart + radixTrie.getLabelLength(edgeId);
+                int targetId = radixTrie.getEdgeTarget(edgeId);
+                int depth = currentState.matchedWord.length() + (labelEnd - labelStart);
+
+                if(!isLengthPossible(radixTrie.getMinRemainingLength(targetId),
+                                     radixTrie.getMaxRemainingLength(targetId), depth, wordLength)) {
+                    // All words below the edge are too short or too long.
+                    continue;
+                }
+
+                State nextState = currentState.state;
+
+                for(int position = labelStart; position < labelEnd && nextState != null; position++) {
+                    nextState = nextState.getStateForLetter(letterPool[position]);
+                }
+
+                if(nextState == null) {
+                    continue;
+                }
+
+                // Add the next state/node pair to the worklist as a candidate.
+                String newWord = currentState.matchedWord +
+                                 String.valueOf(letterPool, labelStart, labelEnd - labelStart);
+                worklist.add(new RadixExecutionState(targetId, nextState, newWord));
+
+                if(radixTrie.isTerminatorNode(targetId) && nextState.isFinal()) {
+                    // Found a final state/node pair, remember the word.
+                    if(matchingWords != null) {
                         matchingWords.add(newWord);
                     }
+                    else matches.add(new WordMatch(newWord, 0, -1));
+                }
+            }
+        }
+
+        visitedNodeCount.addAndGet(visitedNodes);
+    }
+
+    // Returns at most 'maxResults' words starting with a prefix that is
+    // similar to the specified one (for example, what was typed so far in a search box),
+    // in the order of COMPLETION_ORDER: the most frequent words first.
+    public List<String> findCompletions(String prefix, int maxResults) {
+        // In prefix mode the accepting states of the automaton can't be left,
+        // so all words below a trie node reached with an accepting state are
+        // completions. The trie nodes are visited best-first, by the largest
+        // frequency below them, then by depth. The walk stops when the next node
+        // can't lead to a word better than the N-th completion found, which
+        // without frequencies happens after visiting the words up to its length.
+        if(maxResults <= 0) {
+            return new ArrayList<String>();
+        }
+
+        LevenshteinAutomaton automaton = createAutomaton(prefix, maxError, true, false);
+        PriorityQueue<WordMatch> best = new PriorityQueue<WordMatch>(maxResults + 1,
+                                                                    Collections.reverseOrder(COMPLETION_ORDER));
+        PriorityQueue<ExecutionState> worklist = new PriorityQueue<ExecutionState>(64,
+                new Comparator<ExecutionState>() {
+            @Override
+            public int compare(ExecutionState a, ExecutionState b) {
+                if(a.maxFrequency != b.maxFrequency) {
+                    return (a.maxFrequency > b.maxFrequency) ? -1 : 1;
+                }
+
+                return a.matchedWord.length() - b.matchedWord.length();
+            }
+        });
+
+        ExecutionState startState = new ExecutionState(trie, automaton.startState, "");
+        startState.maxFrequency = trie.getMaxSubtreeFrequency();
+        worklist.add(startState);
+
+        while(!worklist.isEmpty()) {
+            ExecutionState currentState = worklist.poll();
+
+            if(best.size() == maxResults) {
+                // The words below the node are longer than its word.
+                WordMatch worst = best.peek();
+
+                if(currentState.maxFrequency < worst.getFrequency() ||
+                   (currentState.maxFrequency == worst.getFrequency() &&
+                    currentState.matchedWord.length() + 1 > worst.getWord().length())) {
+                    break;
+                }
+            }
+
+            Trie.TrieChildren children = currentState.trieNode.getChildren();
+
+            for(int i = 0; i < children.size(); i++) {
+                char trieLetter = children.getLetter(i);
+                Trie trieChild = children.getChild(i);
+                State nextState = currentState.state.isFinal() ? currentState.state :
+                                  currentState.state.getStateForLetter(trieLetter);
+
+                if(nextState != null) {
+                    String newWord = currentState.matchedWord + trieLetter;
+                    ExecutionState newState = new ExecutionState(trieChild, nextState, newWord);
+                    newState.maxFrequency = trieChild.getMaxSubtreeFrequency();
+                    worklist.add(newState);
+
+                    if(trieChild.isTerminator() && nextState.isFinal()) {
+                        WordMatch completion = new WordMatch(newWord, trieChild.getFrequency(),
+                                                             trieChild.getWordId());
+
+                        if(best.size() < maxResults || COMPLETION_ORDER.compare(completion, best.peek()) < 0) {
+                            best.add(completion);
+
+                            if(best.size() > maxResults) {
+                                best.poll();
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        List<WordMatch> completions = new ArrayList<WordMatch>(best);
+        Collections.sort(completions, COMPLETION_ORDER);
+        List<String> completionWords = new ArrayList<String>(completions.size());
+
+        for(WordMatch completion : completions) {
+            completionWords.add(completion.getWord());
+        }
+
+        return completionWords;
+    }
+
+    // Creates a session for searching a word typed one letter at a time,
+    // reusing the work done for the previous letters. Only the Levenshtein
+    // distance is supported; an IllegalStateException is thrown if this
+    // matching uses transpositions or weighted edit costs.
+    public FuzzySearchSession createSession() {
+        if(transpositions || editCosts != null) {
+            throw new IllegalStateException("Search sessions support only " +
+                                            "the Levenshtein distance!");
+        }
+
+        return new FuzzySearchSession(trie, maxError);
+    }
+
+    // Searches the words of a group together, walking the trie only once.
+    // A trie node is visited as long as at least one automaton accepts its word,
+    // and the children of each node are retrieved once for all queries.
+    // The automata are lazy DFAs: building a complete DFA for each query costs
+    // more than the walk itself, while the walk reaches only a few of its states.
+    private void findMatchingWordsGroup(List<String> groupWords, List<List<String>> groupResults) {
+        BatchExecutionState startState = new BatchExecutionState(trie, groupWords.size(), "");
+        QueryLetters[] queryLetters = new QueryLetters[groupWords.size()];
+
+        for(int i = 0; i < groupWords.size(); i++) {
+            groupResults.add(new ArrayList<String>());
+            startState.queries[i] = i;
+            startState.states[i] = createAutomaton(groupWords.get(i), maxError, false, true).startState;
+            queryLetters[i] = new QueryLetters(groupWords.get(i));
+        }
+
+        startState.count = groupWords.size();
+        List<BatchExecutionState> worklist = new ArrayList<BatchExecutionState>();
+        worklist.add(startState);
+        long visitedNodes = 0;
+
+        while(!worklist.isEmpty()) {
+            BatchExecutionState currentState = worklist.remove(worklist.size() - 1);
+            Trie.TrieChildren children = currentState.trieNode.getChildren();
+            visitedNodes++;
+
+            for(int i = 0; i < children.size(); i++) {
+                char trieLetter = children.getLetter(i);
+                Trie trieChild = children.getChild(i);
+                BatchExecutionState newState = null;
+                boolean isTerminator = trieChild.isTerminator();
+
+                // Advance the automaton of each active query.
+                int depth = currentState.matchedWord.length() + 1;
+                long letterMask = currentState.letterMask | Trie.getLetterBit(trieLetter);
+
+                for(int j = 0; j < currentState.count; j++) {
+                    int query = currentState.queries[j];
+                    State nextState = currentState.states[j].getStateForLetter(trieLetter);
+
+                    if(nextState == null ||
+                       !isLengthPossible(trieChild, depth, groupWords.get(query).length()) ||
+                       !areLettersPossible(trieChild, letterMask, queryLetters[query])) {
+                        continue;
+                    }
+
+                    if(newState == null) {
+                        newState = new BatchExecutionState(trieChild, currentState.count - j,
+                                                           currentState.matchedWord + trieLetter);
+                        newState.letterMask = letterMask;
+                    }
+
+                    newState.queries[newState.count] = currentState.queries[j];
+                    newState.states[newState.count] = nextState;
+                    newState.count++;
+
+                    if(isTerminator && nextState.isFinal()) {
+                        groupResults.get(query).add(newState.matchedWord);
+                    }
+                }
+
+                if(newState != null) {
+                    worklist.add(newState);
+                }
+            }
+        }
+
+        visitedNodeCount.addAndGet(visitedNodes);
+    }
+
+    // Returns the matching words for each of the specified words, in the same order.
+    // The distinct words are sorted and split into groups of similar words, each group
+    // being searched in a single walk of the trie, which shares the visit of the trie
+    // nodes near the root between the words. If an executor is specified,
+    // the groups are searched in parallel.
+    public List<List<String>> findMatchingWordsBatch(List<String> words, ExecutorService executor) {
+        List<String> distinctWords = new ArrayList<String>(new TreeSet<String>(words));
+        Map<String, List<String>> resultsByWord = new HashMap<String, List<String>>();
+        List<Future<List<List<String>>>> results = new ArrayList<Future<List<List<String>>>>();
+
+        for(int start = 0; start < distinctWords.size(); start += BATCH_GROUP_SIZE) {
+            final List<String> groupWords =
+                    distinctWords.subList(start, Math.min(distinctWords.size(), start + BATCH_GROUP_SIZE));
+            Callable<List<List<String>>> task = new Callable<List<List<String>>>() {
+                @Override
+                public List<List<String>> call() {
+                    List<List<String>> groupResults = new ArrayList<List<String>>();
+
+                    if(reversedTrie != null) {
+                        // The split search can't be shared between words.
+                        for(String word : groupWords) {
+                            groupResults.add(findMatchingWordsSplit(word));
+                        }
+                    }
+                    else findMatchingWordsGroup(groupWords, groupResults);
+
+                    return groupResults;
                 }
+            };
+
+            try {
+                if(executor != null) {
+                    results.add(executor.submit(task));
+                }
+                else {
+                    List<List<String>> groupResults = task.call();
+
+                    for(int i = 0; i < groupWords.size(); i++) {
+                        resultsByWord.put(groupWords.get(i), groupResults.get(i));
+                    }
+                }
+            }
+            catch(Exception ex) {
+                throw new RuntimeException("Failed to search for matching words", ex);
             }
         }
 
+        try {
+            for(int i = 0; i < results.size(); i++) {
+                List<List<String>> groupResults = results.get(i).get();
+
+                for(int j = 0; j < groupResults.size(); j++) {
+                    resultsByWord.put(distinctWords.get(i * BATCH_GROUP_SIZE + j), groupResults.get(j));
+                }
+            }
+        }
+        catch(InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while searching for matching words", ex);
+        }
+        catch(ExecutionException ex) {
+            throw new RuntimeException("Failed to search for matching words", ex.getCause());
+        }
+
+        // A repeated word gets a copy of the result list,
+        // so that changing one list doesn't change the others.
+        List<List<String>> matchingWords = new ArrayList<List<String>>(words.size());
+        Set<String> returnedWords = new HashSet<String>();
+
+        for(String word : words) {
+            List<String> wordResults = resultsByWord.get(word);
+
+            if(!returnedWords.add(word)) {
+                wordResults = new ArrayList<String>(wordResults);
+            }
+
+            matchingWords.add(wordResults);
+        }
+
         return matchingWords;
     }
+
+    public List<List<String>> findMatchingWordsBatch(List<String> words) {
+        return findMatchingWordsBatch(words, null);
+    }
 }
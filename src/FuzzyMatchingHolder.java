@@ -0,0 +1,264 @@
+// Copyright (c) 2013 Gratian Lup. All rights reserved.
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are
+// met:
+//
+// * Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+//
+// * Redistributions in binary form must reproduce the above
+// copyright notice, this list of conditions and the following
+// disclaimer in the documentation and/or other materials provided
+// with the distribution.
+//
+// * The name "FuzzyStringMatching" must not be used to endorse or promote
+// products derived from this software without prior written permission.
+//
+// * Products derived from this software may not be called "FuzzyStringMatching" nor
+// may "FuzzyStringMatching" appear in their names without prior written
+// permission of the author.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+// A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+// OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+// SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+// LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+// DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Holds the FuzzyMatching of the current dictionary and replaces it
+// with one for a new dictionary without pausing the searches.
+// The tries of the new dictionary are built in the background while
+// the searches continue on the current ones; the new snapshot is then
+// published atomically. A search that started before the swap finishes
+// on the snapshot it started with, which is freed when no longer used.
+public class FuzzyMatchingHolder implements MatchingEngine {
+    // Notified after a new dictionary is published, for example
+    // to clear caches of results that depend on the dictionary.
+    public interface SwapListener {
+        public void dictionarySwapped(FuzzyMatchingHolder holder);
+    }
+
+    // A dictionary with its tries, never modified after it is published.
+    private static class Snapshot {
+        public final long version;
+        public final FuzzyMatching matching;
+        public final int wordCount;
+        public final long buildDuration; // In milliseconds.
+
+        // As returned by System.currentTimeMillis, set by publish
+        // just before the snapshot becomes visible to the searches.
+        public long swapTime;
+
+        public Snapshot(long version, FuzzyMatching matching, int wordCount, long buildDuration) {
+            this.version = version;
+            this.matching = matching;
+            this.wordCount = wordCount;
+            this.buildDuration = buildDuration;
+        }
+    }
+
+    private int maxError;
+    private boolean useReversedTrie;
+    private boolean transpositions;
+    private EditCosts editCosts;
+    private AutomatonCache cache;
+    private ExecutorService executor;
+    private AtomicReference<Snapshot> snapshot = new AtomicReference<Snapshot>();
+    private AtomicLong lastRequestedVersion = new AtomicLong();
+    private List<SwapListener> listeners = new CopyOnWriteArrayList<SwapListener>();
+
+    // The automaton cache is kept across swaps, the automata depending only
+    // on the searched words. The new dictionaries are built on the executor,
+    // or in the thread requesting the swap if it is null. The frequencies
+    // and identifiers of the words are stored in the trie, as by
+    // CompactTrie.addWords(List, int[], long[]); any of them can be null.
+    public FuzzyMatchingHolder(List<String> words, int[] frequencies, long[] wordIds,
+                               int maxError, boolean useReversedTrie,
+                               boolean transpositions, EditCosts editCosts,
+                               AutomatonCache cache, ExecutorService executor) {
+        checkWordData(words, frequencies, wordIds);
+        this.maxError = maxError;
+        this.useReversedTrie = useReversedTrie;
+        this.transpositions = transpositions;
+        this.editCosts = editCosts;
+        this.cache = cache;
+        this.executor = executor;
+        Snapshot initialSnapshot = buildSnapshot(words, frequencies, wordIds,
+                                                 lastRequestedVersion.incrementAndGet());
+        initialSnapshot.swapTime = System.currentTimeMillis();
+        snapshot.set(initialSnapshot);
+    }
+
+    public FuzzyMatchingHolder(List<String> words, int maxError, boolean useReversedTrie,
+                               boolean transpositions, EditCosts editCosts,
+                               AutomatonCache cache, ExecutorService executor) {
+        this(words, null, null, maxError, useReversedTrie,
+             transpositions, editCosts, cache, executor);
+    }
+
+    public FuzzyMatchingHolder(List<String> words, int maxError, ExecutorService executor) {
+        this(words, maxError, false, false, null, null, executor);
+    }
+
+    private static void checkWordData(List<String> words, int[] frequencies, long[] wordIds) {
+        if(words == null) {
+            throw new IllegalArgumentException("Word list is null");
+        }
+
+        if((frequencies != null && frequencies.length != words.size()) ||
+           (wordIds != null && wordIds.length != words.size())) {
+            throw new IllegalArgumentException("Word frequencies or identifiers " +
+                                               "don't match the word list!");
+        }
+    }
+
+    private Snapshot buildSnapshot(List<String> words, int[] frequencies,
+                                   long[] wordIds, long version) {
+        long startTime = System.nanoTime();
+        CompactTrie trie = new CompactTrie();
+
+        if(frequencies != null || wordIds != null) {
+            trie.addWords(words, frequencies, wordIds);
+        }
+        else trie.addWords(new ArrayList<String>(words));
+        CompactTrie reversedTrie = null;
+
+        if(useReversedTrie) {
+            List<String> reversedWords = new ArrayList<String>(words.size());
+
+            for(String word : words) {
+                reversedWords.add(new StringBuilder(word).reverse().toString());
+            }
+
+            reversedTrie = new CompactTrie();
+            reversedTrie.addWords(reversedWords);
+        }
+
+        FuzzyMatching matching = new FuzzyMatching(trie, reversedTrie, maxError,
+                                                   transpositions, editCosts, cache);
+        long buildDuration = (System.nanoTime() - startTime) / 1000000;
+        return new Snapshot(version, matching, words.size(), buildDuration);
+    }
+
+    // Starts building the tries for the new words. With an executor this returns
+    // immediately: the searches use the current dictionary until the new one
+    // is published, and callers that need the new dictionary must wait on
+    // the returned Future. Without an executor the dictionary is already
+    // published when this returns. If several swaps are requested the dictionary
+    // of the latest one is kept, even if an earlier one finishes later.
+    // The frequencies and identifiers of the words can be null (see the constructor);
+    // those of the current dictionary are not kept.
+    public Future<Void> swap(List<String> words, int[] frequencies, long[] wordIds) {
+        checkWordData(words, frequencies, wordIds);
+        final List<String> wordsCopy = new ArrayList<String>(words);
+        final int[] frequenciesCopy = (frequencies != null) ? frequencies.clone() : null;
+        final long[] wordIdsCopy = (wordIds != null) ? wordIds.clone() : null;
+        final long version = lastRequestedVersion.incrementAndGet();
+        Callable<Void> task = new Callable<Void>() {
+            @Override
+            public Void call() {
+                publish(buildSnapshot(wordsCopy, frequenciesCopy, wordIdsCopy, version));
+                return null;
+            }
+        };
+
+        if(executor != null) {
+            return executor.submit(task);
+        }
+
+        FutureTask<Void> result = new FutureTask<Void>(task);
+        result.run();
+        return result;
+    }
+
+    public Future<Void> swap(List<String> words) {
+        return swap(words, null, null);
+    }
+
+    private void publish(Snapshot newSnapshot) {
+        while(true) {
+            Snapshot current = snapshot.get();
+
+            if(current.version > newSnapshot.version) {
+                return; // A newer dictionary is already published.
+            }
+
+            newSnapshot.swapTime = System.currentTimeMillis();
+
+            if(snapshot.compareAndSet(current, newSnapshot)) {
+                break;
+            }
+        }
+
+        for(SwapListener listener : listeners) {
+            listener.dictionarySwapped(this);
+        }
+    }
+
+    public void addSwapListener(SwapListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeSwapListener(SwapListener listener) {
+        listeners.remove(listener);
+    }
+
+    // Returns the matching for the current dictionary. To use the same
+    // dictionary for several searches, keep the returned object.
+    public FuzzyMatching getMatching() {
+        return snapshot.get().matching;
+    }
+
+    @Override
+    public List<String> findMatchingWords(String word) {
+        return snapshot.get().matching.findMatchingWords(word);
+    }
+
+    @Override
+    public int getMaxError() {
+        return maxError;
+    }
+
+    @Override
+    public DistanceModel getDistanceModel() {
+        return new DistanceModel(transpositions, editCosts);
+    }
+
+    @Override
+    public double estimateCost(String word, DictionaryStatistics statistics) {
+        return snapshot.get().matching.estimateCost(word, statistics);
+    }
+
+    // Monitoring of the current dictionary: its version (1 for the initial one,
+    // incremented for each requested swap), the time needed to build its tries,
+    // in milliseconds, and the time it was published, in milliseconds since the epoch.
+    public long getVersion() {
+        return snapshot.get().version;
+    }
+
+    public int getWordCount() {
+        return snapshot.get().wordCount;
+    }
+
+    public long getLastBuildDuration() {
+        return snapshot.get().buildDuration;
+    }
+
+    public long getLastSwapTime() {
+        return snapshot.get().swapTime;
+    }
+}
@@ -0,0 +1,292 @@
+// Copyright (c) 2013 Gratian Lup. All rights reserved.
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are
+// met:
+//
+// * Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+//
+// * Redistributions in binary form must reproduce the above
+// copyright notice, this list of conditions and the following
+// disclaimer in the documentation and/or other materials provided
+// with the distribution.
+//
+// * The name "FuzzyStringMatching" must not be used to endorse or promote
+// products derived from this software without prior written permission.
+//
+// * Products derived from this software may not be called "FuzzyStringMatching" nor
+// may "FuzzyStringMatching" appear in their names without prior written
+// permission of the author.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+// A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+// OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+// SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+// LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+// DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE
+import java.util.*;
+
+// Incremental fuzzy search for a word typed one letter at a time.
+// The session keeps the "frontier" of the search: the trie nodes whose word
+// (the letters on the path from the root) is within the maximum error
+// of the letters typed so far, together with the smallest such distance.
+// This corresponds to the active states of the Levenshtein NFA (see
+// LevenshteinAutomaton.buildNFA) after reading the typed letters, the
+// column of a state being the number of typed letters and the row its distance.
+// When a letter is typed the new frontier is derived from the previous one
+// (see "Efficient interactive fuzzy keyword search" by S. Ji et al.),
+// so the cost of a keystroke depends on the frontier size, not on the dictionary.
+// The frontier of each previous letter is kept, so deleting a letter is immediate.
+public class FuzzySearchSession {
+    // A trie node in the frontier.
+    private static class FrontierNode {
+        public Trie trieNode;
+        public String word;     // The word of the trie node.
+        public int distance;    // Distance between the word and the typed letters.
+
+        public FrontierNode(Trie trieNode, String word, int distance) {
+            this.trieNode = trieNode;
+            this.word = word;
+            this.distance = distance;
+        }
+    }
+
+
+    private Trie trie;
+    private int maxError;
+    private StringBuilder typedWord;
+    private List<Map<String, FrontierNode>> frontiers; // One for each typed letter, and one initial.
+
+    public FuzzySearchSession(Trie trie, int maxError) {
+        if(trie == null) {
+            throw new IllegalArgumentException("Trie is null");
+        }
+
+        this.trie = trie;
+        this.maxError = maxError;
+        this.typedWord = new StringBuilder();
+        this.frontiers = new ArrayList<Map<String, FrontierNode>>();
+        this.frontiers.add(createInitialFrontier());
+    }
+
+    public String getTypedWord() {
+        return typedWord.toString();
+    }
+
+    public int getMaxError() {
+        return maxError;
+    }
+
+    // Returns the number of trie nodes in the current frontier.
+    public int getFrontierSize() {
+        return getFrontier().size();
+    }
+
+    private Map<String, FrontierNode> getFrontier() {
+        return frontiers.get(frontiers.size() - 1);
+    }
+
+    private void addToFrontier(Map<String, FrontierNode> frontier, Trie trieNode,
+                               String word, int distance) {
+        if(distance > maxError) {
+            return;
+        }
+
+        // A node can be reached in multiple ways, keep the smallest distance.
+        FrontierNode node = frontier.get(word);
+
+        if(node == null) {
+            frontier.put(word, new FrontierNode(trieNode, word, distance));
+        }
+        else if(distance < node.distance) {
+            node.distance = distance;
+        }
+    }
+
+    private Map<String, FrontierNode> createInitialFrontier() {
+        // Nothing typed yet, only the nodes reached
+        // by inserting all their letters are in the frontier.
+        Map<String, FrontierNode> frontier = new HashMap<String, FrontierNode>();
+        addToFrontier(frontier, trie, "", 0);
+        addInsertedLetters(frontier);
+        return frontier;
+    }
+
+    // Adds to the frontier the descendants of its nodes,
+    // with the letters between them considered inserted.
+    private void addInsertedLetters(Map<String, FrontierNode> frontier) {
+        List<FrontierNode> worklist = new ArrayList<FrontierNode>(frontier.values());
+
+        while(!worklist.isEmpty()) {
+            FrontierNode current = worklist.remove(worklist.size() - 1);
+
+            if(current.distance + 1 > maxError) {
+                continue;
+            }
+
+            Trie.TrieChildren children = current.trieNode.getChildren();
+
+            for(int i = 0; i < children.size(); i++) {
+                Trie child = children.getChild(i);
+                String childWord = current.word + children.getLetter(i);
+                addToFrontier(frontier, child, childWord, current.distance + 1);
+                worklist.add(new FrontierNode(child, childWord, current.distance + 1));
+            }
+        }
+    }
+
+    // Advances the search after a letter was typed.
+    public void appendLetter(char letter) {
+        Map<String, FrontierNode> frontier = getFrontier();
+        Map<String, FrontierNode> newFrontier = new HashMap<String, FrontierNode>();
+
+        for(FrontierNode node : frontier.values()) {
+            // The typed letter is missing from the word.
+            addToFrontier(newFrontier, node.trieNode, node.word, node.distance + 1);
+
+            if(node.distance == maxError) {
+                // No error left, only a child with the typed letter can follow.
+                Trie child = node.trieNode.getChildForLetter(letter);
+
+                if(child != null) {
+                    addToFrontier(newFrontier, child, node.word + letter, node.distance);
+                }
+
+                continue;
+            }
+
+            // The typed letter matches or substitutes the letter of a child.
+            Trie.TrieChildren children = node.trieNode.getChildren();
+
+            for(int i = 0; i < children.size(); i++) {
+                char childLetter = children.getLetter(i);
+                int cost = (childLetter == letter) ? 0 : 1;
+                addToFrontier(newFrontier, children.getChild(i),
+                              node.word + childLetter, node.distance + cost);
+            }
+        }
+
+        // The frontier before the letter contains the nodes reached by inserting
+        // letters, so only letters inserted after the typed one remain.
+        addInsertedLetters(newFrontier);
+        typedWord.append(letter);
+        frontiers.add(newFrontier);
+    }
+
+    // Returns the search to the state before the last letter was typed.
+    public void removeLetter() {
+        if(typedWord.length() == 0) {
+            throw new IllegalStateException("No letter to remove");
+        }
+
+        typedWord.setLength(typedWord.length() - 1);
+        frontiers.remove(frontiers.size() - 1);
+    }
+
+    // Returns the words within the maximum error of the typed letters.
+    public List<String> findMatchingWords() {
+        List<String> matchingWords = new ArrayList<String>();
+
+        for(FrontierNode node : getFrontier().values()) {
+            if(node.trieNode.isTerminator() && node.word.length() > 0) {
+                matchingWords.add(node.word);
+            }
+        }
+
+        return matchingWords;
+    }
+
+    // Returns at most 'maxResults' words starting with a prefix that is within
+    // the maximum error of the typed letters, ranked like FuzzyMatching.findCompletions.
+    public List<String> findCompletions(int maxResults) {
+        if(maxResults <= 0) {
+            return new ArrayList<String>();
+        }
+
+        // A node can be the descendant of another one in the frontier, only the
+        // topmost ones are kept so that each word is found once. Below them the
+        // trie is walked best-first, like in FuzzyMatching.findCompletions.
+        Map<String, FrontierNode> frontier = getFrontier();
+        PriorityQueue<WordMatch> best = new PriorityQueue<WordMatch>(maxResults + 1,
+                Collections.reverseOrder(FuzzyMatching.COMPLETION_ORDER));
+        PriorityQueue<FrontierNode> worklist = new PriorityQueue<FrontierNode>(64,
+                new Comparator<FrontierNode>() {
+            @Override
+            public int compare(FrontierNode a, FrontierNode b) {
+                int frequencyA = a.trieNode.getMaxSubtreeFrequency();
+                int frequencyB = b.trieNode.getMaxSubtreeFrequency();
+
+                if(frequencyA != frequencyB) {
+                    return (frequencyA > frequencyB) ? -1 : 1;
+                }
+
+                return a.word.length() - b.word.length();
+            }
+        });
+
+        for(FrontierNode node : frontier.values()) {
+            boolean topmost = true;
+
+            for(int length = 0; length < node.word.length() && topmost; length++) {
+                topmost = !frontier.containsKey(node.word.substring(0, length));
+            }
+
+            if(topmost) {
+                worklist.add(node);
+            }
+        }
+
+        while(!worklist.isEmpty()) {
+            FrontierNode current = worklist.poll();
+
+            if(best.size() == maxResults) {
+                // The words below the node are not shorter than its word.
+                WordMatch worst = best.peek();
+                int maxFrequency = current.trieNode.getMaxSubtreeFrequency();
+
+                if(maxFrequency < worst.getFrequency() ||
+                   (maxFrequency == worst.getFrequency() &&
+                    current.word.length() > worst.getWord().length())) {
+                    break;
+                }
+            }
+
+            if(current.trieNode.isTerminator() && current.word.length() > 0) {
+                WordMatch completion = new WordMatch(current.word, current.trieNode.getFrequency(),
+                                                     current.trieNode.getWordId());
+
+                if(best.size() < maxResults ||
+                   FuzzyMatching.COMPLETION_ORDER.compare(completion, best.peek()) < 0) {
+                    best.add(completion);
+
+                    if(best.size() > maxResults) {
+                        best.poll();
+                    }
+                }
+            }
+
+            Trie.TrieChildren children = current.trieNode.getChildren();
+
+            for(int i = 0; i < children.size(); i++) {
+                worklist.add(new FrontierNode(children.getChild(i),
+                                              current.word + children.getLetter(i),
+                                              current.distance));
+            }
+        }
+
+        List<WordMatch> completions = new ArrayList<WordMatch>(best);
+        Collections.sort(completions, FuzzyMatching.COMPLETION_ORDER);
+        List<String> completionWords = new ArrayList<String>(completions.size());
+
+        for(WordMatch completion : completions) {
+            completionWords.add(completion.getWord());
+        }
+
+        return completionWords;
+    }
+}
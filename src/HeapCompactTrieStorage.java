@@ -0,0 +1,251 @@
+// Copyright (c) 2013 Gratian Lup. All rights reserved.
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are
+// met:
+//
+// * Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+//
+// * Redistributions in binary form must reproduce the above
+// copyright notice, this list of conditions and the following
+// disclaimer in the documentation and/or other materials provided
+// with the distribution.
+//
+// * The name "FuzzyStringMatching" must not be used to endorse or promote
+// products derived from this software without prior written permission.
+//
+// * Products derived from this software may not be called "FuzzyStringMatching" nor
+// may "FuzzyStringMatching" appear in their names without prior written
+// permission of the author.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+// A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+// OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+// SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+// LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+// DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE
+// Stores the arrays of a CompactTrie on the Java heap.
+// The arrays grow by doubling their size when full.
+public class HeapCompactTrieStorage implements CompactTrieStorage {
+    private int[] firstChildren;
+    private int[] childrenCount;
+    private boolean[] terminatorNodes;
+    private short[] minRemainingLengths;
+    private short[] maxRemainingLengths;
+    private int[] children;
+    private int lastNodeId;
+    private int lastChildId;
+
+    // Only the array matching the symbol width is used.
+    private int symbolWidth;
+    private byte[] byteSymbols;
+    private char[] charSymbols;
+    private int[] intSymbols;
+
+    public HeapCompactTrieStorage() {
+        firstChildren = new int[1024];
+        childrenCount = new int[1024];
+        terminatorNodes = new boolean[1024];
+        minRemainingLengths = new short[1024];
+        maxRemainingLengths = new short[1024];
+        children = new int[1024];
+        lastNodeId = 0;
+        lastChildId = 0;
+        setSymbolWidth(2);
+    }
+
+    private void resizeNodeInfoIfRequired() {
+        if(lastNodeId == firstChildren.length - 1) {
+            int[] newFirstChildren = new int[firstChildren.length * 2];
+            System.arraycopy(firstChildren, 0, newFirstChildren, 0, firstChildren.length);
+            firstChildren = newFirstChildren;
+
+            int[] newChildrenCount = new int[childrenCount.length * 2];
+            System.arraycopy(childrenCount, 0, newChildrenCount, 0, childrenCount.length);
+            childrenCount = newChildrenCount;
+
+            boolean[] newTerminatorNodes = new boolean[terminatorNodes.length * 2];
+            System.arraycopy(terminatorNodes, 0, newTerminatorNodes, 0, terminatorNodes.length);
+            terminatorNodes = newTerminatorNodes;
+
+            short[] newMinRemainingLengths = new short[minRemainingLengths.length * 2];
+            System.arraycopy(minRemainingLengths, 0, newMinRemainingLengths, 0, minRemainingLengths.length);
+            minRemainingLengths = newMinRemainingLengths;
+
+            short[] newMaxRemainingLengths = new short[maxRemainingLengths.length * 2];
+            System.arraycopy(maxRemainingLengths, 0, newMaxRemainingLengths, 0, maxRemainingLengths.length);
+            maxRemainingLengths = newMaxRemainingLengths;
+        }
+    }
+
+    private void resizeChildInfoIfRequired() {
+        if(lastChildId == children.length - 1) {
+            int[] newChildren = new int[children.length * 2];
+            System.arraycopy(children, 0, newChildren, 0, children.length);
+            children = newChildren;
+
+            if(byteSymbols != null) {
+                byte[] newByteSymbols = new byte[byteSymbols.length * 2];
+                System.arraycopy(byteSymbols, 0, newByteSymbols, 0, byteSymbols.length);
+                byteSymbols = newByteSymbols;
+            }
+            else if(charSymbols != null) {
+                char[] newCharSymbols = new char[charSymbols.length * 2];
+                System.arraycopy(charSymbols, 0, newCharSymbols, 0, charSymbols.length);
+                charSymbols = newCharSymbols;
+            }
+            else {
+                int[] newIntSymbols = new int[intSymbols.length * 2];
+                System.arraycopy(intSymbols, 0, newIntSymbols, 0, intSymbols.length);
+                intSymbols = newIntSymbols;
+            }
+        }
+    }
+
+    @Override
+    public int getNodeCount() {
+        return lastNodeId;
+    }
+
+    @Override
+    public int addNode() {
+        resizeNodeInfoIfRequired();
+        firstChildren[lastNodeId] = (-1);
+        childrenCount[lastNodeId] = 0;
+        minRemainingLengths[lastNodeId] = 0;
+        maxRemainingLengths[lastNodeId] = Short.MAX_VALUE; // Unknown until computed.
+        lastNodeId++;
+        return lastNodeId - 1;
+    }
+
+    @Override
+    public int getFirstChild(int nodeId) {
+        return firstChildren[nodeId];
+    }
+
+    @Override
+    public void setFirstChild(int nodeId, int childIndex) {
+        firstChildren[nodeId] = childIndex;
+    }
+
+    @Override
+    public int getChildrenCount(int nodeId) {
+        return childrenCount[nodeId];
+    }
+
+    @Override
+    public void setChildrenCount(int nodeId, int count) {
+        childrenCount[nodeId] = count;
+    }
+
+    @Override
+    public boolean isTerminator(int nodeId) {
+        return terminatorNodes[nodeId];
+    }
+
+    @Override
+    public void setTerminator(int nodeId, boolean terminator) {
+        terminatorNodes[nodeId] = terminator;
+    }
+
+    @Override
+    public short getMinRemainingLength(int nodeId) {
+        return minRemainingLengths[nodeId];
+    }
+
+    @Override
+    public short getMaxRemainingLength(int nodeId) {
+        return maxRemainingLengths[nodeId];
+    }
+
+    @Override
+    public void setRemainingLengths(int nodeId, short minLength, short maxLength) {
+        minRemainingLengths[nodeId] = minLength;
+        maxRemainingLengths[nodeId] = maxLength;
+    }
+
+    @Override
+    public int getChildCount() {
+        return lastChildId;
+    }
+
+    @Override
+    public void setSymbolWidth(int symbolWidth) {
+        if(lastChildId > 0) {
+            throw new IllegalStateException("Symbol width can't be changed after adding children!");
+        }
+
+        this.symbolWidth = symbolWidth;
+        byteSymbols = null;
+        charSymbols = null;
+        intSymbols = null;
+
+        switch(symbolWidth) {
+            case 1: byteSymbols = new byte[children.length]; break;
+            case 2: charSymbols = new char[children.length]; break;
+            case 4: intSymbols = new int[children.length]; break;
+            default: throw new IllegalArgumentException("Symbol width must be 1, 2 or 4!");
+        }
+    }
+
+    @Override
+    public int getSymbolWidth() {
+        return symbolWidth;
+    }
+
+    @Override
+    public int addChild(int childNodeId, int symbol) {
+        resizeChildInfoIfRequired();
+        children[lastChildId] = (childNodeId);
+        setChildSymbol(lastChildId, symbol);
+        lastChildId++;
+        return lastChildId - 1;
+    }
+
+    @Override
+    public int getChild(int childIndex) {
+        return children[childIndex];
+    }
+
+    @Override
+    public void setChild(int childIndex, int childNodeId) {
+        children[childIndex] = childNodeId;
+    }
+
+    @Override
+    public int getChildSymbol(int childIndex) {
+        if(byteSymbols != null) {
+            return byteSymbols[childIndex] & 0xFF;
+        }
+        else if(charSymbols != null) {
+            return charSymbols[childIndex];
+        }
+        else return intSymbols[childIndex];
+    }
+
+    @Override
+    public void setChildSymbol(int childIndex, int symbol) {
+        if(byteSymbols != null) {
+            byteSymbols[childIndex] = (byte)symbol;
+        }
+        else if(charSymbols != null) {
+            charSymbols[childIndex] = (char)symbol;
+        }
+        else intSymbols[childIndex] = symbol;
+    }
+
+    @Override
+    public long getSizeInBytes() {
+        return 13L * firstChildren.length + (4L + symbolWidth) * children.length;
+    }
+
+    @Override
+    public CompactTrieStorage createEmpty() {
+        return new HeapCompactTrieStorage();
+    }
+}
@@ -0,0 +1,136 @@
+// Copyright (c) 2013 Gratian Lup. All rights reserved.
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are
+// met:
+//
+// * Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+//
+// * Redistributions in binary form must reproduce the above
+// copyright notice, this list of conditions and the following
+// disclaimer in the documentation and/or other materials provided
+// with the distribution.
+//
+// * The name "FuzzyStringMatching" must not be used to endorse or promote
+// products derived from this software without prior written permission.
+//
+// * Products derived from this software may not be called "FuzzyStringMatching" nor
+// may "FuzzyStringMatching" appear in their names without prior written
+// permission of the author.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+// A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+// OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+// SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+// LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+// DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE
+import java.util.HashMap;
+import java.util.Map;
+
+// Edit costs modeling the most common typing errors: hitting a key adjacent
+// to the intended one on a QWERTY keyboard, and typing a letter twice
+// or only once when it should appear twice.
+public class KeyboardEditCosts implements EditCosts {
+    private static final String[] KEYBOARD_ROWS = { "qwertyuiop", "asdfghjkl", "zxcvbnm" };
+    private static final char[] NO_LETTERS = new char[0];
+
+    private int defaultCost;
+    private int adjacentCost;
+    private int doubledLetterCost;
+    private Map<Character, char[]> adjacentKeys;
+
+    public KeyboardEditCosts(int defaultCost, int adjacentCost, int doubledLetterCost) {
+        if(adjacentCost <= 0 || doubledLetterCost <= 0 ||
+           adjacentCost > defaultCost || doubledLetterCost > defaultCost) {
+            throw new IllegalArgumentException("Edit costs must be positive " +
+                                               "and not larger than the default cost!");
+        }
+
+        this.defaultCost = defaultCost;
+        this.adjacentCost = adjacentCost;
+        this.doubledLetterCost = doubledLetterCost;
+        this.adjacentKeys = new HashMap<Character, char[]>();
+        buildAdjacentKeys();
+    }
+
+    public KeyboardEditCosts() {
+        this(2, 1, 1);
+    }
+
+    private void buildAdjacentKeys() {
+        // The rows are shifted by about half a key, so a key touches the one
+        // at the same position and the next one on the row above,
+        // and the one at the same position and the previous one on the row below.
+        for(int row = 0; row < KEYBOARD_ROWS.length; row++) {
+            String keys = KEYBOARD_ROWS[row];
+
+            for(int column = 0; column < keys.length(); column++) {
+                StringBuilder adjacent = new StringBuilder();
+                appendKey(adjacent, row, column - 1);
+                appendKey(adjacent, row, column + 1);
+                appendKey(adjacent, row - 1, column);
+                appendKey(adjacent, row - 1, column + 1);
+                appendKey(adjacent, row + 1, column - 1);
+                appendKey(adjacent, row + 1, column);
+                adjacentKeys.put(keys.charAt(column), adjacent.toString().toCharArray());
+            }
+        }
+    }
+
+    private void appendKey(StringBuilder keys, int row, int column) {
+        if(row >= 0 && row < KEYBOARD_ROWS.length &&
+           column >= 0 && column < KEYBOARD_ROWS[row].length()) {
+            keys.append(KEYBOARD_ROWS[row].charAt(column));
+        }
+    }
+
+    private boolean areAdjacent(char first, char second) {
+        char[] keys = adjacentKeys.get(first);
+
+        if(keys != null) {
+            for(char key : keys) {
+                if(key == second) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    @Override
+    public int getDefaultCost() {
+        return defaultCost;
+    }
+
+    @Override
+    public int getSubstitutionCost(char patternLetter, char letter) {
+        return areAdjacent(patternLetter, letter) ? adjacentCost : defaultCost;
+    }
+
+    @Override
+    public int getInsertionCost(char letter, char previousPatternLetter) {
+        return (letter == previousPatternLetter) ? doubledLetterCost : defaultCost;
+    }
+
+    @Override
+    public int getDeletionCost(char patternLetter, char previousPatternLetter) {
+        return (patternLetter == previousPatternLetter) ? doubledLetterCost : defaultCost;
+    }
+
+    @Override
+    public char[] getSubstitutionLetters(char patternLetter) {
+        char[] keys = adjacentKeys.get(patternLetter);
+        return keys != null ? keys : NO_LETTERS;
+    }
+
+    @Override
+    public char[] getInsertionLetters(char previousPatternLetter) {
+        return previousPatternLetter != '\0' ? new char[] { previousPatternLetter } : NO_LETTERS;
+    }
+}
@@ -143,17 +143,92 @@ public class LevenshteinAutomaton {
     }
 
 
-    public State startState; // The start state of the automaton.
-    public int maxError;     // The maximum accepted Levenshtein distance.
+    // A DFA state built by convertToLazyDFA. Its transitions are computed
+    // from its group of NFA states the first time they are requested.
+    private class LazyState extends State {
+        private StateGroup group;
+        private volatile boolean expanded;
+
+        public LazyState(StateGroup group) {
+            super(group.isFinalState());
+            this.group = group;
+        }
 
-    public LevenshteinAutomaton(int maxError) {
+        private void expandIfRequired() {
+            if(expanded) {
+                return;
+            }
+
+            // The automaton may be shared by the threads of a batch search.
+            synchronized(LevenshteinAutomaton.this) {
+                if(!expanded) {
+                    expandLazyState(this, group);
+                    group = null;
+                    expanded = true;
+                }
+            }
+        }
+
+        public void addLetterTransition(char letter, State nextState) {
+            Transition transition = Transition.createLetter(letter);
+            transition.addNextState(nextState);
+            super.getLetterTransitions().add(transition);
+        }
+
+        public void addAnyTransition(State nextState) {
+            super.getAnyTransition(true).addNextState(nextState);
+        }
+
+        @Override
+        public Transition getAnyTransition(boolean create) {
+            expandIfRequired();
+            return super.getAnyTransition(create);
+        }
+
+        @Override
+        public List<Transition> getLetterTransitions() {
+            expandIfRequired();
+            return super.getLetterTransitions();
+        }
+    }
+
+
+    public State startState;        // The start state of the automaton.
+    public int maxError;            // The maximum accepted Levenshtein distance.
+    public boolean transpositions;  // Set if swapping adjacent letters is a single edit.
+    public EditCosts editCosts;     // If set, 'maxError' is the maximum total edit cost.
+    public boolean prefixMode;      // Set if words starting with an accepted prefix are accepted.
+    private Map<StateGroup, LazyState> lazyStates; // The states of a lazy DFA, by NFA states.
+
+    public LevenshteinAutomaton(int maxError, boolean transpositions,
+                                EditCosts editCosts, boolean prefixMode) {
         this.startState = new State(false);
         this.maxError = maxError;
+        this.transpositions = transpositions;
+        this.editCosts = editCosts;
+        this.prefixMode = prefixMode;
+    }
+
+    public LevenshteinAutomaton(int maxError, boolean transpositions, EditCosts editCosts) {
+        this(maxError, transpositions, editCosts, false);
+    }
+
+    public LevenshteinAutomaton(int maxError, boolean transpositions) {
+        this(maxError, transpositions, null);
+    }
+
+    public LevenshteinAutomaton(int maxError) {
+        this(maxError, false);
     }
 
     // Builds the NFA that accepts any word with a Levenshtein distance
     // no larger than the maximum one when compared to the pattern word.
     public void buildNFA(String patternWord) {
+        if(editCosts != null) {
+            buildWeightedNFA(patternWord);
+            return;
+        }
+
         // Creates an NFA that accepts all words that have at most
         // 'maxError' Levenshtein distance compared to the pattern word.
         // See "Fast string correction with Levenshtein automata" by K. Schulz, S. Mihov
@@ -185,13 +260,123 @@ public class LevenshteinAutomaton {
                     // Deleted letter.
                     Transition deletion = states[k][i].getEpsilonTransition(true);
                     deletion.addNextState(states[k + 1][i + 1]);
+
+                    if(transpositions && i + 1 < patternWord.length()) {
+                        // Swapped letters: the next pattern letter followed by the current one.
+                        // An intermediate state remembers that the first letter was seen.
+                        State swapState = new State(false);
+                        states[k][i].getTransition(patternWord.charAt(i + 1), true)
+                                    .addNextState(swapState);
+                        swapState.getTransition(patternWord.charAt(i), true)
+                                 .addNextState(states[k + 1][i + 2]);
+                    }
+                }
+            }
+
+            if(k < maxError) {
+                // Letters inserted after the end of the pattern word.
+                Transition insertion = states[k][patternWord.length()].getAnyTransition(true);
+                insertion.addNextState(states[k + 1][patternWord.length()]);
+            }
+        }
+
+        if(prefixMode) {
+            makeFinalStatesAbsorbing(states);
+        }
+
+        startState = states[0][0];
+    }
+
+    // Builds the NFA that accepts any word whose weighted edit distance
+    // to the pattern word is no larger than the maximum one.
+    private void buildWeightedNFA(String patternWord) {
+        // The construction is the same as for equal costs, but an edit
+        // costing C leads from a state on row K to one on row K + C.
+        // The letters with a specific cost have their own transitions,
+        // all other letters using the transition on any letter with the default cost.
+        // Letters with a specific cost also follow the transition on any letter,
+        // which is harmless, since the specific costs are never larger than the default.
+        State[][] states = new State[maxError + 1][patternWord.length() + 1];
+        int defaultCost = editCosts.getDefaultCost();
+
+        for(int k = 0; k <= maxError; k++) {
+            for(int i = 0; i <= patternWord.length(); i++) {
+                states[k][i] = new State(i == patternWord.length());
+            }
+        }
+
+        for(int k = 0; k <= maxError; k++) {
+            for(int i = 0; i <= patternWord.length(); i++) {
+                char previousLetter = (i > 0) ? patternWord.charAt(i - 1) : '\0';
+
+                // Inserted letters, including after the end of the pattern word.
+                if(k + defaultCost <= maxError) {
+                    states[k][i].getAnyTransition(true).addNextState(states[k + defaultCost][i]);
+                }
+
+                for(char letter : editCosts.getInsertionLetters(previousLetter)) {
+                    int cost = editCosts.getInsertionCost(letter, previousLetter);
+
+                    if(k + cost <= maxError && cost < defaultCost) {
+                        states[k][i].getTransition(letter, true).addNextState(states[k + cost][i]);
+                    }
+                }
+
+                if(i == patternWord.length()) {
+                    continue;
+                }
+
+                // Matching letter.
+                char patternLetter = patternWord.charAt(i);
+                states[k][i].getTransition(patternLetter, true).addNextState(states[k][i + 1]);
+
+                // Substituted letter.
+                if(k + defaultCost <= maxError) {
+                    states[k][i].getAnyTransition(true).addNextState(states[k + defaultCost][i + 1]);
+                }
+
+                for(char letter : editCosts.getSubstitutionLetters(patternLetter)) {
+                    int cost = editCosts.getSubstitutionCost(patternLetter, letter);
+
+                    if(k + cost <= maxError && cost < defaultCost && letter != patternLetter) {
+                        states[k][i].getTransition(letter, true).addNextState(states[k + cost][i + 1]);
+                    }
+                }
+
+                // Deleted letter.
+                int deletionCost = editCosts.getDeletionCost(patternLetter, previousLetter);
+
+                if(k + deletionCost <= maxError) {
+                    states[k][i].getEpsilonTransition(true).addNextState(states[k + deletionCost][i + 1]);
+                }
+
+                // Swapped letters, using the default cost.
+                if(transpositions && i + 1 < patternWord.length() && k + defaultCost <= maxError) {
+                    State swapState = new State(false);
+                    states[k][i].getTransition(patternWord.charAt(i + 1), true)
+                                .addNextState(swapState);
+                    swapState.getTransition(patternLetter, true)
+                             .addNextState(states[k + defaultCost][i + 2]);
                 }
             }
         }
 
+        if(prefixMode) {
+            makeFinalStatesAbsorbing(states);
+        }
+
         startState = states[0][0];
     }
 
+    // In prefix mode, once the pattern word has been matched any letters
+    // can follow, so the accepting states loop back to themselves on any letter.
+    private void makeFinalStatesAbsorbing(State[][] states) {
+        for(int k = 0; k < states.length; k++) {
+            State finalState = states[k][states[k].length - 1];
+            finalState.getAnyTransition(true).addNextState(finalState);
+        }
+    }
+
     private String getEdgeLabel(Transition transition) {
         switch(transition.getType()) {
             case Epsilon: return "Eps";
@@ -253,6 +438,18 @@ public class LevenshteinAutomaton {
             for(Transition transition : candidate.state.getLetterTransitions()) {
                 evaluateNFATransition(transition, candidate, candidateWord, worklist);
             }
+
+            // The transitions on any letter and on epsilon are not letter transitions.
+            Transition anyTransition = candidate.state.getAnyTransition(false);
+            Transition epsilonTransition = candidate.state.getEpsilonTransition(false);
+
+            if(anyTransition != null) {
+                evaluateNFATransition(anyTransition, candidate, candidateWord, worklist);
+            }
+
+            if(epsilonTransition != null) {
+                evaluateNFATransition(epsilonTransition, candidate, candidateWord, worklist);
+            }
         }
 
         return false;
@@ -369,9 +566,51 @@ public class LevenshteinAutomaton {
         buildDFA(dfaStates, startGroup);
     }
 
+    // Converts the NFA to a DFA whose states are created only when they are
+    // reached, the transitions of a state being computed when first requested.
+    // Searching a trie reaches only a small part of the DFA, so this is
+    // much cheaper than convertToDFA when the automaton is used for a few searches.
+    // The transitions to the empty group of NFA states (the dead state) are omitted.
+    public void convertToLazyDFA() {
+        lazyStates = new HashMap<StateGroup, LazyState>();
+        startState = getLazyState(new StateGroup(expandEpsilon(startState)));
+    }
+
+    private LazyState getLazyState(StateGroup group) {
+        LazyState state = lazyStates.get(group);
+
+        if(state == null) {
+            state = new LazyState(group);
+            lazyStates.put(group, state);
+        }
+
+        return state;
+    }
+
+    private void expandLazyState(LazyState state, StateGroup group) {
+        Set<State> nextAnyStates = expandEpsilon(group.getStatesForAny());
+
+        if(!nextAnyStates.isEmpty()) {
+            state.addAnyTransition(getLazyState(new StateGroup(nextAnyStates)));
+        }
+
+        for(char letter : group.getTransitionLetters()) {
+            Set<State> nextStates = expandEpsilon(group.getStatesForLetter(letter));
+
+            if(!nextStates.isEmpty()) {
+                state.addLetterTransition(letter, getLazyState(new StateGroup(nextStates)));
+            }
+        }
+    }
+
     private boolean isDeadState(State state) {
         // A state is not required if there is no transition that can leave
         // the state (i.e. all transitions, if any, lead back to the state).
+        // An accepting state is always required, even if it can't be left.
+        if(state.isFinal()) {
+            return false;
+        }
+
         for(Transition transition : state.getLetterTransitions()) {
             for(State nextState : transition.getNextStates()) {
                 if(nextState != state) {
@@ -458,13 +697,12 @@ public class LevenshteinAutomaton {
                 else continue;
             }
 
-            for(Transition transition : candidate.state.getLetterTransitions()) {
-                if(transition.isLetterTransition(candidateWord.charAt(candidate.wordPosition)) ||
-                   transition.isAnyTransition()) {
-                    for(State nextState : transition.getNextStates()) {
-                        worklist.add(new ExecutionState(nextState, candidate.wordPosition + 1));
-                    }
-                }
+            // The transition on a letter takes precedence over the one on any letter.
+            State nextState = candidate.state.getStateForLetter(
+                                    candidateWord.charAt(candidate.wordPosition));
+
+            if(nextState != null) {
+                worklist.add(new ExecutionState(nextState, candidate.wordPosition + 1));
             }
         }
 
@@ -30,9 +30,187 @@
 // (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
 // OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class LevenshteinDistance {
+    // Precomputed bitmasks of a pattern word, used by the bit-parallel
+    // algorithm of G. Myers ("A fast bit-vector algorithm for approximate string
+    // matching based on dynamic programming"), with the block extension from
+    // H. Hyyro for patterns longer than 64 letters. Building the masks once
+    // allows the same pattern to be compared against many words cheaply.
+    public static class PatternMask {
+        private static final int WORD_SIZE = 64;
+        private static final int ASCII_LETTERS = 128;
+
+        private String pattern;
+        private int blockCount;
+        private long lastBit;       // The bit of the last pattern letter in the last block.
+        private long[] asciiMasks;  // Masks for ASCII letters, 'blockCount' entries per letter.
+        private Map<Character, long[]> otherMasks; // Masks for all other letters.
+        private long[] emptyMask;   // Mask for letters not found in the pattern.
+        private long[] positiveVertical; // Reused between calls.
+        private long[] negativeVertical;
+        private char[] wordBuffer;       // Letters of the last compared String.
+
+        public PatternMask(String pattern) {
+            if(pattern == null) {
+                throw new IllegalArgumentException("Pattern word is null");
+            }
+
+            this.pattern = pattern;
+            this.blockCount = Math.max(1, (pattern.length() + WORD_SIZE - 1) / WORD_SIZE);
+            this.lastBit = 1L << ((Math.max(1, pattern.length()) - 1) % WORD_SIZE);
+            this.asciiMasks = new long[ASCII_LETTERS * blockCount];
+            this.otherMasks = new HashMap<Character, long[]>();
+            this.emptyMask = new long[blockCount];
+            this.positiveVertical = new long[blockCount];
+            this.negativeVertical = new long[blockCount];
+            this.wordBuffer = new char[64];
+
+            // Set the bit corresponding to each position where the letter appears.
+            for(int i = 0; i < pattern.length(); i++) {
+                char letter = pattern.charAt(i);
+                int block = i / WORD_SIZE;
+                long bit = 1L << (i % WORD_SIZE);
+
+                if(letter < ASCII_LETTERS) {
+                    asciiMasks[letter * blockCount + block] |= bit;
+                }
+                else {
+                    long[] mask = otherMasks.get(letter);
+
+                    if(mask == null) {
+                        mask = new long[blockCount];
+                        otherMasks.put(letter, mask);
+                    }
+
+                    mask[block] |= bit;
+                }
+            }
+        }
+
+        public String getPattern() {
+            return pattern;
+        }
+
+        public int computeDistance(String word) {
+            if(word == null) {
+                throw new IllegalArgumentException("Word to be compared is null");
+            }
+
+            if(wordBuffer.length < word.length()) {
+                wordBuffer = new char[Math.max(word.length(), wordBuffer.length * 2)];
+            }
+
+            word.getChars(0, word.length(), wordBuffer, 0);
+            return computeDistance(wordBuffer, 0, word.length());
+        }
+
+        // Computes the distance to the word stored in 'letters'
+        // starting at 'offset' and having 'length' letters.
+        public int computeDistance(char[] letters, int offset, int length) {
+            if(pattern.length() == 0) {
+                return length;
+            }
+            else if(blockCount == 1) {
+                return computeDistanceSingleBlock(letters, offset, length);
+            }
+            else return computeDistanceMultipleBlocks(letters, offset, length);
+        }
+
+        private long getMask(char letter, int block) {
+            if(letter < ASCII_LETTERS) {
+                return asciiMasks[letter * blockCount + block];
+            }
+
+            long[] mask = otherMasks.get(letter);
+            return mask != null ? mask[block] : emptyMask[block];
+        }
+
+        private int computeDistanceSingleBlock(char[] letters, int offset, int length) {
+            // The vertical deltas of the first column are all +1,
+            // the distance to the empty word being the pattern length.
+            long positive = -1L;
+            long negative = 0L;
+            int distance = pattern.length();
+
+            for(int i = offset; i < offset + length; i++) {
+                long matches = getMask(letters[i], 0);
+                long verticalX = matches | negative;
+                long horizontalX = (((matches & positive) + positive) ^ positive) | matches;
+                long horizontalPositive = negative | ~(horizontalX | positive);
+                long horizontalNegative = positive & horizontalX;
+
+                // Track the value of the last row of the matrix.
+                if((horizontalPositive & lastBit) != 0) distance++;
+                else if((horizontalNegative & lastBit) != 0) distance--;
+
+                // The first row increases by one for each letter of the word.
+                horizontalPositive = (horizontalPositive << 1) | 1L;
+                horizontalNegative = horizontalNegative << 1;
+                positive = horizontalNegative | ~(verticalX | horizontalPositive);
+                negative = horizontalPositive & verticalX;
+            }
+
+            return distance;
+        }
+
+        private int computeDistanceMultipleBlocks(char[] letters, int offset, int length) {
+            // Each block is processed like in the single block case, with the
+            // horizontal delta leaving the top of a block entering the next one.
+            long[] positive = positiveVertical;
+            long[] negative = negativeVertical;
+            int distance = pattern.length();
+
+            for(int block = 0; block < blockCount; block++) {
+                positive[block] = -1L;
+                negative[block] = 0L;
+            }
+
+            for(int i = offset; i < offset + length; i++) {
+                char letter = letters[i];
+                int horizontalIn = 1;
+
+                for(int block = 0; block < blockCount; block++) {
+                    long matches = getMask(letter, block);
+                    long vp = positive[block];
+                    long vn = negative[block];
+                    long verticalX = matches | vn;
+
+                    if(horizontalIn < 0) {
+                        matches |= 1L;
+                    }
+
+                    long horizontalX = (((matches & vp) + vp) ^ vp) | matches;
+                    long horizontalPositive = vn | ~(horizontalX | vp);
+                    long horizontalNegative = vp & horizontalX;
+                    long outputBit = (block == blockCount - 1) ? lastBit : Long.MIN_VALUE;
+                    int horizontalOut = 0;
+
+                    if((horizontalPositive & outputBit) != 0) horizontalOut = 1;
+                    else if((horizontalNegative & outputBit) != 0) horizontalOut = -1;
+
+                    horizontalPositive = horizontalPositive << 1;
+                    horizontalNegative = horizontalNegative << 1;
+
+                    if(horizontalIn > 0) horizontalPositive |= 1L;
+                    else if(horizontalIn < 0) horizontalNegative |= 1L;
+
+                    positive[block] = horizontalNegative | ~(verticalX | horizontalPositive);
+                    negative[block] = horizontalPositive & verticalX;
+                    horizontalIn = horizontalOut;
+                }
+
+                distance += horizontalIn;
+            }
+
+            return distance;
+        }
+    }
+
+
     public static int computeDistance(String word, String pattern) {
         // Implements the classic dynamic-programming algorithm for
         // the Levenshtein distance using equal penalty for all edit operations.
@@ -60,8 +238,151 @@ public class LevenshteinDistance {
         return distance[word.length()][pattern.length()];
     }
 
+    // Computes the restricted Damerau-Levenshtein distance (also called
+    // optimal string alignment distance), where swapping two adjacent letters
+    // is a single edit, but a swapped letter can't be edited again.
+    public static int computeDamerauDistance(String word, String pattern) {
+        int[][] distance = new int[word.length() + 1][pattern.length() + 1];
+
+        for(int i = 0; i <= word.length(); i++) {
+            distance[i][0] = i;
+        }
+
+        for(int i = 0; i <= pattern.length(); i++) {
+            distance[0][i] = i;
+        }
+
+        for(int i = 1; i <= word.length(); i++) {
+            for(int j = 1; j <= pattern.length(); j++) {
+                int insertionCost = distance[i - 1][j] + 1;
+                int deletionCost = distance[i][j - 1] + 1;
+                int substitutionCost = distance[i - 1][j - 1] +
+                                       ((word.charAt(i - 1) == pattern.charAt(j - 1)) ? 0 : 1);
+                distance[i][j] = Math.min(insertionCost, Math.min(deletionCost, substitutionCost));
+
+                if(i > 1 && j > 1 &&
+                   word.charAt(i - 1) == pattern.charAt(j - 2) &&
+                   word.charAt(i - 2) == pattern.charAt(j - 1)) {
+                    distance[i][j] = Math.min(distance[i][j], distance[i - 2][j - 2] + 1);
+                }
+            }
+        }
+
+        return distance[word.length()][pattern.length()];
+    }
+
+    // Computes the edit distance using the specified costs for each edit,
+    // optionally allowing adjacent letters to be swapped for the default cost.
+    // Used as the reference for the weighted LevenshteinAutomaton.
+    public static int computeWeightedDistance(String word, String pattern,
+                                              EditCosts costs, boolean transpositions) {
+        int[][] distance = new int[word.length() + 1][pattern.length() + 1];
+
+        for(int j = 1; j <= pattern.length(); j++) {
+            char previousLetter = (j > 1) ? pattern.charAt(j - 2) : '\0';
+            distance[0][j] = distance[0][j - 1] +
+                             costs.getDeletionCost(pattern.charAt(j - 1), previousLetter);
+        }
+
+        for(int i = 1; i <= word.length(); i++) {
+            char letter = word.charAt(i - 1);
+            distance[i][0] = distance[i - 1][0] + costs.getInsertionCost(letter, '\0');
+
+            for(int j = 1; j <= pattern.length(); j++) {
+                char patternLetter = pattern.charAt(j - 1);
+                char previousLetter = (j > 1) ? pattern.charAt(j - 2) : '\0';
+                int insertionCost = distance[i - 1][j] + costs.getInsertionCost(letter, patternLetter);
+                int deletionCost = distance[i][j - 1] +
+                                   costs.getDeletionCost(patternLetter, previousLetter);
+                int substitutionCost = distance[i - 1][j - 1] +
+                                       ((letter == patternLetter) ? 0 :
+                                        costs.getSubstitutionCost(patternLetter, letter));
+                distance[i][j] = Math.min(insertionCost, Math.min(deletionCost, substitutionCost));
+
+                if(transpositions && i > 1 && j > 1 &&
+                   letter == pattern.charAt(j - 2) &&
+                   word.charAt(i - 2) == patternLetter) {
+                    distance[i][j] = Math.min(distance[i][j],
+                                              distance[i - 2][j - 2] + costs.getDefaultCost());
+                }
+            }
+        }
+
+        return distance[word.length()][pattern.length()];
+    }
+
+    // Computes the same distance as computeDistance, but using the bit-parallel
+    // algorithm, which processes up to 64 letters of the pattern at once.
+    public static int computeDistanceFast(String word, String pattern) {
+        return new PatternMask(pattern).computeDistance(word);
+    }
+
+    // Computes the Levenshtein distance only if it is at most 'maxError',
+    // otherwise 'maxError + 1' is returned. Only the diagonal band of width
+    // 2 * maxError + 1 is evaluated (see "Algorithms for approximate string
+    // matching" by E. Ukkonen), and the computation stops as soon as
+    // all values in the band of a row exceed the maximum error.
+    public static int computeBoundedDistance(String word, String pattern, int maxError) {
+        int rejected = maxError + 1;
+
+        if(Math.abs(word.length() - pattern.length()) > maxError) {
+            // At least one insertion/deletion for each extra letter.
+            return rejected;
+        }
+
+        // Position 'd' in a band row corresponds to the pattern
+        // position 'i + d - maxError' for the word position 'i'.
+        int bandWidth = 2 * maxError + 1;
+        int[] previousRow = new int[bandWidth];
+        int[] currentRow = new int[bandWidth];
+
+        for(int d = 0; d < bandWidth; d++) {
+            previousRow[d] = (d >= maxError) ? d - maxError : rejected;
+        }
+
+        for(int i = 1; i <= word.length(); i++) {
+            char letter = word.charAt(i - 1);
+            int minError = rejected;
+
+            for(int d = 0; d < bandWidth; d++) {
+                int j = i + d - maxError;
+                int error;
+
+                if(j < 0 || j > pattern.length()) {
+                    error = rejected;
+                }
+                else if(j == 0) {
+                    error = Math.min(i, rejected);
+                }
+                else {
+                    // The cells to the left and above may be outside the band.
+                    int insertionCost = (d + 1 < bandWidth) ? previousRow[d + 1] + 1 : rejected;
+                    int deletionCost = (d > 0) ? currentRow[d - 1] + 1 : rejected;
+                    int substitutionCost = previousRow[d] +
+                                           ((letter == pattern.charAt(j - 1)) ? 0 : 1);
+                    error = Math.min(insertionCost, Math.min(deletionCost, substitutionCost));
+                    error = Math.min(error, rejected);
+                }
+
+                currentRow[d] = error;
+                minError = Math.min(minError, error);
+            }
+
+            if(minError > maxError) {
+                // The error can only grow from now on.
+                return rejected;
+            }
+
+            int[] temp = previousRow;
+            previousRow = currentRow;
+            currentRow = temp;
+        }
+
+        return previousRow[pattern.length() - word.length() + maxError];
+    }
+
     public static boolean isAcceptedWord(String word, String pattern, int maxError) {
-        return computeDistance(word, pattern) <= maxError;
+        return computeBoundedDistance(word, pattern, maxError) <= maxError;
     }
 
     public static List<String> findAcceptedWords(List<String> words, String pattern, int maxError) {
@@ -0,0 +1,329 @@
+// Copyright (c) 2013 Gratian Lup. All rights reserved.
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are
+// met:
+//
+// * Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+//
+// * Redistributions in binary form must reproduce the above
+// copyright notice, this list of conditions and the following
+// disclaimer in the documentation and/or other materials provided
+// with the distribution.
+//
+// * The name "FuzzyStringMatching" must not be used to endorse or promote
+// products derived from this software without prior written permission.
+//
+// * Products derived from this software may not be called "FuzzyStringMatching" nor
+// may "FuzzyStringMatching" appear in their names without prior written
+// permission of the author.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+// A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+// OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+// SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+// LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+// DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// A succinct trie using the level-order unary degree sequence (LOUDS)
+// representation (see "Space-efficient static trees and graphs" by G. Jacobson).
+// The nodes are numbered in breadth-first order, and each node is described
+// in this order by a one bit for each child, followed by a zero bit. With rank
+// and select on these bits, the children of a node, which have consecutive
+// numbers, can be found using only about 2 bits for each node. The letters of
+// the nodes are stored by node number, as one byte if the dictionary has at most
+// 255 distinct letters, otherwise as a char, and the terminators as a bit vector.
+// This uses about 1.5 bytes for each node (2.5 with char letters), compared
+// to 16 for CompactTrie, but finding the children of a node is slower.
+public class LoudsTrie extends Trie {
+    // Used to create links into the main trie.
+    public class LoudsTrieProxy extends Trie {
+        private LoudsTrie trie;
+        private int nodeId;
+
+        public LoudsTrieProxy(LoudsTrie trie, int nodeId) {
+            this.trie = trie;
+            this.nodeId = nodeId;
+        }
+
+        @Override
+        public void addWords(List<String> words) {
+            // This is just a proxy for an already created trie.
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public TrieChildren getChildren() {
+            return trie.getChildren(nodeId);
+        }
+
+        @Override
+        public Trie getChildForLetter(char letter) {
+            return trie.getChildForLetter(nodeId, letter);
+        }
+
+        @Override
+        public boolean isTerminator() {
+            return trie.isTerminator(nodeId);
+        }
+    }
+
+    private SuccinctBitVector structure;  // The LOUDS bits, starting with "10" for the root.
+    private SuccinctBitVector terminators;
+    private byte[] letterCodes;           // Used if the letters fit in a byte, otherwise 'letters'.
+    private char[] alphabet;              // The letter of each code.
+    private char[] letters;
+    private int nodeCount;
+
+    @Override
+    public void addWords(List<String> words) {
+        // The nodes are created in breadth-first order. Each node is associated
+        // with the range of the sorted words having the node's word as prefix,
+        // and its children are the distinct letters at its depth in the range.
+        if(structure != null) {
+            throw new IllegalStateException("Words were already added to the trie!");
+        }
+
+        // A sorted copy is used, leaving the caller's list unchanged.
+        words = new ArrayList<String>(words);
+        Collections.sort(words);
+        IntList rangeStarts = new IntList();
+        IntList rangeEnds = new IntList();
+        IntList depths = new IntList();
+        StringBuilder nodeLetters = new StringBuilder();
+        BitBuilder structureBits = new BitBuilder();
+        BitBuilder terminatorBits = new BitBuilder();
+
+        rangeStarts.add(0);
+        rangeEnds.add(words.size());
+        depths.add(0);
+        nodeLetters.append('\0');
+        structureBits.add(true); // The root is the child of a virtual node.
+        structureBits.add(false);
+
+        for(int nodeId = 0; nodeId < rangeStarts.size(); nodeId++) {
+            int start = rangeStarts.get(nodeId);
+            int end = rangeEnds.get(nodeId);
+            int depth = depths.get(nodeId);
+            boolean terminator = false;
+
+            // The words ending at the node come first in the range.
+            while(start < end && words.get(start).length() == depth) {
+                terminator = true;
+                start++;
+            }
+
+            terminatorBits.add(terminator);
+
+            for(int i = start; i < end; i++) {
+                char letter = words.get(i).charAt(depth);
+
+                if(i == start || words.get(i - 1).charAt(depth) != letter) {
+                    if(i != start) {
+                        rangeEnds.add(i);
+                    }
+
+                    rangeStarts.add(i);
+                    depths.add(depth + 1);
+                    nodeLetters.append(letter);
+                    structureBits.add(true);
+                }
+            }
+
+            if(start < end) {
+                rangeEnds.add(end);
+            }
+
+            structureBits.add(false);
+        }
+
+        nodeCount = rangeStarts.size();
+        structure = structureBits.build();
+        terminators = terminatorBits.build();
+        packLetters(nodeLetters);
+    }
+
+    private void packLetters(CharSequence nodeLetters) {
+        // Number the distinct letters, and store the codes
+        // instead of the letters if they fit in a byte.
+        boolean[] used = new boolean[Character.MAX_VALUE + 1];
+        int letterCount = 0;
+
+        for(int i = 1; i < nodeLetters.length(); i++) {
+            if(!used[nodeLetters.charAt(i)]) {
+                used[nodeLetters.charAt(i)] = true;
+                letterCount++;
+            }
+        }
+
+        if(letterCount > 255) {
+            letters = new char[nodeLetters.length()];
+
+            for(int i = 0; i < letters.length; i++) {
+                letters[i] = nodeLetters.charAt(i);
+            }
+
+            return;
+        }
+
+        char[] codes = new char[Character.MAX_VALUE + 1];
+        alphabet = new char[letterCount + 1];
+        int code = 1;
+
+        for(int letter = 0; letter <= Character.MAX_VALUE; letter++) {
+            if(used[letter]) {
+                alphabet[code] = (char)letter;
+                codes[letter] = (char)code;
+                code++;
+            }
+        }
+
+        letterCodes = new byte[nodeLetters.length()];
+
+        for(int i = 1; i < letterCodes.length; i++) {
+            letterCodes[i] = (byte)codes[nodeLetters.charAt(i)];
+        }
+    }
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    // Returns the letter leading to the node.
+    public char getLetter(int nodeId) {
+        return (letterCodes != null) ? alphabet[letterCodes[nodeId] & 0xFF] : letters[nodeId];
+    }
+
+    // Returns the number of the first child of the node; the children
+    // have consecutive numbers. The node with number N is described
+    // by the bits after the (N + 1)-th zero.
+    public int getFirstChild(int nodeId) {
+        return structure.rank1(structure.select0(nodeId + 1) + 1);
+    }
+
+    public int getChildrenCount(int nodeId) {
+        int start = structure.select0(nodeId + 1) + 1;
+        int end = structure.select0(nodeId + 2);
+        return end - start;
+    }
+
+    // Returns the child of the node for the letter, or -1 if there is no such child.
+    public int findChild(int nodeId, char letter) {
+        // The children are sorted by their letter.
+        int start = structure.select0(nodeId + 1) + 1;
+        int childCount = structure.select0(nodeId + 2) - start;
+        int low = structure.rank1(start);
+        int high = low + childCount - 1;
+
+        while(low <= high) {
+            int middle = (low + high) >>> 1;
+            char middleLetter = getLetter(middle);
+
+            if(middleLetter == letter) {
+                return middle;
+            }
+            else if(middleLetter < letter) {
+                low = middle + 1;
+            }
+            else high = middle - 1;
+        }
+
+        return -1;
+    }
+
+    // Returns the node reached by following the letters of the word
+    // starting from the root, or -1 if there is no such node.
+    public int findNode(String word) {
+        int nodeId = 0;
+
+        for(int i = 0; i < word.length() && nodeId != -1; i++) {
+            nodeId = findChild(nodeId, word.charAt(i));
+        }
+
+        return nodeId;
+    }
+
+    public boolean contains(String word) {
+        int nodeId = findNode(word);
+        return (nodeId != -1) && terminators.get(nodeId);
+    }
+
+    protected TrieChildren getChildren(int nodeId) {
+        int start = structure.select0(nodeId + 1) + 1;
+        int childCount = structure.select0(nodeId + 2) - start;
+        int firstChild = structure.rank1(start);
+        TrieChildren result = new TrieChildren(childCount);
+
+        for(int i = 0; i < childCount; i++) {
+            int childId = firstChild + i;
+            result.putPair(i, getLetter(childId), new LoudsTrieProxy(this, childId));
+        }
+
+        return result;
+    }
+
+    protected Trie getChildForLetter(int nodeId, char letter) {
+        int childId = findChild(nodeId, letter);
+        return (childId != -1) ? new LoudsTrieProxy(this, childId) : null;
+    }
+
+    protected boolean isTerminator(int nodeId) {
+        return terminators.get(nodeId);
+    }
+
+    @Override
+    public TrieChildren getChildren() {
+        return getChildren(0);
+    }
+
+    @Override
+    public Trie getChildForLetter(char letter) {
+        return getChildForLetter(0, letter);
+    }
+
+    @Override
+    public boolean isTerminator() {
+        return isTerminator(0);
+    }
+
+    // Returns the number of bytes used by the arrays of the trie.
+    public long getSizeInBytes() {
+        long letterBytes = (letterCodes != null) ? letterCodes.length + 2L * alphabet.length :
+                                                   2L * letters.length;
+        return structure.getSizeInBytes() + terminators.getSizeInBytes() + letterBytes;
+    }
+
+    // Appends bits to a growing array of words.
+    private static class BitBuilder {
+        private long[] words = new long[16];
+        private int length;
+
+        public void add(boolean bit) {
+            if((length >>> 6) == words.length) {
+                long[] newWords = new long[words.length * 2];
+                System.arraycopy(words, 0, newWords, 0, words.length);
+                words = newWords;
+            }
+
+            if(bit) {
+                words[length >>> 6] |= 1L << length;
+            }
+
+            length++;
+        }
+
+        public SuccinctBitVector build() {
+            long[] usedWords = new long[(length + 63) >>> 6];
+            System.arraycopy(words, 0, usedWords, 0, usedWords.length);
+            return new SuccinctBitVector(usedWords, length);
+        }
+    }
+}
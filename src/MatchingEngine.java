@@ -0,0 +1,54 @@
+// Copyright (c) 2013 Gratian Lup. All rights reserved.
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are
+// met:
+//
+// * Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+//
+// * Redistributions in binary form must reproduce the above
+// copyright notice, this list of conditions and the following
+// disclaimer in the documentation and/or other materials provided
+// with the distribution.
+//
+// * The name "FuzzyStringMatching" must not be used to endorse or promote
+// products derived from this software without prior written permission.
+//
+// * Products derived from this software may not be called "FuzzyStringMatching" nor
+// may "FuzzyStringMatching" appear in their names without prior written
+// permission of the author.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+// A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+// OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+// SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+// LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+// DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE
+import java.util.List;
+
+// The query contract shared by all fuzzy search engines, allowing
+// the engine to be selected according to the dictionary and workload.
+public interface MatchingEngine {
+    // Returns all dictionary words whose distance to the specified word
+    // is at most the maximum error of the engine. The engine's distance is
+    // the Levenshtein distance unless the engine is configured otherwise
+    // (for example FuzzyMatching with transpositions or edit costs, see getDistanceModel).
+    public List<String> findMatchingWords(String word);
+
+    // Returns the maximum distance, in the engine's distance, of the matching words.
+    public int getMaxError();
+
+    // Returns the distance used by the engine.
+    public DistanceModel getDistanceModel();
+
+    // Returns a rough estimate of the work needed to search for the word,
+    // in elementary steps (letters compared, trie nodes visited). Used by
+    // QueryPlanner to select the engine, after being scaled by the
+    // time per step measured for each engine.
+    public double estimateCost(String word, DictionaryStatistics statistics);
+}
@@ -0,0 +1,433 @@
+// Copyright (c) 2013 Gratian Lup. All rights reserved.
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are
+// met:
+//
+// * Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+//
+// * Redistributions in binary form must reproduce the above
+// copyright notice, this list of conditions and the following
+// disclaimer in the documentation and/or other materials provided
+// with the distribution.
+//
+// * The name "FuzzyStringMatching" must not be used to endorse or promote
+// products derived from this software without prior written permission.
+//
+// * Products derived from this software may not be called "FuzzyStringMatching" nor
+// may "FuzzyStringMatching" appear in their names without prior written
+// permission of the author.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+// A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+// OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+// SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+// LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+// DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+// A dictionary that accepts inserts and deletes while it is being searched.
+// The words are kept in an immutable CompactTrie (the base) and a small
+// delta trie holding the changes made since the base was built. A word found
+// in the delta overrides the base: it is either inserted or deleted (a tombstone).
+// The delta is also immutable, each change creating a new version of it
+// by copying the nodes on the path of the word. The current base and delta
+// are published together as a snapshot, so searches use a consistent view
+// and never wait for writers. When the delta grows too large it is merged
+// with the base into a new CompactTrie in the background (compaction).
+public class MutableDictionary implements MatchingEngine {
+    private static final int DEFAULT_COMPACTION_THRESHOLD = 4096;
+
+    // The state of a word found in the delta trie.
+    private static final byte ABSENT = 0;
+    private static final byte INSERTED = 1;
+    private static final byte DELETED = 2;
+
+    // A node of the delta trie. The nodes are never modified after
+    // they are published; the children are sorted by letter.
+    private static class DeltaTrie extends Trie {
+        private static final char[] NO_LETTERS = new char[0];
+        private static final DeltaTrie[] NO_CHILDREN = new DeltaTrie[0];
+
+        private final byte state;
+        private final char[] letters;
+        private final DeltaTrie[] children;
+
+        public DeltaTrie(byte state, char[] letters, DeltaTrie[] children) {
+            this.state = state;
+            this.letters = letters;
+            this.children = children;
+        }
+
+        public DeltaTrie() {
+            this(ABSENT, NO_LETTERS, NO_CHILDREN);
+        }
+
+        @Override
+        public void addWords(List<String> words) {
+            // The trie is changed only through setState.
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public TrieChildren getChildren() {
+            TrieChildren result = new TrieChildren(letters.length);
+
+            for(int i = 0; i < letters.length; i++) {
+                result.putPair(i, letters[i], children[i]);
+            }
+
+            return result;
+        }
+
+        @Override
+        public Trie getChildForLetter(char letter) {
+            int index = Arrays.binarySearch(letters, letter);
+            return (index >= 0) ? children[index] : null;
+        }
+
+        @Override
+        public boolean isTerminator() {
+            return state == INSERTED;
+        }
+
+        public byte getState(String word) {
+            DeltaTrie node = this;
+
+            for(int i = 0; i < word.length() && node != null; i++) {
+                node = (DeltaTrie)node.getChildForLetter(word.charAt(i));
+            }
+
+            return (node != null) ? node.state : ABSENT;
+        }
+
+        // Returns a new trie where the word has the specified state,
+        // sharing with this trie the nodes not on the path of the word.
+        public DeltaTrie setState(String word, int position, byte newState) {
+            if(position == word.length()) {
+                return new DeltaTrie(newState, letters, children);
+            }
+
+            char letter = word.charAt(position);
+            int index = Arrays.binarySearch(letters, letter);
+            char[] newLetters = letters;
+            DeltaTrie[] newChildren;
+
+            if(index >= 0) {
+                newChildren = children.clone();
+                newChildren[index] = children[index].setState(word, position + 1, newState);
+            }
+            else {
+                // Insert the new child keeping the letters sorted.
+                index = -(index + 1);
+                newLetters = new char[letters.length + 1];
+                newChildren = new DeltaTrie[children.length + 1];
+                System.arraycopy(letters, 0, newLetters, 0, index);
+                System.arraycopy(children, 0, newChildren, 0, index);
+                System.arraycopy(letters, index, newLetters, index + 1, letters.length - index);
+                System.arraycopy(children, index, newChildren, index + 1, children.length - index);
+                newLetters[index] = letter;
+                newChildren[index] = new DeltaTrie().setState(word, position + 1, newState);
+            }
+
+            return new DeltaTrie(state, newLetters, newChildren);
+        }
+
+        // Adds the words having a state to the lists of inserted and deleted words.
+        public void collectWords(StringBuilder word, List<String> inserted, List<String> deleted) {
+            if(state == INSERTED) {
+                inserted.add(word.toString());
+            }
+            else if(state == DELETED) {
+                deleted.add(word.toString());
+            }
+
+            for(int i = 0; i < letters.length; i++) {
+                word.append(letters[i]);
+                children[i].collectWords(word, inserted, deleted);
+                word.setLength(word.length() - 1);
+            }
+        }
+    }
+
+    // The base and delta tries seen by the searches, never modified.
+    private static class Snapshot {
+        public final CompactTrie base;
+        public final DeltaTrie delta;
+        public final int deltaSize; // The number of words found in the delta.
+        public final FuzzyMatching baseMatching;
+        public final FuzzyMatching deltaMatching;
+
+        // The matching of the base is shared by all snapshots using the same base,
+        // so a change of the delta creates only the matching of the new delta.
+        public Snapshot(CompactTrie base, FuzzyMatching baseMatching,
+                        DeltaTrie delta, int deltaSize, int maxError) {
+            this.base = base;
+            this.delta = delta;
+            this.deltaSize = deltaSize;
+            this.baseMatching = baseMatching;
+            this.deltaMatching = new FuzzyMatching(delta, maxError);
+        }
+
+        public Snapshot(CompactTrie base, DeltaTrie delta, int deltaSize, int maxError) {
+            this(base, new FuzzyMatching(base, maxError), delta, deltaSize, maxError);
+        }
+    }
+
+    private int maxError;
+    private int compactionThreshold;
+    private ExecutorService executor;
+    private AtomicReference<Snapshot> snapshot = new AtomicReference<Snapshot>();
+    private AtomicBoolean compactionRunning = new AtomicBoolean();
+    private AtomicReference<RuntimeException> compactionFailure = new AtomicReference<RuntimeException>();
+    private final Object writeLock = new Object();
+    private final Object compactionLock = new Object();
+
+    // The compaction runs on the executor when the delta has at least
+    // 'compactionThreshold' words. Without an executor it runs
+    // in the thread making the change that reaches the threshold.
+    public MutableDictionary(List<String> words, int maxError,
+                             int compactionThreshold, ExecutorService executor) {
+        if(words == null) {
+            throw new IllegalArgumentException("Word list is null");
+        }
+
+        this.maxError = maxError;
+        this.compactionThreshold = compactionThreshold;
+        this.executor = executor;
+        snapshot.set(new Snapshot(buildBase(words), new DeltaTrie(), 0, maxError));
+    }
+
+    public MutableDictionary(List<String> words, int maxError, ExecutorService executor) {
+        this(words, maxError, DEFAULT_COMPACTION_THRESHOLD, executor);
+    }
+
+    public MutableDictionary(List<String> words, int maxError) {
+        this(words, maxError, null);
+    }
+
+    private static CompactTrie buildBase(List<String> words) {
+        CompactTrie base = new CompactTrie();
+        base.addWords(new ArrayList<String>(words));
+        return base;
+    }
+
+    @Override
+    public int getMaxError() {
+        return maxError;
+    }
+
+    @Override
+    public DistanceModel getDistanceModel() {
+        return DistanceModel.LEVENSHTEIN;
+    }
+
+    @Override
+    public double estimateCost(String word, DictionaryStatistics statistics) {
+        // The delta is small compared to the base.
+        return snapshot.get().baseMatching.estimateCost(word, statistics);
+    }
+
+    @Override
+    public List<String> findMatchingWords(String word) {
+        // The words of the base that are found in the delta
+        // were either deleted, or are returned by the delta search.
+        Snapshot current = snapshot.get();
+        List<String> matchingWords = new ArrayList<String>();
+
+        for(String matchingWord : current.baseMatching.findMatchingWords(word)) {
+            if(current.deltaSize == 0 || current.delta.getState(matchingWord) == ABSENT) {
+                matchingWords.add(matchingWord);
+            }
+        }
+
+        if(current.deltaSize > 0) {
+            matchingWords.addAll(current.deltaMatching.findMatchingWords(word));
+        }
+
+        return matchingWords;
+    }
+
+    public boolean contains(String word) {
+        Snapshot current = snapshot.get();
+        byte state = current.delta.getState(word);
+
+        if(state != ABSENT) {
+            return state == INSERTED;
+        }
+
+        int nodeId = current.base.findNode(word);
+        return (nodeId != -1) && current.base.isTerminatorNode(nodeId);
+    }
+
+    public void addWord(String word) {
+        if(word == null) {
+            throw new IllegalArgumentException("Word to add is null");
+        }
+
+        setState(word, INSERTED);
+    }
+
+    public void removeWord(String word) {
+        if(word == null) {
+            throw new IllegalArgumentException("Word to remove is null");
+        }
+
+        setState(word, DELETED);
+    }
+
+    // Returns the number of words inserted or deleted since the last compaction.
+    public int getDeltaSize() {
+        return snapshot.get().deltaSize;
+    }
+
+    private void setState(String word, byte state) {
+        Snapshot newSnapshot;
+
+        synchronized(writeLock) {
+            // The searches continue using the previous snapshot
+            // until the new one is published.
+            Snapshot current = snapshot.get();
+            int deltaSize = current.deltaSize;
+
+            if(current.delta.getState(word) == ABSENT) {
+                deltaSize++;
+            }
+
+            newSnapshot = new Snapshot(current.base, current.baseMatching,
+                                       current.delta.setState(word, 0, state),
+                                       deltaSize, maxError);
+            snapshot.set(newSnapshot);
+        }
+
+        if(newSnapshot.deltaSize >= compactionThreshold) {
+            startCompaction();
+        }
+    }
+
+    private void startCompaction() {
+        // At most one compaction runs at a time.
+        if(!compactionRunning.compareAndSet(false, true)) {
+            return;
+        }
+
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                RuntimeException failure = runCompaction();
+
+                if(failure != null) {
+                    // Also reported by the thread running the task.
+                    throw failure;
+                }
+            }
+        };
+
+        if(executor != null) {
+            try {
+                executor.execute(task);
+                return;
+            }
+            catch(RejectedExecutionException ex) {
+                // The executor was shut down or is full; compact now
+                // instead of letting the delta grow without limit.
+            }
+        }
+
+        // The change that started the compaction is already published,
+        // so a failure is not thrown to its caller, which would consider
+        // the change failed. It is kept for getCompactionFailure instead.
+        runCompaction();
+    }
+
+    // Returns the exception thrown by the compaction, or null if it succeeded.
+    private RuntimeException runCompaction() {
+        try {
+            compact();
+            compactionFailure.set(null);
+            return null;
+        }
+        catch(RuntimeException ex) {
+            compactionFailure.set(ex);
+            return ex;
+        }
+        finally {
+            compactionRunning.set(false);
+        }
+    }
+
+    // Returns the exception thrown by the last compaction started by a change,
+    // or null if it succeeded. Such a failure is never thrown by addWord or
+    // removeWord, the change being applied anyway. Compaction is retried on the next change.
+    public RuntimeException getCompactionFailure() {
+        return compactionFailure.get();
+    }
+
+    // Merges the delta into a new base. The new trie is built without
+    // blocking the writers; the changes made meanwhile are kept in the delta.
+    public void compact() {
+        synchronized(compactionLock) {
+            compactImpl();
+        }
+    }
+
+    private void compactImpl() {
+        Snapshot compacted = snapshot.get();
+        List<String> inserted = new ArrayList<String>();
+        List<String> deleted = new ArrayList<String>();
+        compacted.delta.collectWords(new StringBuilder(), inserted, deleted);
+
+        if(inserted.isEmpty() && deleted.isEmpty()) {
+            return;
+        }
+
+        List<String> words = new ArrayList<String>();
+
+        for(String word : compacted.base.getWords()) {
+            if(compacted.delta.getState(word) == ABSENT) {
+                words.add(word);
+            }
+        }
+
+        words.addAll(inserted);
+        CompactTrie newBase = buildBase(words);
+
+        synchronized(writeLock) {
+            // A word changed after the compaction started keeps its entry
+            // in the delta, unless its state is again the one merged into the base.
+            Snapshot current = snapshot.get();
+            List<String> currentInserted = new ArrayList<String>();
+            List<String> currentDeleted = new ArrayList<String>();
+            current.delta.collectWords(new StringBuilder(), currentInserted, currentDeleted);
+            DeltaTrie newDelta = new DeltaTrie();
+            int deltaSize = 0;
+
+            for(String word : currentInserted) {
+                if(compacted.delta.getState(word) != INSERTED) {
+                    newDelta = newDelta.setState(word, 0, INSERTED);
+                    deltaSize++;
+                }
+            }
+
+            for(String word : currentDeleted) {
+                if(compacted.delta.getState(word) != DELETED) {
+                    newDelta = newDelta.setState(word, 0, DELETED);
+                    deltaSize++;
+                }
+            }
+
+            snapshot.set(new Snapshot(newBase, newDelta, deltaSize, maxError));
+        }
+    }
+}
@@ -0,0 +1,279 @@
+// Copyright (c) 2013 Gratian Lup. All rights reserved.
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are
+// met:
+//
+// * Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+//
+// * Redistributions in binary form must reproduce the above
+// copyright notice, this list of conditions and the following
+// disclaimer in the documentation and/or other materials provided
+// with the distribution.
+//
+// * The name "FuzzyStringMatching" must not be used to endorse or promote
+// products derived from this software without prior written permission.
+//
+// * Products derived from this software may not be called "FuzzyStringMatching" nor
+// may "FuzzyStringMatching" appear in their names without prior written
+// permission of the author.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+// A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+// OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+// SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+// LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+// DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+// Stores the arrays of a CompactTrie outside the Java heap, in direct buffers.
+// The nodes and the children are stored as fixed-size records in chunks;
+// when a chunk is full a new one is allocated, so growing never copies data
+// and the heap holds only the array of chunk references. This avoids keeping
+// large arrays in the old generation and the temporary copies made when
+// arrays grow, at the cost of slightly slower access.
+//
+// The direct buffers count against -XX:MaxDirectMemorySize, which defaults to
+// the maximum heap size (-Xmx); a trie larger than the limit fails with an
+// OutOfMemoryError even when the heap is almost empty. Their native memory is
+// freed only when the garbage collector collects the buffers, not when the trie
+// is dropped, so while a MutableDictionary compacts or a FuzzyMatchingHolder
+// swaps in a new dictionary, the old and the new tries both occupy native memory
+// until a collection runs. The same holds for CompactTrie.relayout, which copies
+// the records to a new off-heap storage. The limit should leave room for both.
+public class OffHeapCompactTrieStorage implements CompactTrieStorage {
+    // Node record: first child (int), minimum and maximum remaining length (short),
+    // children count (int), with the highest bit of the count marking terminators.
+    private static final int NODE_SIZE = 12;
+    private static final int FIRST_CHILD_OFFSET = 0;
+    private static final int MIN_LENGTH_OFFSET = 4;
+    private static final int MAX_LENGTH_OFFSET = 6;
+    private static final int COUNT_OFFSET = 8;
+    private static final int TERMINATOR_FLAG = 0x80000000;
+
+    // Child record: child node (int), symbol (1, 2 or 4 bytes).
+    private static final int SYMBOL_OFFSET = 4;
+
+    private static final int DEFAULT_CHUNK_SHIFT = 16; // 65536 records in a chunk.
+
+    private final int chunkShift;
+    private final int chunkMask;
+    private ByteBuffer[] nodeChunks;
+    private ByteBuffer[] childChunks;
+    private int nodeChunkCount;
+    private int childChunkCount;
+    private int lastNodeId;
+    private int lastChildId;
+    private int symbolWidth = 2;
+    private int childSize = SYMBOL_OFFSET + 2;
+
+    // Each chunk holds 2^chunkShift records.
+    public OffHeapCompactTrieStorage(int chunkShift) {
+        if(chunkShift < 4 || chunkShift > 24) {
+            throw new IllegalArgumentException("Chunk shift must be between 4 and 24!");
+        }
+
+        this.chunkShift = chunkShift;
+        this.chunkMask = (1 << chunkShift) - 1;
+        nodeChunks = new ByteBuffer[16];
+        childChunks = new ByteBuffer[16];
+    }
+
+    public OffHeapCompactTrieStorage() {
+        this(DEFAULT_CHUNK_SHIFT);
+    }
+
+    private ByteBuffer allocateChunk(int recordSize) {
+        ByteBuffer chunk = ByteBuffer.allocateDirect(recordSize << chunkShift);
+        chunk.order(ByteOrder.nativeOrder());
+        return chunk;
+    }
+
+    private ByteBuffer[] addChunk(ByteBuffer[] chunks, int chunkCount, int recordSize) {
+        // Only the references to the chunks are copied.
+        if(chunkCount == chunks.length) {
+            ByteBuffer[] newChunks = new ByteBuffer[chunks.length * 2];
+            System.arraycopy(chunks, 0, newChunks, 0, chunks.length);
+            chunks = newChunks;
+        }
+
+        chunks[chunkCount] = allocateChunk(recordSize);
+        return chunks;
+    }
+
+    private ByteBuffer getNodeChunk(int nodeId) {
+        return nodeChunks[nodeId >>> chunkShift];
+    }
+
+    private int getNodeOffset(int nodeId) {
+        return (nodeId & chunkMask) * NODE_SIZE;
+    }
+
+    private ByteBuffer getChildChunk(int childIndex) {
+        return childChunks[childIndex >>> chunkShift];
+    }
+
+    private int getChildOffset(int childIndex) {
+        return (childIndex & chunkMask) * childSize;
+    }
+
+    @Override
+    public int getNodeCount() {
+        return lastNodeId;
+    }
+
+    @Override
+    public int addNode() {
+        if((lastNodeId >>> chunkShift) == nodeChunkCount) {
+            nodeChunks = addChunk(nodeChunks, nodeChunkCount, NODE_SIZE);
+            nodeChunkCount++;
+        }
+
+        // The records of a new chunk are zeroed, the other values
+        // are correct for a node without children.
+        setFirstChild(lastNodeId, -1);
+        setRemainingLengths(lastNodeId, (short)0, Short.MAX_VALUE); // Unknown until computed.
+        lastNodeId++;
+        return lastNodeId - 1;
+    }
+
+    @Override
+    public int getFirstChild(int nodeId) {
+        return getNodeChunk(nodeId).getInt(getNodeOffset(nodeId) + FIRST_CHILD_OFFSET);
+    }
+
+    @Override
+    public void setFirstChild(int nodeId, int childIndex) {
+        getNodeChunk(nodeId).putInt(getNodeOffset(nodeId) + FIRST_CHILD_OFFSET, childIndex);
+    }
+
+    @Override
+    public int getChildrenCount(int nodeId) {
+        return getNodeChunk(nodeId).getInt(getNodeOffset(nodeId) + COUNT_OFFSET) & ~TERMINATOR_FLAG;
+    }
+
+    @Override
+    public void setChildrenCount(int nodeId, int count) {
+        ByteBuffer chunk = getNodeChunk(nodeId);
+        int offset = getNodeOffset(nodeId) + COUNT_OFFSET;
+        chunk.putInt(offset, (chunk.getInt(offset) & TERMINATOR_FLAG) | count);
+    }
+
+    @Override
+    public boolean isTerminator(int nodeId) {
+        return (getNodeChunk(nodeId).getInt(getNodeOffset(nodeId) + COUNT_OFFSET) & TERMINATOR_FLAG) != 0;
+    }
+
+    @Override
+    public void setTerminator(int nodeId, boolean terminator) {
+        ByteBuffer chunk = getNodeChunk(nodeId);
+        int offset = getNodeOffset(nodeId) + COUNT_OFFSET;
+        int count = chunk.getInt(offset) & ~TERMINATOR_FLAG;
+        chunk.putInt(offset, terminator ? (count | TERMINATOR_FLAG) : count);
+    }
+
+    @Override
+    public short getMinRemainingLength(int nodeId) {
+        return getNodeChunk(nodeId).getShort(getNodeOffset(nodeId) + MIN_LENGTH_OFFSET);
+    }
+
+    @Override
+    public short getMaxRemainingLength(int nodeId) {
+        return getNodeChunk(nodeId).getShort(getNodeOffset(nodeId) + MAX_LENGTH_OFFSET);
+    }
+
+    @Override
+    public void setRemainingLengths(int nodeId, short minLength, short maxLength) {
+        ByteBuffer chunk = getNodeChunk(nodeId);
+        int offset = getNodeOffset(nodeId);
+        chunk.putShort(offset + MIN_LENGTH_OFFSET, minLength);
+        chunk.putShort(offset + MAX_LENGTH_OFFSET, maxLength);
+    }
+
+    @Override
+    public int getChildCount() {
+        return lastChildId;
+    }
+
+    @Override
+    public void setSymbolWidth(int symbolWidth) {
+        if(lastChildId > 0) {
+            throw new IllegalStateException("Symbol width can't be changed after adding children!");
+        }
+
+        if(symbolWidth != 1 && symbolWidth != 2 && symbolWidth != 4) {
+            throw new IllegalArgumentException("Symbol width must be 1, 2 or 4!");
+        }
+
+        this.symbolWidth = symbolWidth;
+        childSize = SYMBOL_OFFSET + symbolWidth;
+    }
+
+    @Override
+    public int getSymbolWidth() {
+        return symbolWidth;
+    }
+
+    @Override
+    public int addChild(int childNodeId, int symbol) {
+        if((lastChildId >>> chunkShift) == childChunkCount) {
+            childChunks = addChunk(childChunks, childChunkCount, childSize);
+            childChunkCount++;
+        }
+
+        setChild(lastChildId, childNodeId);
+        setChildSymbol(lastChildId, symbol);
+        lastChildId++;
+        return lastChildId - 1;
+    }
+
+    @Override
+    public int getChild(int childIndex) {
+        return getChildChunk(childIndex).getInt(getChildOffset(childIndex));
+    }
+
+    @Override
+    public void setChild(int childIndex, int childNodeId) {
+        getChildChunk(childIndex).putInt(getChildOffset(childIndex), childNodeId);
+    }
+
+    @Override
+    public int getChildSymbol(int childIndex) {
+        ByteBuffer chunk = getChildChunk(childIndex);
+        int offset = getChildOffset(childIndex) + SYMBOL_OFFSET;
+
+        switch(symbolWidth) {
+            case 1: return chunk.get(offset) & 0xFF;
+            case 2: return chunk.getChar(offset);
+            default: return chunk.getInt(offset);
+        }
+    }
+
+    @Override
+    public void setChildSymbol(int childIndex, int symbol) {
+        ByteBuffer chunk = getChildChunk(childIndex);
+        int offset = getChildOffset(childIndex) + SYMBOL_OFFSET;
+
+        switch(symbolWidth) {
+            case 1: chunk.put(offset, (byte)symbol); break;
+            case 2: chunk.putChar(offset, (char)symbol); break;
+            default: chunk.putInt(offset, symbol); break;
+        }
+    }
+
+    @Override
+    public long getSizeInBytes() {
+        return ((long)nodeChunkCount * NODE_SIZE + (long)childChunkCount * childSize) << chunkShift;
+    }
+
+    @Override
+    public CompactTrieStorage createEmpty() {
+        return new OffHeapCompactTrieStorage(chunkShift);
+    }
+}
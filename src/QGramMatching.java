@@ -0,0 +1,309 @@
+// Copyright (c) 2013 Gratian Lup. All rights reserved.
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are
+// met:
+//
+// * Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+//
+// * Redistributions in binary form must reproduce the above
+// copyright notice, this list of conditions and the following
+// disclaimer in the documentation and/or other materials provided
+// with the distribution.
+//
+// * The name "FuzzyStringMatching" must not be used to endorse or promote
+// products derived from this software without prior written permission.
+//
+// * Products derived from this software may not be called "FuzzyStringMatching" nor
+// may "FuzzyStringMatching" appear in their names without prior written
+// permission of the author.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+// A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+// OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+// SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+// LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+// DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE
+import java.util.*;
+
+// Finds the matching words using an inverted index of q-grams (substrings
+// of length q). If the Levenshtein distance of two words is at most K, the words
+// share at least max(N, M) + q - 1 - K * q of their q-grams ("q-gram lemma",
+// see "Approximate string matching with q-grams and maximal matches" by E. Ukkonen),
+// where the words are padded with q - 1 special letters at both ends.
+// Counting the shared q-grams eliminates most words without computing any
+// distance, which makes this engine suited for long words and larger errors,
+// where the automaton and the trie walk become expensive.
+public class QGramMatching implements MatchingEngine {
+    private static final char PADDING = '\u0000';
+    private static final int MAX_GRAM_LENGTH = 4; // A q-gram must fit in a long.
+
+    // Per-thread buffers used to count the shared q-grams of each word.
+    private static class CountBuffers {
+        public int[] counts;     // Shared q-grams, indexed by word ordinal.
+        public IntList touched;  // Ordinals having a non-zero count.
+
+        public CountBuffers(int wordCount) {
+            counts = new int[wordCount];
+            touched = new IntList();
+        }
+    }
+
+
+    private String[] words;
+    private int gramLength;
+    private int maxError;
+
+    // The posting list of the q-gram 'gramKeys[i]' is stored in 'postings'
+    // between 'postingOffsets[i]' and 'postingOffsets[i + 1]'. The word ordinals
+    // are sorted, and each is stored as the difference from the previous one,
+    // using a variable number of bytes. A word containing the same q-gram
+    // multiple times appears multiple times (with a zero difference).
+    private long[] gramKeys;
+    private int[] postingOffsets;
+    private byte[] postings;
+    private ThreadLocal<CountBuffers> countBuffers;
+
+    public QGramMatching(List<String> words, int gramLength, int maxError) {
+        if(words == null) {
+            throw new IllegalArgumentException("Word list is null");
+        }
+
+        if(gramLength < 1 || gramLength > MAX_GRAM_LENGTH) {
+            throw new IllegalArgumentException("Q-gram length must be between 1 and " +
+                                               MAX_GRAM_LENGTH + "!");
+        }
+
+        // A word appearing multiple times in the list is indexed once,
+        // so that it is found only once, like in the trie.
+        Set<String> distinctWords = new LinkedHashSet<String>(words);
+        this.words = distinctWords.toArray(new String[distinctWords.size()]);
+        this.gramLength = gramLength;
+        this.maxError = maxError;
+        this.countBuffers = new ThreadLocal<CountBuffers>() {
+            @Override
+            protected CountBuffers initialValue() {
+                return new CountBuffers(QGramMatching.this.words.length);
+            }
+        };
+
+        buildIndex();
+    }
+
+    public QGramMatching(List<String> words, int maxError) {
+        this(words, 3, maxError);
+    }
+
+    @Override
+    public int getMaxError() {
+        return maxError;
+    }
+
+    @Override
+    public DistanceModel getDistanceModel() {
+        return DistanceModel.LEVENSHTEIN;
+    }
+
+    @Override
+    public double estimateCost(String word, DictionaryStatistics statistics) {
+        if(getMinSharedGrams(word.length(), word.length()) <= 0) {
+            return (double)words.length * word.length();
+        }
+
+        // Each entry of the posting lists of the query q-grams is decoded and counted.
+        int gramCount = word.length() + gramLength - 1;
+        double averagePostingLength = gramKeys.length > 0 ?
+                                      (double)postings.length / gramKeys.length : 0;
+        return 2 * gramCount * averagePostingLength;
+    }
+
+    public int getGramLength() {
+        return gramLength;
+    }
+
+    // Returns the q-grams of the padded word, each packed into a long.
+    private long[] getGrams(String word) {
+        int paddedLength = word.length() + 2 * (gramLength - 1);
+        long[] grams = new long[paddedLength - gramLength + 1];
+
+        for(int i = 0; i < grams.length; i++) {
+            long gram = 0;
+
+            for(int j = 0; j < gramLength; j++) {
+                int position = i + j - (gramLength - 1);
+                char letter = (position >= 0 && position < word.length()) ?
+                              word.charAt(position) : PADDING;
+                gram = (gram << 16) | letter;
+            }
+
+            grams[i] = gram;
+        }
+
+        return grams;
+    }
+
+    private void buildIndex() {
+        // Collect the posting lists first, then store them compressed in a single array.
+        // The words are visited in order, so the ordinals in each list are sorted.
+        Map<Long, IntList> gramWords = new HashMap<Long, IntList>();
+
+        for(int i = 0; i < words.length; i++) {
+            for(long gram : getGrams(words[i])) {
+                IntList postingList = gramWords.get(gram);
+
+                if(postingList == null) {
+                    postingList = new IntList(4);
+                    gramWords.put(gram, postingList);
+                }
+
+                postingList.add(i);
+            }
+        }
+
+        gramKeys = new long[gramWords.size()];
+        int keyIndex = 0;
+
+        for(long gram : gramWords.keySet()) {
+            gramKeys[keyIndex++] = gram;
+        }
+
+        Arrays.sort(gramKeys);
+        postingOffsets = new int[gramKeys.length + 1];
+        byte[] buffer = new byte[1024];
+        int position = 0;
+
+        for(int i = 0; i < gramKeys.length; i++) {
+            IntList postingList = gramWords.get(gramKeys[i]);
+            int previous = 0;
+            postingOffsets[i] = position;
+
+            for(int j = 0; j < postingList.size(); j++) {
+                if(position + 5 > buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+
+                int delta = postingList.get(j) - previous;
+                previous = postingList.get(j);
+
+                // Store 7 bits per byte, the highest bit marking
+                // that more bytes follow.
+                while(delta >= 0x80) {
+                    buffer[position++] = (byte)((delta & 0x7F) | 0x80);
+                    delta >>>= 7;
+                }
+
+                buffer[position++] = (byte)delta;
+            }
+        }
+
+        postingOffsets[gramKeys.length] = position;
+        postings = Arrays.copyOf(buffer, position);
+    }
+
+    // Adds to the counts of the words containing the q-gram
+    // at most 'queryCount' for each word (the number of times
+    // the q-gram appears in the query word).
+    private void countGram(long gram, int queryCount, CountBuffers buffers) {
+        int keyIndex = Arrays.binarySearch(gramKeys, gram);
+
+        if(keyIndex < 0) {
+            return;
+        }
+
+        int position = postingOffsets[keyIndex];
+        int end = postingOffsets[keyIndex + 1];
+        int ordinal = 0;
+        int lastOrdinal = -1;
+        int occurrences = 0;
+
+        while(position < end) {
+            // Decode the next ordinal.
+            int delta = 0;
+            int shift = 0;
+            byte value;
+
+            do {
+                value = postings[position++];
+                delta |= (value & 0x7F) << shift;
+                shift += 7;
+            } while((value & 0x80) != 0);
+
+            ordinal += delta;
+            occurrences = (ordinal == lastOrdinal) ? occurrences + 1 : 1;
+            lastOrdinal = ordinal;
+
+            if(occurrences <= queryCount) {
+                if(buffers.counts[ordinal] == 0) {
+                    buffers.touched.add(ordinal);
+                }
+
+                buffers.counts[ordinal]++;
+            }
+        }
+    }
+
+    // Returns the minimum number of shared q-grams a word of the specified
+    // length must have to be possibly within 'maxError' of the query word.
+    private int getMinSharedGrams(int queryLength, int wordLength) {
+        return Math.max(queryLength, wordLength) + gramLength - 1 - maxError * gramLength;
+    }
+
+    @Override
+    public List<String> findMatchingWords(String word) {
+        List<String> matchingWords = new ArrayList<String>();
+
+        if(getMinSharedGrams(word.length(), word.length()) <= 0) {
+            // The words sharing no q-gram can't be eliminated,
+            // all words with a compatible length must be verified.
+            for(String candidate : words) {
+                if(LevenshteinDistance.isAcceptedWord(candidate, word, maxError)) {
+                    matchingWords.add(candidate);
+                }
+            }
+
+            return matchingWords;
+        }
+
+        // Count the q-grams shared by the query and each dictionary word.
+        // Equal q-grams of the query word are counted together.
+        long[] grams = getGrams(word);
+        Arrays.sort(grams);
+        CountBuffers buffers = countBuffers.get();
+        int gramIndex = 0;
+
+        while(gramIndex < grams.length) {
+            int queryCount = 1;
+
+            while(gramIndex + queryCount < grams.length &&
+                  grams[gramIndex + queryCount] == grams[gramIndex]) {
+                queryCount++;
+            }
+
+            countGram(grams[gramIndex], queryCount, buffers);
+            gramIndex += queryCount;
+        }
+
+        // Verify the words that pass both the length and count filters,
+        // resetting the counts for the next query.
+        for(int i = 0; i < buffers.touched.size(); i++) {
+            int ordinal = buffers.touched.get(i);
+            String candidate = words[ordinal];
+            int sharedGrams = buffers.counts[ordinal];
+            buffers.counts[ordinal] = 0;
+
+            if(Math.abs(candidate.length() - word.length()) <= maxError &&
+               sharedGrams >= getMinSharedGrams(word.length(), candidate.length()) &&
+               LevenshteinDistance.computeBoundedDistance(candidate, word, maxError) <= maxError) {
+                matchingWords.add(candidate);
+            }
+        }
+
+        buffers.touched.clear();
+        return matchingWords;
+    }
+}
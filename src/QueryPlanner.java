@@ -0,0 +1,300 @@
+// Copyright (c) 2013 Gratian Lup. All rights reserved.
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are
+// met:
+//
+// * Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+//
+// * Redistributions in binary form must reproduce the above
+// copyright notice, this list of conditions and the following
+// disclaimer in the documentation and/or other materials provided
+// with the distribution.
+//
+// * The name "FuzzyStringMatching" must not be used to endorse or promote
+// products derived from this software without prior written permission.
+//
+// * Products derived from this software may not be called "FuzzyStringMatching" nor
+// may "FuzzyStringMatching" appear in their names without prior written
+// permission of the author.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+// A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+// OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+// SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+// LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+// DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE
+import java.util.ArrayList;
+import java.util.List;
+
+// Routes each query to the engine expected to answer it the fastest.
+// The cost of a query is estimated by each engine from the word length,
+// the maximum error and the dictionary statistics, then scaled by the
+// time per estimated step measured on the previous queries of the engine,
+// which corrects the estimates for the actual machine and dictionary.
+// Optionally the maximum error is selected based on the word length too,
+// short words using fewer errors (a word with 2 letters is within
+// 2 edits of any other word with 2 letters, for example).
+// The engines must be built from the same dictionary and use the same
+// distance model, so that the found words don't depend on the engine.
+public class QueryPlanner implements MatchingEngine {
+    // Number of queries each engine answers before relying on its measured time.
+    private static final int WARMUP_QUERIES = 8;
+    // Once in this many queries an engine other than the cheapest one is tried,
+    // so that the measured times follow the changes in the workload.
+    private static final int EXPLORATION_INTERVAL = 128;
+    // Weight of the newest measurement in the average time per step.
+    private static final double MEASUREMENT_WEIGHT = 0.05;
+
+    // An engine together with the measurements of its queries.
+    private static class EngineInfo {
+        public MatchingEngine engine;
+        public double nanosPerStep;
+        public long queryCount;
+
+        public EngineInfo(MatchingEngine engine) {
+            this.engine = engine;
+        }
+    }
+
+
+    // An engine selected for a query, with the cost estimated for it.
+    private static class Selection {
+        public EngineInfo info;
+        public double estimatedCost;
+
+        public Selection(EngineInfo info, double estimatedCost) {
+            this.info = info;
+            this.estimatedCost = estimatedCost;
+        }
+    }
+
+
+    private DictionaryStatistics statistics;
+    private List<EngineInfo> engines;
+    private boolean adaptiveMaxError;
+    private int[] minLengthForError; // Minimum word length for each maximum error.
+    private long queryCount;
+
+    public QueryPlanner(DictionaryStatistics statistics) {
+        if(statistics == null) {
+            throw new IllegalArgumentException("Dictionary statistics are null");
+        }
+
+        this.statistics = statistics;
+        this.engines = new ArrayList<EngineInfo>();
+        this.minLengthForError = new int[] { 0, 3, 6, 10, 15 };
+    }
+
+    public void addEngine(MatchingEngine engine) {
+        if(engine == null) {
+            throw new IllegalArgumentException("Engine is null");
+        }
+
+        synchronized(engines) {
+            if(!engines.isEmpty() &&
+               !engines.get(0).engine.getDistanceModel().equals(engine.getDistanceModel())) {
+                // The found words would depend on the engine selected for the query.
+                throw new IllegalArgumentException("Engine uses the " + engine.getDistanceModel() +
+                                                   " distance, the other engines use the " +
+                                                   engines.get(0).engine.getDistanceModel() + " distance!");
+            }
+
+            engines.add(new EngineInfo(engine));
+        }
+    }
+
+    // If enabled, the maximum error of a query is the largest one supported
+    // by an engine and allowed for the word length (see setMinLengthForError).
+    // Otherwise the largest maximum error supported by an engine is always used.
+    public void setAdaptiveMaxError(boolean adaptiveMaxError) {
+        this.adaptiveMaxError = adaptiveMaxError;
+    }
+
+    // Sets the minimum word length for which a maximum error is allowed,
+    // 'minLengths[k]' being the minimum length for 'k' errors.
+    public void setMinLengthForError(int[] minLengths) {
+        if(minLengths == null || minLengths.length == 0) {
+            throw new IllegalArgumentException("Minimum word lengths not specified");
+        }
+
+        this.minLengthForError = minLengths.clone();
+    }
+
+    @Override
+    public int getMaxError() {
+        int maxError = -1;
+
+        for(EngineInfo info : getEngines()) {
+            maxError = Math.max(maxError, info.engine.getMaxError());
+        }
+
+        return maxError;
+    }
+
+    @Override
+    public DistanceModel getDistanceModel() {
+        List<EngineInfo> currentEngines = getEngines();
+        return currentEngines.isEmpty() ? DistanceModel.LEVENSHTEIN :
+                                          currentEngines.get(0).engine.getDistanceModel();
+    }
+
+    @Override
+    public double estimateCost(String word, DictionaryStatistics statistics) {
+        double minCost = Double.MAX_VALUE;
+
+        for(EngineInfo info : getEngines()) {
+            if(info.engine.getMaxError() == selectMaxError(word)) {
+                minCost = Math.min(minCost, info.engine.estimateCost(word, statistics));
+            }
+        }
+
+        return minCost;
+    }
+
+    // Returns the number of queries answered by the specified engine.
+    public long getQueryCount(MatchingEngine engine) {
+        for(EngineInfo info : getEngines()) {
+            if(info.engine == engine) {
+                synchronized(info) {
+                    return info.queryCount;
+                }
+            }
+        }
+
+        return 0;
+    }
+
+    private List<EngineInfo> getEngines() {
+        synchronized(engines) {
+            return new ArrayList<EngineInfo>(engines);
+        }
+    }
+
+    private int selectMaxError(String word) {
+        int maxError = getMaxError();
+
+        if(!adaptiveMaxError) {
+            return maxError;
+        }
+
+        // Select the largest error allowed for the word length,
+        // then the largest one below it supported by an engine.
+        int allowedError = 0;
+
+        while(allowedError + 1 < minLengthForError.length &&
+              word.length() >= minLengthForError[allowedError + 1]) {
+            allowedError++;
+        }
+
+        int selectedError = -1;
+        int minError = Integer.MAX_VALUE;
+
+        for(EngineInfo info : getEngines()) {
+            int engineError = info.engine.getMaxError();
+            minError = Math.min(minError, engineError);
+
+            if(engineError <= allowedError) {
+                selectedError = Math.max(selectedError, engineError);
+            }
+        }
+
+        // If all engines allow more errors, the smallest one is used.
+        return selectedError != -1 ? selectedError : minError;
+    }
+
+    private Selection selectEngine(String word, int maxError, long queryIndex) {
+        Selection bestEngine = null;
+        Selection warmupEngine = null;
+        List<Selection> candidates = new ArrayList<Selection>();
+        double bestCost = Double.MAX_VALUE;
+        long warmupQueries = Long.MAX_VALUE;
+
+        for(EngineInfo info : getEngines()) {
+            if(info.engine.getMaxError() != maxError) {
+                continue;
+            }
+
+            Selection candidate = new Selection(info, info.engine.estimateCost(word, statistics));
+            double nanosPerStep;
+            long engineQueries;
+
+            synchronized(info) {
+                nanosPerStep = info.nanosPerStep;
+                engineQueries = info.queryCount;
+            }
+
+            if(engineQueries < WARMUP_QUERIES) {
+                // Not enough measurements yet, prefer the engine
+                // with the fewest queries among the ones warming up.
+                if(engineQueries < warmupQueries) {
+                    warmupEngine = candidate;
+                    warmupQueries = engineQueries;
+                }
+            }
+            else if(candidate.estimatedCost * nanosPerStep < bestCost) {
+                bestCost = candidate.estimatedCost * nanosPerStep;
+                bestEngine = candidate;
+            }
+
+            candidates.add(candidate);
+        }
+
+        if(warmupEngine != null) {
+            return warmupEngine;
+        }
+        else if(candidates.size() > 1 && queryIndex % EXPLORATION_INTERVAL == 0) {
+            // Try the engines in turn from time to time.
+            int index = (int)((queryIndex / EXPLORATION_INTERVAL) % candidates.size());
+            return candidates.get(index);
+        }
+
+        return bestEngine;
+    }
+
+    private void recordQuery(EngineInfo info, double estimatedCost, long duration) {
+        double nanosPerStep = duration / Math.max(1.0, estimatedCost);
+
+        synchronized(info) {
+            if(info.queryCount == 0) {
+                info.nanosPerStep = nanosPerStep;
+            }
+            else {
+                info.nanosPerStep = (1 - MEASUREMENT_WEIGHT) * info.nanosPerStep +
+                                    MEASUREMENT_WEIGHT * nanosPerStep;
+            }
+
+            info.queryCount++;
+        }
+    }
+
+    // Searches using the cheapest engine supporting the specified maximum error.
+    public List<String> findMatchingWords(String word, int maxError) {
+        long queryIndex;
+
+        synchronized(this) {
+            queryIndex = queryCount++;
+        }
+
+        Selection selection = selectEngine(word, maxError, queryIndex);
+
+        if(selection == null) {
+            throw new IllegalStateException("No engine supports maximum error " + maxError + "!");
+        }
+
+        long startTime = System.nanoTime();
+        List<String> matchingWords = selection.info.engine.findMatchingWords(word);
+        recordQuery(selection.info, selection.estimatedCost, System.nanoTime() - startTime);
+        return matchingWords;
+    }
+
+    @Override
+    public List<String> findMatchingWords(String word) {
+        return findMatchingWords(word, selectMaxError(word));
+    }
+}
@@ -57,13 +57,7 @@ public class SimpleTrie extends Trie {
     }
 
     public Trie getChildForLetter(char letter) {
-        for(Map.Entry<Character, Trie> entry : children.entrySet()) {
-            if(entry.getKey() == letter) {
-                return entry.getValue();
-            }
-        }
-
-        return null;
+        return children.get(letter);
     }
 
     private void addWordHelper(String word, int position) {
@@ -0,0 +1,288 @@
+// Copyright (c) 2013 Gratian Lup. All rights reserved.
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are
+// met:
+//
+// * Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+//
+// * Redistributions in binary form must reproduce the above
+// copyright notice, this list of conditions and the following
+// disclaimer in the documentation and/or other materials provided
+// with the distribution.
+//
+// * The name "FuzzyStringMatching" must not be used to endorse or promote
+// products derived from this software without prior written permission.
+//
+// * Products derived from this software may not be called "FuzzyStringMatching" nor
+// may "FuzzyStringMatching" appear in their names without prior written
+// permission of the author.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+// A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+// OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+// SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+// LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+// DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+// Ranks the words similar to a misspelled one using the noisy channel model:
+// the best corrections maximize P(word) * P(misspelling | word).
+// P(word) is given by the frequencies stored in the trie, while the
+// probability of the misspelling decreases exponentially with the edit cost.
+// Only the best N corrections are kept, and subtrees whose most frequent word
+// can't score better than the current N-th correction are not visited.
+public class SpellingCorrector {
+    private static final Comparator<Correction> SCORE_ORDER = new Comparator<Correction>() {
+        @Override
+        public int compare(Correction a, Correction b) {
+            if(a.getScore() != b.getScore()) {
+                return (a.getScore() < b.getScore()) ? -1 : 1;
+            }
+
+            // Equal scores, prefer the alphabetically smaller word.
+            return b.getWord().compareTo(a.getWord());
+        }
+    };
+
+    private CompactTrie trie;
+    private int maxCost;
+    private boolean transpositions;
+    private EditCosts editCosts; // null if all edits cost 1.
+    private double[] channelProbabilities; // Indexed by the edit cost.
+
+    // 'editProbability' is the probability of an edit with the default cost,
+    // cheaper edits being considered proportionally more likely.
+    public SpellingCorrector(CompactTrie trie, int maxCost, boolean transpositions,
+                             EditCosts editCosts, double editProbability) {
+        if(maxCost < 0) {
+            throw new IllegalArgumentException("Maximum cost must not be negative!");
+        }
+
+        if(editProbability <= 0 || editProbability >= 1) {
+            throw new IllegalArgumentException("Edit probability must be between 0 and 1!");
+        }
+
+        this.trie = trie;
+        this.maxCost = maxCost;
+        this.transpositions = transpositions;
+        this.editCosts = editCosts;
+
+        int defaultCost = (editCosts != null) ? editCosts.getDefaultCost() : 1;
+        channelProbabilities = new double[maxCost + 1];
+
+        for(int cost = 0; cost <= maxCost; cost++) {
+            channelProbabilities[cost] = Math.pow(editProbability, (double)cost / defaultCost);
+        }
+    }
+
+    public SpellingCorrector(CompactTrie trie, int maxCost) {
+        this(trie, maxCost, false, null, 0.01);
+    }
+
+    public int getMaxCost() {
+        return maxCost;
+    }
+
+    private double computeScore(int frequency, int cost) {
+        // Add-one smoothing, so that words without a frequency
+        // are still ranked by their cost.
+        return (frequency + 1.0) * channelProbabilities[cost];
+    }
+
+    // The letters are code points; the edit costs are defined only for UTF-16
+    // letters, so the other code points always have the default cost.
+    private int getInsertionCost(int letter, int previousPatternLetter) {
+        if(editCosts == null) {
+            return 1;
+        }
+        else if(Character.isBmpCodePoint(letter) && Character.isBmpCodePoint(previousPatternLetter)) {
+            return editCosts.getInsertionCost((char)letter, (char)previousPatternLetter);
+        }
+        else return editCosts.getDefaultCost();
+    }
+
+    private int getDeletionCost(int patternLetter, int previousPatternLetter) {
+        if(editCosts == null) {
+            return 1;
+        }
+        else if(Character.isBmpCodePoint(patternLetter) && Character.isBmpCodePoint(previousPatternLetter)) {
+            return editCosts.getDeletionCost((char)patternLetter, (char)previousPatternLetter);
+        }
+        else return editCosts.getDefaultCost();
+    }
+
+    private int getSubstitutionCost(int patternLetter, int letter) {
+        if(patternLetter == letter) {
+            return 0;
+        }
+        else if(editCosts == null) {
+            return 1;
+        }
+        else if(Character.isBmpCodePoint(patternLetter) && Character.isBmpCodePoint(letter)) {
+            return editCosts.getSubstitutionCost((char)patternLetter, (char)letter);
+        }
+        else return editCosts.getDefaultCost();
+    }
+
+    // Returns at most 'maxResults' corrections, the best one first.
+    // The words are compared as sequences of Unicode code points.
+    public List<Correction> findCorrections(String word, int maxResults) {
+        // The weighted edit distance is computed on the trie, one row for each
+        // node on the current path, like in Trie.findSimilarWords.
+        // The smallest value of a row is a lower bound for the cost of
+        // all words below the node (two rows with transpositions, since
+        // a transposition continues from the row before the previous one).
+        PriorityQueue<Correction> best = new PriorityQueue<Correction>(maxResults + 1, SCORE_ORDER);
+
+        if(maxResults <= 0) {
+            return new ArrayList<Correction>();
+        }
+
+        int[] pattern = word.codePoints().toArray();
+        int columns = pattern.length + 1;
+        int maxDepth = pattern.length + maxCost; // Each inserted letter costs at least 1.
+        int[] rows = new int[(maxDepth + 1) * columns];
+        int[] minCosts = new int[maxDepth + 1];
+        int[] wordLetters = new int[maxDepth];
+
+        for(int i = 1; i <= pattern.length; i++) {
+            int previousLetter = (i > 1) ? pattern[i - 2] : '\0';
+            rows[i] = rows[i - 1] + getDeletionCost(pattern[i - 1], previousLetter);
+        }
+
+        // For each depth the children of the node, ordered by increasing
+        // subtree frequency, and the number of children not visited yet.
+        // The children are visited starting with the last one, so that
+        // frequent words are found first and raise the pruning threshold early.
+        int[][] childrenStack = new int[maxDepth + 1][];
+        int[][] lettersStack = new int[maxDepth + 1][];
+        int[] remainingStack = new int[maxDepth + 1];
+        pushChildren(0, 0, childrenStack, lettersStack, remainingStack);
+        int depth = 0;
+
+        while(depth >= 0) {
+            int remaining = remainingStack[depth];
+
+            if(depth == maxDepth || remaining == 0) {
+                // All children visited, return to the parent.
+                depth--;
+                continue;
+            }
+
+            remainingStack[depth] = remaining - 1;
+            int nodeId = childrenStack[depth][remaining - 1];
+            int letter = lettersStack[depth][remaining - 1];
+            wordLetters[depth] = letter;
+
+            if(best.size() == maxResults) {
+                // The bound of the parent applies to the child too, and may have
+                // become useless after finding better corrections. The children
+                // are ordered, so all the remaining ones can be skipped.
+                // A subtree reaching an equal score is still visited, since it
+                // may contain a word winning the tie alphabetically.
+                int minCost = (transpositions && depth > 0) ?
+                              Math.min(minCosts[depth], minCosts[depth - 1]) : minCosts[depth];
+
+                if(computeScore(trie.getMaxSubtreeFrequency(nodeId), minCost) <
+                   best.peek().getScore()) {
+                    remainingStack[depth] = 0;
+                    continue;
+                }
+            }
+
+            int previousRow = depth * columns;
+            int currentRow = previousRow + columns;
+            rows[currentRow] = rows[previousRow] + getInsertionCost(letter, '\0');
+            int minCost = rows[currentRow];
+
+            for(int i = 1; i <= pattern.length; i++) {
+                int patternLetter = pattern[i - 1];
+                int previousLetter = (i > 1) ? pattern[i - 2] : '\0';
+                int insertionCost = rows[previousRow + i] + getInsertionCost(letter, patternLetter);
+                int deletionCost = rows[currentRow + i - 1] +
+                                   getDeletionCost(patternLetter, previousLetter);
+                int substitutionCost = rows[previousRow + i - 1] +
+                                       getSubstitutionCost(patternLetter, letter);
+                int cost = Math.min(insertionCost, Math.min(deletionCost, substitutionCost));
+
+                if(transpositions && depth > 0 && i > 1 &&
+                   letter == previousLetter && wordLetters[depth - 1] == patternLetter) {
+                    int transpositionCost = rows[previousRow - columns + i - 2] +
+                                            ((editCosts != null) ? editCosts.getDefaultCost() : 1);
+                    cost = Math.min(cost, transpositionCost);
+                }
+
+                rows[currentRow + i] = cost;
+                minCost = Math.min(minCost, cost);
+            }
+
+            // Check if an accepted word has been found.
+            int wordCost = rows[currentRow + pattern.length];
+
+            if(wordCost <= maxCost && trie.isTerminatorNode(nodeId)) {
+                int frequency = trie.getFrequency(nodeId);
+                double score = computeScore(frequency, wordCost);
+
+                if(best.size() < maxResults || score >= best.peek().getScore()) {
+                    Correction correction = new Correction(new String(wordLetters, 0, depth + 1),
+                                                           frequency, trie.getWordId(nodeId),
+                                                           wordCost, score);
+
+                    if(best.size() < maxResults || SCORE_ORDER.compare(correction, best.peek()) > 0) {
+                        best.add(correction);
+
+                        if(best.size() > maxResults) {
+                            best.poll();
+                        }
+                    }
+                }
+            }
+
+            // Process the children if valid words could still be found.
+            int subtreeMinCost = transpositions ? Math.min(minCost, minCosts[depth]) : minCost;
+
+            if(subtreeMinCost <= maxCost) {
+                depth++;
+                minCosts[depth] = minCost;
+                pushChildren(nodeId, depth, childrenStack, lettersStack, remainingStack);
+            }
+        }
+
+        List<Correction> corrections = new ArrayList<Correction>(best);
+        Collections.sort(corrections, Collections.reverseOrder(SCORE_ORDER));
+        return corrections;
+    }
+
+    private void pushChildren(int nodeId, int depth, int[][] childrenStack,
+                              int[][] lettersStack, int[] remainingStack) {
+        int childCount = trie.getChildrenCount(nodeId);
+
+        if(childrenStack[depth] == null || childrenStack[depth].length < childCount) {
+            childrenStack[depth] = new int[Math.max(childCount, 32)];
+            lettersStack[depth] = new int[Math.max(childCount, 32)];
+        }
+
+        int[] children = childrenStack[depth];
+        int[] letters = lettersStack[depth];
+
+        // The children are sorted by increasing subtree frequency
+        // when the trie is built, the last one is visited first.
+        for(int i = 0; i < childCount; i++) {
+            int childIndex = trie.getChildIndexByFrequency(nodeId, i);
+            children[i] = trie.getChildAt(nodeId, childIndex);
+            letters[i] = trie.getChildCodePointAt(nodeId, childIndex);
+        }
+
+        remainingStack[depth] = childCount;
+    }
+}
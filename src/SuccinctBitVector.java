@@ -0,0 +1,134 @@
+// Copyright (c) 2013 Gratian Lup. All rights reserved.
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are
+// met:
+//
+// * Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+//
+// * Redistributions in binary form must reproduce the above
+// copyright notice, this list of conditions and the following
+// disclaimer in the documentation and/or other materials provided
+// with the distribution.
+//
+// * The name "FuzzyStringMatching" must not be used to endorse or promote
+// products derived from this software without prior written permission.
+//
+// * Products derived from this software may not be called "FuzzyStringMatching" nor
+// may "FuzzyStringMatching" appear in their names without prior written
+// permission of the author.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+// A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+// OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+// SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+// LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+// DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE
+// An immutable bit vector supporting rank and select queries, used by the
+// succinct tries. The number of ones before each block of 512 bits is stored,
+// adding only 1/128 of the size of the bits; the rest is computed using
+// the population count of the 64-bit words of the block.
+public class SuccinctBitVector {
+    private static final int WORDS_PER_BLOCK = 8;
+    private static final int BLOCK_BITS = WORDS_PER_BLOCK * 64;
+
+    private long[] words;
+    private int[] blockRanks; // Ones before each block, plus a last entry with all ones.
+    private int length;
+
+    public SuccinctBitVector(long[] words, int length) {
+        this.words = words;
+        this.length = length;
+        int blockCount = (length + BLOCK_BITS - 1) / BLOCK_BITS;
+        blockRanks = new int[blockCount + 1];
+        int ones = 0;
+
+        for(int block = 0; block < blockCount; block++) {
+            blockRanks[block] = ones;
+            int lastWord = Math.min(words.length, (block + 1) * WORDS_PER_BLOCK);
+
+            for(int i = block * WORDS_PER_BLOCK; i < lastWord; i++) {
+                ones += Long.bitCount(words[i]);
+            }
+        }
+
+        blockRanks[blockCount] = ones;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public boolean get(int position) {
+        return (words[position >>> 6] & (1L << position)) != 0;
+    }
+
+    // Returns the number of ones before the position.
+    public int rank1(int position) {
+        int block = position / BLOCK_BITS;
+        int rank = blockRanks[block];
+        int lastWord = position >>> 6;
+
+        for(int i = block * WORDS_PER_BLOCK; i < lastWord; i++) {
+            rank += Long.bitCount(words[i]);
+        }
+
+        if((position & 63) != 0) {
+            rank += Long.bitCount(words[lastWord] & ((1L << position) - 1));
+        }
+
+        return rank;
+    }
+
+    // Returns the number of zeros before the position.
+    public int rank0(int position) {
+        return position - rank1(position);
+    }
+
+    // Returns the position of the zero with the specified number, starting with 1.
+    // The zero must exist, otherwise the result is undefined.
+    public int select0(int count) {
+        // Find the last block having less zeros before it than requested.
+        int low = 0;
+        int high = blockRanks.length - 2;
+
+        while(low < high) {
+            int middle = (low + high + 1) >>> 1;
+
+            if(middle * BLOCK_BITS - blockRanks[middle] < count) {
+                low = middle;
+            }
+            else high = middle - 1;
+        }
+
+        // Then the word containing the zero, and the zero inside the word.
+        int remaining = count - (low * BLOCK_BITS - blockRanks[low]);
+        int wordIndex = low * WORDS_PER_BLOCK;
+
+        while(true) {
+            long zeros = ~words[wordIndex];
+            int zeroCount = Long.bitCount(zeros);
+
+            if(remaining <= zeroCount) {
+                for(int i = 1; i < remaining; i++) {
+                    zeros &= zeros - 1; // Clear the lowest zero.
+                }
+
+                return (wordIndex << 6) + Long.numberOfTrailingZeros(zeros);
+            }
+
+            remaining -= zeroCount;
+            wordIndex++;
+        }
+    }
+
+    // Returns the number of bytes used by the bits and the rank directory.
+    public long getSizeInBytes() {
+        return 8L * words.length + 4L * blockRanks.length;
+    }
+}
@@ -0,0 +1,310 @@
+// Copyright (c) 2013 Gratian Lup. All rights reserved.
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are
+// met:
+//
+// * Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+//
+// * Redistributions in binary form must reproduce the above
+// copyright notice, this list of conditions and the following
+// disclaimer in the documentation and/or other materials provided
+// with the distribution.
+//
+// * The name "FuzzyStringMatching" must not be used to endorse or promote
+// products derived from this software without prior written permission.
+//
+// * Products derived from this software may not be called "FuzzyStringMatching" nor
+// may "FuzzyStringMatching" appear in their names without prior written
+// permission of the author.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+// A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+// OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+// SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+// LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+// DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE
+import java.util.*;
+
+// Finds the matching words using the "symmetric delete" approach
+// (popularized by the SymSpell spelling corrector). All words obtained
+// by deleting at most K letters from the dictionary words are indexed.
+// A dictionary word can be within K edits of the query word only if both
+// can be reduced to a common word by deleting at most K letters from each,
+// so only the deletions of the query word need to be looked up.
+// For short words and K <= 2 this visits far fewer candidates than a trie walk.
+public class SymmetricDeleteMatching implements MatchingEngine {
+    // A hash table mapping the hash of a deletion variant to the ordinals
+    // of the words it was obtained from. Each hash is stored once, in a slot
+    // found by linear probing, and points to the range of its ordinals in
+    // a single array ('postings'). The index is built like a counting sort:
+    // the words of each hash are counted first (count), the ranges are then
+    // allocated (allocatePostings) and filled in order (add, then finish).
+    // Different variants can have the same hash, so the found words
+    // must always be verified.
+    static class VariantIndex {
+        private long[] keys;
+        private int[] counts;   // The number of ordinals, or 0 if the slot is empty.
+        private int[] offsets;  // The start of the ordinals in 'postings'.
+        private int[] postings;
+        private int keyCount;
+        private int slotShift;  // Shift selecting the top log2(table size) hash bits.
+
+        public VariantIndex(int capacity) {
+            int size = 16;
+
+            while(size < capacity * 2) {
+                size *= 2;
+            }
+
+            allocate(size);
+        }
+
+        private void allocate(int size) {
+            keys = new long[size];
+            counts = new int[size];
+            slotShift = 64 - Integer.numberOfTrailingZeros(size);
+        }
+
+        int getSlotCount() {
+            return keys.length;
+        }
+
+        int getSlot(long key) {
+            // Mix the bits so that similar hashes don't form long clusters.
+            // The top bits are the best mixed ones, and as many are used
+            // as needed to reach all slots, however large the table is.
+            long mixed = key * 0x9E3779B97F4A7C15L;
+            return (int)(mixed >>> slotShift);
+        }
+
+        // Returns the slot of the key, or the empty slot where it should be added.
+        private int findSlot(long key) {
+            int slot = getSlot(key);
+
+            while(counts[slot] != 0 && keys[slot] != key) {
+                slot = (slot + 1) & (keys.length - 1);
+            }
+
+            return slot;
+        }
+
+        // Counts one more ordinal for the key. Must be called before allocatePostings.
+        public void count(long key) {
+            int slot = findSlot(key);
+
+            if(counts[slot] == 0) {
+                if((keyCount + 1) * 2 > keys.length) {
+                    resize();
+                    slot = findSlot(key);
+                }
+
+                keys[slot] = key;
+                keyCount++;
+            }
+
+            counts[slot]++;
+        }
+
+        public void allocatePostings() {
+            // While adding, 'offsets' is the position of the next ordinal of the key.
+            offsets = new int[keys.length];
+            int total = 0;
+
+            for(int slot = 0; slot < keys.length; slot++) {
+                offsets[slot] = total;
+                total += counts[slot];
+            }
+
+            postings = new int[total];
+        }
+
+        // Adds an ordinal of a key counted before, in the order they should be found.
+        public void add(long key, int value) {
+            int slot = findSlot(key);
+            postings[offsets[slot]++] = value;
+        }
+
+        public void finish() {
+            for(int slot = 0; slot < keys.length; slot++) {
+                offsets[slot] -= counts[slot];
+            }
+        }
+
+        // Appends to 'output' the ordinals added for the specified key.
+        public void find(long key, IntList output) {
+            int slot = findSlot(key);
+            int end = offsets[slot] + counts[slot];
+
+            for(int i = offsets[slot]; i < end; i++) {
+                output.add(postings[i]);
+            }
+        }
+
+        private void resize() {
+            long[] oldKeys = keys;
+            int[] oldCounts = counts;
+            allocate(oldKeys.length * 2);
+
+            for(int i = 0; i < oldKeys.length; i++) {
+                if(oldCounts[i] != 0) {
+                    int slot = findSlot(oldKeys[i]);
+                    keys[slot] = oldKeys[i];
+                    counts[slot] = oldCounts[i];
+                }
+            }
+        }
+    }
+
+
+    private String[] words;
+    private VariantIndex index;
+    private int maxError;
+
+    public SymmetricDeleteMatching(List<String> words, int maxError) {
+        if(words == null) {
+            throw new IllegalArgumentException("Word list is null");
+        }
+
+        if(maxError < 0 || maxError > 2) {
+            // The number of deletion variants grows too fast for larger errors.
+            throw new IllegalArgumentException("Symmetric delete index can be used " +
+                                               "only with maximum error of at most two!");
+        }
+
+        // A word appearing multiple times in the list is indexed once,
+        // so that it is found only once, like in the trie.
+        Set<String> distinctWords = new LinkedHashSet<String>(words);
+        this.words = distinctWords.toArray(new String[distinctWords.size()]);
+        this.maxError = maxError;
+        this.index = new VariantIndex(this.words.length);
+        buildIndex();
+    }
+
+    @Override
+    public int getMaxError() {
+        return maxError;
+    }
+
+    @Override
+    public DistanceModel getDistanceModel() {
+        return DistanceModel.LEVENSHTEIN;
+    }
+
+    @Override
+    public double estimateCost(String word, DictionaryStatistics statistics) {
+        // Each deletion variant is built and hashed, and about
+        // as many candidates as variants must be verified.
+        double variantCount = 1;
+        double combinations = 1;
+
+        for(int i = 1; i <= maxError; i++) {
+            combinations = combinations * (word.length() - i + 1) / i;
+            variantCount += Math.max(0, combinations);
+        }
+
+        return 2 * variantCount * word.length();
+    }
+
+    private void buildIndex() {
+        // The hashes of the variants of all words are kept, so that the variants
+        // are generated only once for both passes over them. The hashes of word 'i'
+        // are found between 'wordEnds[i - 1]' and 'wordEnds[i]'.
+        Set<String> variants = new HashSet<String>();
+        long[] hashes = new long[Math.max(16, words.length * (maxError + 1) * 4)];
+        int[] wordEnds = new int[words.length];
+        int hashCount = 0;
+
+        for(int i = 0; i < words.length; i++) {
+            variants.clear();
+            generateDeletions(words[i], maxError, variants);
+
+            if(hashCount + variants.size() > hashes.length) {
+                hashes = Arrays.copyOf(hashes, Math.max(hashes.length * 2,
+                                                        hashCount + variants.size()));
+            }
+
+            for(String variant : variants) {
+                long hash = computeHash(variant);
+                hashes[hashCount++] = hash;
+                index.count(hash);
+            }
+
+            wordEnds[i] = hashCount;
+        }
+
+        index.allocatePostings();
+        int position = 0;
+
+        for(int i = 0; i < words.length; i++) {
+            for(; position < wordEnds[i]; position++) {
+                index.add(hashes[position], i);
+            }
+        }
+
+        index.finish();
+    }
+
+    // Adds to 'variants' the word and all words obtained
+    // by deleting at most 'deletions' letters from it.
+    private void generateDeletions(String word, int deletions, Set<String> variants) {
+        if(!variants.add(word) || deletions == 0) {
+            // The deletions of an already found variant are known too.
+            return;
+        }
+
+        for(int i = 0; i < word.length(); i++) {
+            String variant = word.substring(0, i) + word.substring(i + 1);
+            generateDeletions(variant, deletions - 1, variants);
+        }
+    }
+
+    private static long computeHash(String variant) {
+        // 64-bit FNV-1a hash.
+        long hash = 0xCBF29CE484222325L;
+
+        for(int i = 0; i < variant.length(); i++) {
+            hash ^= variant.charAt(i);
+            hash *= 0x100000001B3L;
+        }
+
+        return hash;
+    }
+
+    @Override
+    public List<String> findMatchingWords(String word) {
+        Set<String> variants = new HashSet<String>();
+        generateDeletions(word, maxError, variants);
+
+        // Collect the ordinals of all candidate words,
+        // then sort them so that duplicates are verified only once.
+        IntList candidates = new IntList();
+
+        for(String variant : variants) {
+            index.find(computeHash(variant), candidates);
+        }
+
+        candidates.sort();
+        List<String> matchingWords = new ArrayList<String>();
+        int lastCandidate = -1;
+
+        for(int i = 0; i < candidates.size(); i++) {
+            int candidate = candidates.get(i);
+
+            if(candidate != lastCandidate) {
+                lastCandidate = candidate;
+
+                if(LevenshteinDistance.isAcceptedWord(words[candidate], word, maxError)) {
+                    matchingWords.add(words[candidate]);
+                }
+            }
+        }
+
+        return matchingWords;
+    }
+}
@@ -80,6 +80,52 @@ public abstract class Trie {
 
     public abstract boolean isTerminator();
 
+    // Returns the frequency stored with the word ending at this node,
+    // or zero if the node is not a terminator or no frequencies are stored.
+    public int getFrequency() {
+        return 0;
+    }
+
+    // Returns the largest frequency of a word ending at this node or below it,
+    // or zero if no frequencies are stored.
+    public int getMaxSubtreeFrequency() {
+        return 0;
+    }
+
+    // Returns the identifier stored with the word ending at this node,
+    // or -1 if the node is not a terminator or no identifiers are stored.
+    public long getWordId() {
+        return -1;
+    }
+
+    // Returns the minimum number of letters that must be appended
+    // to the word of this node to obtain a word found in the trie.
+    // Tries that don't track the value return zero.
+    public int getMinRemainingLength() {
+        return 0;
+    }
+
+    // Returns the maximum number of letters that can be appended
+    // to the word of this node to obtain a word found in the trie.
+    // Tries that don't track the value return Integer.MAX_VALUE.
+    public int getMaxRemainingLength() {
+        return Integer.MAX_VALUE;
+    }
+
+    // Returns the bit associated with the letter in a letter signature.
+    // Several letters share the same bit, but the lowercase
+    // English letters are all associated with distinct bits.
+    public static long getLetterBit(char letter) {
+        return 1L << (letter & 63);
+    }
+
+    // Returns the bits of all letters found in the words below this node
+    // (see getLetterBit), not including the letters leading to the node.
+    // Tries that don't track the value return all bits set.
+    public long getLetterSignature() {
+        return -1L;
+    }
+
     // Returns the Trie node assocaited with the specified letter,
     // or null if such a node does not exist.
     public Trie getChildForLetter(char letter) {
@@ -117,69 +163,69 @@ public abstract class Trie {
     public List<String> findSimilarWords(String pattern, int maxError) {
         // Implements a fairly simple search methods that runs
         // the classic dynamic programming directly on the Trie.
+        // The rows of all nodes on the current path are kept in a single matrix.
+        // A word longer than the pattern by more than 'maxError' letters can't be
+        // accepted, so the depth of the walk and the matrix size are bounded.
         List<String> similarWords = new ArrayList<String>();
-        int[] row = new int[pattern.length() + 1];
+        int columns = pattern.length() + 1;
+        int maxDepth = pattern.length() + maxError;
+        int[] rows = new int[(maxDepth + 1) * columns];
+        char[] wordLetters = new char[maxDepth];
 
         for(int i = 0; i <= pattern.length(); i++) {
-            row[i] = i;
+            rows[i] = i;
         }
 
-        // Walk each branch starting from the root node.
-        List<Character> wordLetters = new ArrayList<Character>();
-        TrieChildren children = getChildren();
-
-        for(int i = 0; i < children.size(); i++) {
-            findSimilarWordsImpl(pattern, maxError,
-                                 children.getLetter(i), children.getChild(i),
-                                 wordLetters, row, similarWords);
-        }
-
-        return similarWords;
-    }
-
-    private void findSimilarWordsImpl(String pattern, int maxError, char letter, Trie node,
-                                      List<Character> wordLetters, int[] previousRow,
-                                      List<String> similarWords) {
-        int[] currentRow = new int[pattern.length() + 1];
-        int minError = previousRow[0] + 1;
-        currentRow[0] = previousRow[0] + 1; // Compared to the empty string.
-        wordLetters.add(letter); // Append current letter to candidate.
-
-        for(int i = 1; i <= pattern.length(); i++) {
-            int insertionConst = currentRow[i - 1] + 1;
-            int deletionCost = previousRow[i] + 1;
-            int substitutionCost = previousRow[i - 1] +
-                                   (pattern.charAt(i - 1) == letter ? 0 : 1);
-            currentRow[i] = Math.min(insertionConst, Math.min(deletionCost, substitutionCost));
-            minError = Math.min(minError, currentRow[i]);
-        }
-
-        // Check if an accepted word has been found.
-        if(currentRow[pattern.length()] <= maxError && node.isTerminator()) {
-            similarWords.add(buildWord(wordLetters));
-        }
-
-        // Process the children if valid words could still be found.
-        if(minError <= maxError) {
-            TrieChildren children = node.getChildren();
+        // The walk is iterative to avoid running out of stack space on deep tries.
+        // For each depth the children of the node and the next child to visit are kept.
+        TrieChildren[] childrenStack = new TrieChildren[maxDepth + 1];
+        int[] childIndexStack = new int[maxDepth + 1];
+        childrenStack[0] = getChildren();
+        int depth = 0;
+
+        while(depth >= 0) {
+            TrieChildren children = childrenStack[depth];
+            int childIndex = childIndexStack[depth];
+
+            if(depth == maxDepth || childIndex == children.size()) {
+                // All children visited, return to the parent.
+                childrenStack[depth] = null;
+                depth--;
+                continue;
+            }
 
-            for(int i = 0; i < children.size(); i++) {
-                findSimilarWordsImpl(pattern, maxError,
-                                     children.getLetter(i), children.getChild(i),
-                                     wordLetters, currentRow, similarWords);
+            childIndexStack[depth] = childIndex + 1;
+            char letter = children.getLetter(childIndex);
+            Trie node = children.getChild(childIndex);
+            wordLetters[depth] = letter; // Append current letter to candidate.
+
+            int previousRow = depth * columns;
+            int currentRow = previousRow + columns;
+            int minError = rows[previousRow] + 1;
+            rows[currentRow] = rows[previousRow] + 1; // Compared to the empty string.
+
+            for(int i = 1; i <= pattern.length(); i++) {
+                int insertionConst = rows[currentRow + i - 1] + 1;
+                int deletionCost = rows[previousRow + i] + 1;
+                int substitutionCost = rows[previousRow + i - 1] +
+                                       (pattern.charAt(i - 1) == letter ? 0 : 1);
+                rows[currentRow + i] = Math.min(insertionConst, Math.min(deletionCost, substitutionCost));
+                minError = Math.min(minError, rows[currentRow + i]);
             }
-        }
 
-        wordLetters.remove(wordLetters.size() - 1);
-    }
-    
-    private String buildWord(List<Character> letters) {
-        StringBuilder builder = new StringBuilder(letters.size());
+            // Check if an accepted word has been found.
+            if(rows[currentRow + pattern.length()] <= maxError && node.isTerminator()) {
+                similarWords.add(new String(wordLetters, 0, depth + 1));
+            }
 
-        for(char letter : letters) {
-            builder.append(letter);
+            // Process the children if valid words could still be found.
+            if(minError <= maxError) {
+                depth++;
+                childrenStack[depth] = node.getChildren();
+                childIndexStack[depth] = 0;
+            }
         }
 
-        return builder.toString();
+        return similarWords;
     }
 }
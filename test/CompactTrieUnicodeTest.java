@@ -0,0 +1,309 @@
+// Copyright (c) 2013 Gratian Lup. All rights reserved.
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are
+// met:
+//
+// * Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+//
+// * Redistributions in binary form must reproduce the above
+// copyright notice, this list of conditions and the following
+// disclaimer in the documentation and/or other materials provided
+// with the distribution.
+//
+// * The name "FuzzyStringMatching" must not be used to endorse or promote
+// products derived from this software without prior written permission.
+//
+// * Products derived from this software may not be called "FuzzyStringMatching" nor
+// may "FuzzyStringMatching" appear in their names without prior written
+// permission of the author.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+// A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+// OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+// SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+// LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+// DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+// Checks CompactTrie with large alphabets: a root with thousands of CJK
+// children (binary search in findChild), words with emoji (supplementary
+// code points, seen by FuzzyMatching as surrogate pairs), and alphabets
+// needing 1, 2 and 4 bytes per symbol, with heap and off-heap storage.
+// FuzzyMatching is compared with LevenshteinDistance.computeDistance (UTF-16
+// units) and SpellingCorrector with a distance computed on code points.
+// Run without arguments; exits with an error on the first mismatch.
+public class CompactTrieUnicodeTest {
+    private static final int QUERY_COUNT = 40;
+    private static final int MAX_RESULTS = 10;
+
+    private static final int CJK_START = 0x4E00;
+    private static final int CJK_EXTENSION_B_START = 0x20000;
+    private static final int[] EMOJI = { 0x1F600, 0x1F601, 0x1F602, 0x1F680, 0x1F44D };
+
+    private static String toWord(int... codePoints) {
+        return new String(codePoints, 0, codePoints.length);
+    }
+
+    // A small alphabet, with one letter outside ASCII; 1 byte per symbol.
+    private static List<String> smallAlphabetWords(Random random) {
+        Set<String> words = new HashSet<String>();
+        int[] letters = { 'a', 'b', 'c', 'd', 0xE9 };
+
+        while(words.size() < 2000) {
+            int[] codePoints = new int[1 + random.nextInt(7)];
+
+            for(int i = 0; i < codePoints.length; i++) {
+                codePoints[i] = letters[random.nextInt(letters.length)];
+            }
+
+            words.add(toWord(codePoints));
+        }
+
+        return new ArrayList<String>(words);
+    }
+
+    // 8000 CJK characters as words, so that the root has 8000 children,
+    // longer words starting with them, and words with emoji; 2 bytes per symbol.
+    private static List<String> wideWords(Random random) {
+        Set<String> words = new HashSet<String>();
+
+        for(int i = 0; i < 8000; i++) {
+            words.add(toWord(CJK_START + i));
+        }
+
+        while(words.size() < 12000) {
+            int[] codePoints = new int[2 + random.nextInt(3)];
+
+            for(int i = 0; i < codePoints.length; i++) {
+                codePoints[i] = (random.nextInt(4) == 0) ? EMOJI[random.nextInt(EMOJI.length)] :
+                                                           CJK_START + random.nextInt(40);
+            }
+
+            words.add(toWord(codePoints));
+        }
+
+        return new ArrayList<String>(words);
+    }
+
+    // More than 65536 distinct code points, most of them outside
+    // the basic plane; 4 bytes per symbol.
+    private static List<String> hugeAlphabetWords(Random random) {
+        Set<String> words = new HashSet<String>();
+
+        for(int i = 0; i < 20000; i++) {
+            words.add(toWord(CJK_START + i));
+        }
+
+        for(int i = 0; i < 46000; i++) {
+            words.add(toWord(CJK_EXTENSION_B_START + i));
+        }
+
+        while(words.size() < 70000) {
+            words.add(toWord(CJK_EXTENSION_B_START + random.nextInt(30),
+                             CJK_START + random.nextInt(30),
+                             EMOJI[random.nextInt(EMOJI.length)]));
+        }
+
+        return new ArrayList<String>(words);
+    }
+
+    // Replaces, inserts or deletes a code point, using the code points of the words.
+    private static String mutate(Random random, String word, List<String> words) {
+        int[] letters = word.codePoints().toArray();
+        List<Integer> codePoints = new ArrayList<Integer>();
+
+        for(int letter : letters) {
+            codePoints.add(letter);
+        }
+
+        int editCount = random.nextInt(3);
+
+        for(int i = 0; i < editCount; i++) {
+            String other = words.get(random.nextInt(words.size()));
+            int letter = other.codePointAt(0);
+            int position = random.nextInt(codePoints.size() + 1);
+            int edit = random.nextInt(3);
+
+            if(edit == 0 || position == codePoints.size()) {
+                codePoints.add(position, letter);
+            }
+            else if(edit == 1 && codePoints.size() > 1) {
+                codePoints.remove(position);
+            }
+            else codePoints.set(position, letter);
+        }
+
+        int[] result = new int[codePoints.size()];
+
+        for(int i = 0; i < result.length; i++) {
+            result[i] = codePoints.get(i);
+        }
+
+        return toWord(result);
+    }
+
+    // The Levenshtein distance counting each code point as one letter.
+    private static int computeCodePointDistance(String word, String pattern) {
+        int[] wordLetters = word.codePoints().toArray();
+        int[] patternLetters = pattern.codePoints().toArray();
+        int[][] distance = new int[wordLetters.length + 1][patternLetters.length + 1];
+
+        for(int i = 0; i <= wordLetters.length; i++) {
+            distance[i][0] = i;
+        }
+
+        for(int j = 0; j <= patternLetters.length; j++) {
+            distance[0][j] = j;
+        }
+
+        for(int i = 1; i <= wordLetters.length; i++) {
+            for(int j = 1; j <= patternLetters.length; j++) {
+                int substitutionCost = distance[i - 1][j - 1] +
+                                       ((wordLetters[i - 1] == patternLetters[j - 1]) ? 0 : 1);
+                distance[i][j] = Math.min(substitutionCost,
+                                          Math.min(distance[i - 1][j], distance[i][j - 1]) + 1);
+            }
+        }
+
+        return distance[wordLetters.length][patternLetters.length];
+    }
+
+    private static void checkLookups(CompactTrie trie, List<String> words, List<String> queries,
+                                     String description) {
+        Set<String> expectedWords = new HashSet<String>(words);
+
+        for(String word : words) {
+            int nodeId = trie.findNode(word);
+            TestSupport.check(nodeId != -1 && trie.isTerminatorNode(nodeId), description + ": word not found");
+        }
+
+        // The queries are mostly missing from the dictionary.
+        for(String query : queries) {
+            int nodeId = trie.findNode(query);
+            TestSupport.check((nodeId != -1 && trie.isTerminatorNode(nodeId)) == expectedWords.contains(query),
+                              description + ": wrong lookup result for " + query);
+        }
+
+        TestSupport.check(trie.findNode(toWord(0x10FFFF)) == -1, description + ": unknown code point found");
+        TestSupport.check(expectedWords.equals(new HashSet<String>(trie.getWords())),
+                          description + ": getWords differs");
+    }
+
+    private static void checkMatching(CompactTrie trie, List<String> words, List<String> queries,
+                                      String description) {
+        for(int maxError = 1; maxError <= 2; maxError++) {
+            FuzzyMatching matching = new FuzzyMatching(trie, maxError);
+
+            for(String query : queries) {
+                List<String> expected = new ArrayList<String>();
+
+                for(String word : words) {
+                    if(LevenshteinDistance.computeDistance(word, query) <= maxError) {
+                        expected.add(word);
+                    }
+                }
+
+                List<String> found = matching.findMatchingWords(query);
+                Collections.sort(expected);
+                Collections.sort(found);
+                TestSupport.check(expected.equals(found), description + ": FuzzyMatching differs for query " +
+                                  query + " with maximum error " + maxError);
+            }
+        }
+    }
+
+    private static void checkCorrections(CompactTrie trie, List<String> words, int[] frequencies,
+                                         List<String> queries, String description) {
+        SpellingCorrector corrector = new SpellingCorrector(trie, 2);
+
+        for(String query : queries) {
+            // The best score first, equal scores ordered alphabetically.
+            List<Correction> expected = new ArrayList<Correction>();
+
+            for(int i = 0; i < words.size(); i++) {
+                int cost = computeCodePointDistance(words.get(i), query);
+
+                if(cost <= 2) {
+                    double score = (frequencies[i] + 1.0) * Math.pow(0.01, cost);
+                    expected.add(new Correction(words.get(i), frequencies[i], -1, cost, score));
+                }
+            }
+
+            Collections.sort(expected, new Comparator<Correction>() {
+                @Override
+                public int compare(Correction a, Correction b) {
+                    if(a.getScore() != b.getScore()) {
+                        return (a.getScore() > b.getScore()) ? -1 : 1;
+                    }
+
+                    return a.getWord().compareTo(b.getWord());
+                }
+            });
+
+            List<String> expectedWords = new ArrayList<String>();
+            List<String> foundWords = new ArrayList<String>();
+
+            for(int i = 0; i < Math.min(MAX_RESULTS, expected.size()); i++) {
+                expectedWords.add(expected.get(i).getWord() + " " + expected.get(i).getCost());
+            }
+
+            for(Correction correction : corrector.findCorrections(query, MAX_RESULTS)) {
+                foundWords.add(correction.getWord() + " " + correction.getCost());
+            }
+
+            TestSupport.check(expectedWords.equals(foundWords),
+                              description + ": SpellingCorrector differs for query " + query);
+        }
+    }
+
+    private static void checkDictionary(List<String> words, int symbolWidth, int minRootChildren,
+                                        String description, Random random) {
+        int[] frequencies = new int[words.size()];
+
+        for(int i = 0; i < frequencies.length; i++) {
+            frequencies[i] = random.nextInt(50);
+        }
+
+        List<String> queries = new ArrayList<String>();
+
+        for(int i = 0; i < QUERY_COUNT; i++) {
+            queries.add(mutate(random, words.get(random.nextInt(words.size())), words));
+        }
+
+        for(int storageType = 0; storageType < 2; storageType++) {
+            CompactTrie trie = (storageType == 0) ? new CompactTrie() :
+                                                    new CompactTrie(new OffHeapCompactTrieStorage());
+            trie.addWords(words, frequencies, null);
+            String trieDescription = description + ((storageType == 0) ? ", heap" : ", off-heap");
+            TestSupport.check(trie.getStorage().getSymbolWidth() == symbolWidth,
+                              trieDescription + ": expected symbol width " + symbolWidth +
+                              ", found " + trie.getStorage().getSymbolWidth());
+
+            TestSupport.check(trie.getChildrenCount(0) >= minRootChildren,
+                              trieDescription + ": expected at least " + minRootChildren + " root children");
+            checkLookups(trie, words, queries, trieDescription);
+            checkMatching(trie, words, queries, trieDescription);
+            checkCorrections(trie, words, frequencies, queries, trieDescription);
+        }
+    }
+
+    public static void main(String[] args) {
+        Random random = new Random(47);
+        checkDictionary(smallAlphabetWords(random), 1, 5, "Small alphabet", random);
+        checkDictionary(wideWords(random), 2, 8000, "CJK and emoji", random);
+        checkDictionary(hugeAlphabetWords(random), 4, 66000, "Huge alphabet", random);
+        System.out.println("CompactTrieUnicodeTest passed.");
+    }
+}
@@ -0,0 +1,225 @@
+// Copyright (c) 2013 Gratian Lup. All rights reserved.
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are
+// met:
+//
+// * Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+//
+// * Redistributions in binary form must reproduce the above
+// copyright notice, this list of conditions and the following
+// disclaimer in the documentation and/or other materials provided
+// with the distribution.
+//
+// * The name "FuzzyStringMatching" must not be used to endorse or promote
+// products derived from this software without prior written permission.
+//
+// * Products derived from this software may not be called "FuzzyStringMatching" nor
+// may "FuzzyStringMatching" appear in their names without prior written
+// permission of the author.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+// A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+// OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+// SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+// LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+// DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Checks that the searches of a FuzzyMatchingHolder see either the old
+// or the new dictionary while it is swapped, and that the latest requested
+// dictionary is kept. The expected results are found by FuzzyMatching on
+// tries built directly, with and without the reversed-word trie, and that
+// the frequencies and identifiers of the words are kept across the swaps.
+// Run without arguments; exits with an error on the first mismatch.
+public class FuzzyMatchingHolderTest {
+    private static final int MAX_ERROR = 2;
+
+    private static CompactTrie buildTrie(List<String> words, boolean reversed) {
+        List<String> trieWords = new ArrayList<String>();
+
+        for(String word : words) {
+            trieWords.add(reversed ? new StringBuilder(word).reverse().toString() : word);
+        }
+
+        CompactTrie trie = new CompactTrie();
+        trie.addWords(trieWords);
+        return trie;
+    }
+
+    private static Map<String, Set<String>> findExpected(List<String> words, List<String> queries,
+                                                         boolean useReversedTrie) {
+        CompactTrie reversedTrie = useReversedTrie ? buildTrie(words, true) : null;
+        FuzzyMatching matching = new FuzzyMatching(buildTrie(words, false), reversedTrie, MAX_ERROR);
+        Map<String, Set<String>> expected = new HashMap<String, Set<String>>();
+
+        for(String query : queries) {
+            expected.put(query, new HashSet<String>(matching.findMatchingWords(query)));
+        }
+
+        return expected;
+    }
+
+    private static void checkSwap(List<String> oldWords, List<String> newWords,
+                                  final List<String> queries, boolean useReversedTrie)
+                                  throws Exception {
+        final Map<String, Set<String>> oldExpected = findExpected(oldWords, queries, useReversedTrie);
+        final Map<String, Set<String>> newExpected = findExpected(newWords, queries, useReversedTrie);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        final FuzzyMatchingHolder holder = new FuzzyMatchingHolder(oldWords, MAX_ERROR, useReversedTrie,
+                                                                   false, null, null, executor);
+        final AtomicInteger swapCount = new AtomicInteger();
+        final AtomicBoolean stop = new AtomicBoolean();
+        final AtomicInteger errorCount = new AtomicInteger();
+
+        holder.addSwapListener(new FuzzyMatchingHolder.SwapListener() {
+            @Override
+            public void dictionarySwapped(FuzzyMatchingHolder swappedHolder) {
+                swapCount.incrementAndGet();
+            }
+        });
+
+        Thread searcher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Random searchRandom = new Random(1);
+
+                while(!stop.get()) {
+                    String query = queries.get(searchRandom.nextInt(queries.size()));
+                    Set<String> found = new HashSet<String>(holder.findMatchingWords(query));
+
+                    if(!found.equals(oldExpected.get(query)) && !found.equals(newExpected.get(query))) {
+                        errorCount.incrementAndGet();
+                    }
+                }
+            }
+        });
+
+        long startTime = System.currentTimeMillis();
+        searcher.start();
+        holder.swap(newWords).get();
+        stop.set(true);
+        searcher.join();
+        TestSupport.check(errorCount.get() == 0, "Search used neither the old nor the new dictionary");
+
+        for(String query : queries) {
+            TestSupport.check(new HashSet<String>(holder.findMatchingWords(query)).equals(newExpected.get(query)),
+                              "New dictionary not used for " + query);
+        }
+
+        TestSupport.check(holder.getVersion() == 2 && holder.getWordCount() == newWords.size(),
+                          "Wrong version or word count after the swap");
+        TestSupport.check(holder.getLastSwapTime() >= startTime && holder.getLastBuildDuration() >= 0,
+                          "Wrong swap time or build duration");
+
+        // The latest requested dictionary is kept.
+        Future<Void> firstSwap = holder.swap(oldWords);
+        Future<Void> secondSwap = holder.swap(newWords);
+        firstSwap.get();
+        secondSwap.get();
+        TestSupport.check(holder.getVersion() == 4 && swapCount.get() <= 3, "Wrong dictionary kept");
+
+        for(String query : queries) {
+            TestSupport.check(new HashSet<String>(holder.findMatchingWords(query)).equals(newExpected.get(query)),
+                              "Latest dictionary not used for " + query);
+        }
+
+        executor.shutdown();
+    }
+
+    private static int[] randomFrequencies(Random random, int count) {
+        int[] frequencies = new int[count];
+
+        for(int i = 0; i < count; i++) {
+            frequencies[i] = 1 + random.nextInt(1000);
+        }
+
+        return frequencies;
+    }
+
+    private static long[] wordIds(int count, long firstId) {
+        long[] wordIds = new long[count];
+
+        for(int i = 0; i < count; i++) {
+            wordIds[i] = firstId + i;
+        }
+
+        return wordIds;
+    }
+
+    private static void checkWordData(FuzzyMatchingHolder holder, List<String> words, int[] frequencies,
+                                      long[] wordIds, List<String> queries, String description) {
+        CompactTrie trie = new CompactTrie();
+        trie.addWords(words, frequencies, wordIds);
+        FuzzyMatching expectedMatching = new FuzzyMatching(trie, MAX_ERROR);
+        FuzzyMatching matching = holder.getMatching();
+
+        for(String query : queries) {
+            Set<String> expected = new HashSet<String>();
+            Set<String> found = new HashSet<String>();
+
+            for(WordMatch match : expectedMatching.findMatches(query)) {
+                expected.add(match.getWord() + " " + match.getFrequency() + " " + match.getWordId());
+            }
+
+            for(WordMatch match : matching.findMatches(query)) {
+                found.add(match.getWord() + " " + match.getFrequency() + " " + match.getWordId());
+            }
+
+            TestSupport.check(expected.equals(found), description + ": different word data for " + query);
+
+            // The completions are ranked by frequency.
+            String prefix = query.substring(0, 2);
+            List<String> expectedCompletions = expectedMatching.findCompletions(prefix, 10);
+            TestSupport.check(expectedCompletions.equals(matching.findCompletions(prefix, 10)),
+                              description + ": different completions for " + prefix);
+        }
+    }
+
+    private static void checkSwapWordData(List<String> oldWords, List<String> newWords,
+                                          List<String> queries, Random random) throws Exception {
+        int[] oldFrequencies = randomFrequencies(random, oldWords.size());
+        int[] newFrequencies = randomFrequencies(random, newWords.size());
+        long[] oldIds = wordIds(oldWords.size(), 0);
+        long[] newIds = wordIds(newWords.size(), 100000);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        FuzzyMatchingHolder holder = new FuzzyMatchingHolder(oldWords, oldFrequencies, oldIds, MAX_ERROR,
+                                                             false, false, null, null, executor);
+        checkWordData(holder, oldWords, oldFrequencies, oldIds, queries, "Initial dictionary");
+
+        holder.swap(newWords, newFrequencies, newIds).get();
+        checkWordData(holder, newWords, newFrequencies, newIds, queries, "Swapped dictionary");
+
+        holder.swap(oldWords, oldFrequencies, null).get();
+        checkWordData(holder, oldWords, oldFrequencies, null, queries, "Dictionary without identifiers");
+        executor.shutdown();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Random random = new Random(50);
+        List<String> words = TestSupport.randomWords(random, "abcdefghij", 3, 8, 12000);
+        List<String> queries = TestSupport.randomWords(random, "abcdefghij", 3, 8, 40);
+        List<String> oldWords = words.subList(0, 8000);
+        List<String> newWords = words.subList(4000, 12000);
+        checkSwap(oldWords, newWords, queries, false);
+        checkSwap(oldWords, newWords, queries, true);
+        checkSwapWordData(oldWords, newWords, queries, random);
+        System.out.println("FuzzyMatchingHolderTest passed.");
+    }
+}
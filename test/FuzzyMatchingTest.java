@@ -0,0 +1,389 @@
+// Copyright (c) 2013 Gratian Lup. All rights reserved.
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are
+// met:
+//
+// * Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+//
+// * Redistributions in binary form must reproduce the above
+// copyright notice, this list of conditions and the following
+// disclaimer in the documentation and/or other materials provided
+// with the distribution.
+//
+// * The name "FuzzyStringMatching" must not be used to endorse or promote
+// products derived from this software without prior written permission.
+//
+// * Products derived from this software may not be called "FuzzyStringMatching" nor
+// may "FuzzyStringMatching" appear in their names without prior written
+// permission of the author.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+// A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+// OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+// SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+// LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+// DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Checks the automaton search of FuzzyMatching against the distances
+// of LevenshteinDistance (plain, with transpositions and with keyboard
+// edit costs), computed for every word of a random dictionary, and the
+// ranked completions against a search of the prefixes of every word.
+// Run without arguments; exits with an error on the first mismatch.
+public class FuzzyMatchingTest {
+    private static final int WORD_COUNT = 2000;
+    private static final int QUERY_COUNT = 300;
+    private static final int MAX_ERROR = 3;
+    private static final String ALPHABET = "abcdef";
+
+    // Applies a few random edits to dictionary words, including swaps of adjacent letters.
+    private static List<String> randomQueries(Random random, List<String> words) {
+        List<String> queries = new ArrayList<String>();
+
+        for(int i = 0; i < QUERY_COUNT; i++) {
+            String word = words.get(random.nextInt(words.size()));
+            queries.add(TestSupport.mutate(random, ALPHABET, word, 4, true));
+        }
+
+        return queries;
+    }
+
+    private static CompactTrie buildTrie(List<String> words) {
+        CompactTrie trie = new CompactTrie();
+        trie.addWords(new ArrayList<String>(words));
+        return trie;
+    }
+
+    // Compares the found words, sorted so that duplicates are detected.
+    private static void checkWords(List<String> expected, List<String> found, String description) {
+        List<String> sortedExpected = TestSupport.sorted(expected);
+        List<String> sortedFound = TestSupport.sorted(found);
+        TestSupport.check(sortedExpected.equals(sortedFound),
+                          description + ": expected " + sortedExpected + ", found " + sortedFound);
+    }
+
+    private static List<String> findByDistance(List<String> words, String query,
+                                               int maxError, boolean transpositions) {
+        List<String> matches = new ArrayList<String>();
+
+        for(String word : words) {
+            int distance = transpositions ? LevenshteinDistance.computeDamerauDistance(word, query) :
+                                            LevenshteinDistance.computeDistance(word, query);
+
+            if(distance <= maxError) {
+                matches.add(word);
+            }
+        }
+
+        return matches;
+    }
+
+    private static void checkDistances(List<String> words, List<String> queries) {
+        CompactTrie trie = buildTrie(words);
+
+        for(int maxError = 1; maxError <= MAX_ERROR; maxError++) {
+            for(int mode = 0; mode < 2; mode++) {
+                boolean transpositions = (mode == 1);
+                FuzzyMatching matching = new FuzzyMatching(trie, maxError, transpositions);
+
+                for(String query : queries) {
+                    checkWords(findByDistance(words, query, maxError, transpositions),
+                               matching.findMatchingWords(query),
+                               "Query " + query + " with maximum error " + maxError +
+                               (transpositions ? " and transpositions" : ""));
+                }
+            }
+        }
+    }
+
+    private static void checkWeightedDistances(List<String> words, List<String> queries) {
+        CompactTrie trie = buildTrie(words);
+        EditCosts editCosts = new KeyboardEditCosts();
+
+        // The maximum error is a total cost; two edits at the default cost are 4.
+        for(int maxCost = 1; maxCost <= 4; maxCost++) {
+            for(int mode = 0; mode < 2; mode++) {
+                boolean transpositions = (mode == 1);
+                FuzzyMatching matching = new FuzzyMatching(trie, null, maxCost, transpositions,
+                                                           editCosts, null);
+
+                for(String query : queries) {
+                    List<String> expected = new ArrayList<String>();
+
+                    for(String word : words) {
+                        if(LevenshteinDistance.computeWeightedDistance(word, query, editCosts,
+                                                                       transpositions) <= maxCost) {
+                            expected.add(word);
+                        }
+                    }
+
+                    checkWords(expected, matching.findMatchingWords(query),
+                               "Query " + query + " with keyboard edit costs, maximum cost " +
+                               maxCost + (transpositions ? " and transpositions" : ""));
+                }
+            }
+        }
+    }
+
+    // Checks the automaton on its own, as an NFA, a DFA and a lazy DFA.
+    private static void checkEvaluation(List<String> words, List<String> queries) {
+        for(int i = 0; i < 50; i++) {
+            String query = queries.get(i);
+
+            for(int maxError = 1; maxError <= 2; maxError++) {
+                for(int mode = 0; mode < 2; mode++) {
+                    boolean transpositions = (mode == 1);
+                    LevenshteinAutomaton nfa = new LevenshteinAutomaton(maxError, transpositions);
+                    nfa.buildNFA(query);
+                    LevenshteinAutomaton dfa = new LevenshteinAutomaton(maxError, transpositions);
+                    dfa.buildNFA(query);
+                    dfa.convertToDFA();
+                    LevenshteinAutomaton lazyDFA = new LevenshteinAutomaton(maxError, transpositions);
+                    lazyDFA.buildNFA(query);
+                    lazyDFA.convertToLazyDFA();
+                    Set<String> expected =
+                            new HashSet<String>(findByDistance(words, query, maxError, transpositions));
+
+                    for(String word : words) {
+                        String description = "Word " + word + " for query " + query +
+                                             " with maximum error " + maxError +
+                                             (transpositions ? " and transpositions" : "");
+                        TestSupport.check(nfa.evaluateNFA(word) == expected.contains(word),
+                                          "evaluateNFA differs: " + description);
+                        TestSupport.check(dfa.evaluateDFA(word) == expected.contains(word),
+                                          "evaluateDFA differs: " + description);
+                        TestSupport.check(lazyDFA.evaluateDFA(word) == expected.contains(word),
+                                          "evaluateDFA of the lazy DFA differs: " + description);
+                    }
+                }
+            }
+        }
+    }
+
+    private static void checkCache(List<String> words, List<String> queries) {
+        CompactTrie trie = buildTrie(words);
+        AutomatonCache cache = new SimpleAutomatonCache();
+        FuzzyMatching matching = new FuzzyMatching(trie, null, 2, true, cache);
+
+        // Each query is searched twice, the second time with the cached automaton.
+        for(int run = 0; run < 2; run++) {
+            for(String query : queries) {
+                checkWords(findByDistance(words, query, 2, true), matching.findMatchingWords(query),
+                           "Query " + query + " with the automaton cache");
+                TestSupport.check(cache.get(query, 2) != null, "Automaton for " + query + " not cached");
+            }
+        }
+
+        // The prefix automata of the completions and the lazy DFAs of the batch search
+        // are not cached, and don't use the cached automata of the ordinary search.
+        AutomatonCache otherCache = new SimpleAutomatonCache();
+        FuzzyMatching otherMatching = new FuzzyMatching(trie, null, 2, true, otherCache);
+        List<List<String>> batchResults = otherMatching.findMatchingWordsBatch(queries);
+
+        for(int i = 0; i < queries.size(); i++) {
+            String query = queries.get(i);
+            otherMatching.findCompletions(query, 10);
+            TestSupport.check(otherCache.get(query, 2) == null,
+                              "Prefix or lazy automaton for " + query + " cached");
+            checkWords(findByDistance(words, query, 2, true), batchResults.get(i),
+                       "Batch query " + query + " with the automaton cache");
+        }
+
+        batchResults = matching.findMatchingWordsBatch(queries);
+
+        for(int i = 0; i < queries.size(); i++) {
+            String query = queries.get(i);
+            checkWords(findByDistance(words, query, 2, true), batchResults.get(i),
+                       "Batch query " + query + " after the cached searches");
+            checkWords(findByDistance(words, query, 2, true), matching.findMatchingWords(query),
+                       "Query " + query + " after the batch search");
+        }
+    }
+
+    private static void checkBatch(List<String> words, List<String> queries) {
+        CompactTrie trie = buildTrie(words);
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+
+        // Repeated queries, which must get separate result lists.
+        List<String> batchQueries = new ArrayList<String>(queries);
+        batchQueries.addAll(queries.subList(0, 20));
+
+        try {
+            for(int maxError = 1; maxError <= MAX_ERROR; maxError++) {
+                for(int mode = 0; mode < 3; mode++) {
+                    boolean transpositions = (mode == 1);
+                    EditCosts editCosts = (mode == 2) ? new KeyboardEditCosts() : null;
+                    AutomatonCache cache = (maxError == 2) ? new SimpleAutomatonCache() : null;
+                    FuzzyMatching matching = new FuzzyMatching(trie, null, maxError, transpositions,
+                                                               editCosts, cache);
+                    List<List<String>> results = matching.findMatchingWordsBatch(batchQueries);
+                    List<List<String>> parallelResults =
+                            matching.findMatchingWordsBatch(batchQueries, executor);
+                    TestSupport.check(results.size() == batchQueries.size() &&
+                                      parallelResults.size() == batchQueries.size(),
+                                      "Batch result count differs");
+
+                    for(int i = 0; i < batchQueries.size(); i++) {
+                        String description = "Batch query " + batchQueries.get(i) + " with maximum error " +
+                                             maxError + " in mode " + mode;
+                        List<String> expected = matching.findMatchingWords(batchQueries.get(i));
+                        checkWords(expected, results.get(i), description);
+                        checkWords(expected, parallelResults.get(i), description + " with an executor");
+                    }
+
+                    for(int i = 0; i < 20; i++) {
+                        results.get(i).add("#");
+                        TestSupport.check(!results.get(queries.size() + i).contains("#"),
+                                          "Repeated query " + queries.get(i) + " shares its result list");
+                    }
+                }
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    private static void checkInsertionsAtEnd() {
+        // Letters inserted after the end of the pattern.
+        List<String> words = new ArrayList<String>();
+        words.add("abcd");
+        words.add("abcde");
+        words.add("xabc");
+        CompactTrie trie = buildTrie(words);
+
+        for(int mode = 0; mode < 2; mode++) {
+            boolean transpositions = (mode == 1);
+            checkWords(Arrays.asList("abcd", "xabc"),
+                       new FuzzyMatching(trie, 1, transpositions).findMatchingWords("abc"),
+                       "Query abc with maximum error 1");
+            checkWords(words, new FuzzyMatching(trie, 2, transpositions).findMatchingWords("abc"),
+                       "Query abc with maximum error 2");
+        }
+    }
+
+    // A word is a completion if some prefix of it is within the maximum error.
+    private static boolean isCompletion(String word, String prefix, int maxError, boolean transpositions) {
+        for(int length = 0; length <= word.length(); length++) {
+            String wordPrefix = word.substring(0, length);
+            int distance = transpositions ? LevenshteinDistance.computeDamerauDistance(wordPrefix, prefix) :
+                                            LevenshteinDistance.computeDistance(wordPrefix, prefix);
+
+            if(distance <= maxError) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    // Ranks the completions by frequency, then length, then alphabetically.
+    private static List<String> findCompletionsByDistance(List<String> words, final Map<String, Integer> frequencies,
+                                                          String prefix, int maxError, boolean transpositions,
+                                                          int maxResults) {
+        List<String> completions = new ArrayList<String>();
+
+        for(String word : words) {
+            if(isCompletion(word, prefix, maxError, transpositions)) {
+                completions.add(word);
+            }
+        }
+
+        Collections.sort(completions, new Comparator<String>() {
+            @Override
+            public int compare(String a, String b) {
+                int frequencyA = (frequencies != null) ? frequencies.get(a) : 0;
+                int frequencyB = (frequencies != null) ? frequencies.get(b) : 0;
+
+                if(frequencyA != frequencyB) {
+                    return (frequencyA > frequencyB) ? -1 : 1;
+                }
+
+                if(a.length() != b.length()) {
+                    return a.length() - b.length();
+                }
+
+                return a.compareTo(b);
+            }
+        });
+
+        return completions.subList(0, Math.min(maxResults, completions.size()));
+    }
+
+    private static void checkCompletions(Random random, List<String> words, List<String> queries) {
+        // Few distinct frequencies, so that ties are common.
+        int[] frequencies = new int[words.size()];
+        Map<String, Integer> frequencyMap = new HashMap<String, Integer>();
+
+        for(int i = 0; i < words.size(); i++) {
+            frequencies[i] = random.nextInt(20);
+            frequencyMap.put(words.get(i), frequencies[i]);
+        }
+
+        CompactTrie frequencyTrie = new CompactTrie();
+        frequencyTrie.addWords(new ArrayList<String>(words), frequencies, null);
+        CompactTrie plainTrie = buildTrie(words);
+
+        for(int i = 0; i < 100; i++) {
+            // The queries are used as typed prefixes, cut to a random length.
+            String query = queries.get(i);
+            String prefix = query.substring(0, random.nextInt(query.length() + 1));
+
+            for(int maxError = 1; maxError <= 2; maxError++) {
+                for(int mode = 0; mode < 2; mode++) {
+                    boolean transpositions = (mode == 1);
+                    FuzzyMatching frequencyMatching = new FuzzyMatching(frequencyTrie, maxError, transpositions);
+                    FuzzyMatching plainMatching = new FuzzyMatching(plainTrie, maxError, transpositions);
+
+                    // The last count is larger than the number of words.
+                    for(int maxResults : new int[] { 1, 10, 100, WORD_COUNT + 1 }) {
+                        String description = "Completions of " + prefix + " with maximum error " + maxError +
+                                             (transpositions ? " and transpositions" : "") +
+                                             ", " + maxResults + " results";
+                        List<String> expected = findCompletionsByDistance(words, frequencyMap, prefix,
+                                                                          maxError, transpositions, maxResults);
+                        List<String> found = frequencyMatching.findCompletions(prefix, maxResults);
+                        TestSupport.check(expected.equals(found), description + ": expected " + expected + ", found " + found);
+
+                        expected = findCompletionsByDistance(words, null, prefix, maxError, transpositions, maxResults);
+                        found = plainMatching.findCompletions(prefix, maxResults);
+                        TestSupport.check(expected.equals(found), description + " without frequencies: expected " +
+                                                                  expected + ", found " + found);
+                    }
+                }
+            }
+        }
+    }
+
+    public static void main(String[] args) {
+        Random random = new Random(34);
+        List<String> words = TestSupport.randomWords(random, ALPHABET, 1, 8, WORD_COUNT);
+        List<String> queries = randomQueries(random, words);
+
+        checkInsertionsAtEnd();
+        checkDistances(words, queries);
+        checkEvaluation(words, queries);
+        checkWeightedDistances(words, queries);
+        checkCache(words, queries);
+        checkBatch(words, queries);
+        checkCompletions(random, words, queries);
+        System.out.println("FuzzyMatchingTest passed.");
+    }
+}
@@ -0,0 +1,160 @@
+// Copyright (c) 2013 Gratian Lup. All rights reserved.
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are
+// met:
+//
+// * Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+//
+// * Redistributions in binary form must reproduce the above
+// copyright notice, this list of conditions and the following
+// disclaimer in the documentation and/or other materials provided
+// with the distribution.
+//
+// * The name "FuzzyStringMatching" must not be used to endorse or promote
+// products derived from this software without prior written permission.
+//
+// * Products derived from this software may not be called "FuzzyStringMatching" nor
+// may "FuzzyStringMatching" appear in their names without prior written
+// permission of the author.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+// A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+// OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+// SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+// LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+// DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// Checks FuzzySearchSession against FuzzyMatching: queries are typed one
+// letter at a time, with letters removed and replaced by others on the way,
+// and after each keystroke the matching words and the ranked completions
+// of the session must equal those of a search for the typed letters.
+// Run without arguments; exits with an error on the first mismatch.
+public class FuzzySearchSessionTest {
+    private static final int WORD_COUNT = 2000;
+    private static final int QUERY_COUNT = 100;
+    private static final int MAX_ERROR = 2;
+    private static final String ALPHABET = "abcdef";
+    private static final int[] RESULT_COUNTS = { 1, 10, 100 };
+
+    private static char randomLetter(Random random) {
+        return ALPHABET.charAt(random.nextInt(ALPHABET.length()));
+    }
+
+    // Compares the session with a search for the letters typed so far.
+    private static void checkSession(FuzzySearchSession session, FuzzyMatching matching,
+                                     String description) {
+        String typedWord = session.getTypedWord();
+        String prefix = description + ", typed " + typedWord;
+        List<String> expected = TestSupport.sorted(matching.findMatchingWords(typedWord));
+        List<String> found = TestSupport.sorted(session.findMatchingWords());
+        TestSupport.check(expected.equals(found), prefix + ": expected matches " + expected + ", found " + found);
+
+        for(int maxResults : RESULT_COUNTS) {
+            expected = matching.findCompletions(typedWord, maxResults);
+            found = session.findCompletions(maxResults);
+            TestSupport.check(expected.equals(found), prefix + ": expected " + maxResults +
+                                                      " completions " + expected + ", found " + found);
+        }
+    }
+
+    private static void checkTyping(Random random, CompactTrie trie, List<String> words,
+                                    String description) {
+        for(int maxError = 1; maxError <= MAX_ERROR; maxError++) {
+            FuzzyMatching matching = new FuzzyMatching(trie, maxError, false);
+
+            for(int i = 0; i < QUERY_COUNT; i++) {
+                String query = words.get(random.nextInt(words.size()));
+                FuzzySearchSession session = matching.createSession();
+                String sessionDescription = description + " with maximum error " + maxError;
+                checkSession(session, matching, sessionDescription);
+
+                for(int j = 0; j < query.length(); j++) {
+                    session.appendLetter(query.charAt(j));
+                    checkSession(session, matching, sessionDescription);
+
+                    // Sometimes a typo, corrected right away.
+                    if(random.nextInt(3) == 0) {
+                        session.removeLetter();
+                        checkSession(session, matching, sessionDescription);
+                        session.appendLetter(randomLetter(random));
+                        checkSession(session, matching, sessionDescription);
+                        session.removeLetter();
+                        session.appendLetter(query.charAt(j));
+                        checkSession(session, matching, sessionDescription);
+                    }
+                }
+
+                // Letters typed past the end of the word.
+                session.appendLetter(randomLetter(random));
+                checkSession(session, matching, sessionDescription);
+
+                while(session.getTypedWord().length() > 0) {
+                    session.removeLetter();
+                    checkSession(session, matching, sessionDescription);
+                }
+
+                boolean thrown = false;
+
+                try {
+                    session.removeLetter();
+                }
+                catch(IllegalStateException e) {
+                    thrown = true;
+                }
+
+                TestSupport.check(thrown, "Removing a letter from an empty session did not fail");
+            }
+        }
+    }
+
+    private static void checkUnsupportedDistances(CompactTrie trie) {
+        FuzzyMatching[] matchings = {
+            new FuzzyMatching(trie, MAX_ERROR, true),
+            new FuzzyMatching(trie, null, MAX_ERROR, false, new KeyboardEditCosts(), null)
+        };
+
+        for(FuzzyMatching matching : matchings) {
+            boolean thrown = false;
+
+            try {
+                matching.createSession();
+            }
+            catch(IllegalStateException e) {
+                thrown = true;
+            }
+
+            TestSupport.check(thrown, "Session created for the " + matching.getDistanceModel() + " distance");
+        }
+    }
+
+    public static void main(String[] args) {
+        Random random = new Random(37);
+        List<String> words = TestSupport.randomWords(random, ALPHABET, 1, 8, WORD_COUNT);
+
+        // Few distinct frequencies, so that ties are common.
+        int[] frequencies = new int[words.size()];
+
+        for(int i = 0; i < frequencies.length; i++) {
+            frequencies[i] = random.nextInt(20);
+        }
+
+        CompactTrie frequencyTrie = new CompactTrie();
+        frequencyTrie.addWords(new ArrayList<String>(words), frequencies, null);
+        CompactTrie plainTrie = new CompactTrie();
+        plainTrie.addWords(new ArrayList<String>(words));
+
+        checkTyping(random, frequencyTrie, words, "Trie with frequencies");
+        checkTyping(random, plainTrie, words, "Trie without frequencies");
+        checkUnsupportedDistances(plainTrie);
+        System.out.println("FuzzySearchSessionTest passed.");
+    }
+}
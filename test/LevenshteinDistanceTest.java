@@ -0,0 +1,99 @@
+// Copyright (c) 2013 Gratian Lup. All rights reserved.
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are
+// met:
+//
+// * Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+//
+// * Redistributions in binary form must reproduce the above
+// copyright notice, this list of conditions and the following
+// disclaimer in the documentation and/or other materials provided
+// with the distribution.
+//
+// * The name "FuzzyStringMatching" must not be used to endorse or promote
+// products derived from this software without prior written permission.
+//
+// * Products derived from this software may not be called "FuzzyStringMatching" nor
+// may "FuzzyStringMatching" appear in their names without prior written
+// permission of the author.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+// A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+// OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+// SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+// LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+// DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE
+import java.util.Random;
+
+// Checks the fast distance algorithms against the dynamic-programming
+// version (LevenshteinDistance.computeDistance), used as the reference,
+// on random word pairs. Run without arguments; exits with an error
+// on the first mismatch.
+public class LevenshteinDistanceTest {
+    private static final int PAIR_COUNT = 20000;
+    private static final int MAX_BOUNDED_ERROR = 4;
+
+    // Small alphabets give many matching letters; the last ones
+    // are outside ASCII, using the map of PatternMask.
+    private static final String[] ALPHABETS = {
+        "ab",
+        "abcdefghijklmnopqrstuvwxyz",
+        "ae\u00e9\u00df\u00fc",
+        "\u0430\u0431\u0432\u0433\u4e00\u4e01\u4e03x"
+    };
+
+    private static void checkPair(String word, String pattern,
+                                  LevenshteinDistance.PatternMask mask) {
+        int expected = LevenshteinDistance.computeDistance(word, pattern);
+        String pair = "'" + word + "', '" + pattern + "'";
+
+        TestSupport.check(LevenshteinDistance.computeDistanceFast(word, pattern) == expected,
+                          "computeDistanceFast differs for " + pair);
+        TestSupport.check(mask.computeDistance(word) == expected,
+                          "PatternMask.computeDistance differs for " + pair);
+
+        // The same letters at an offset in a larger array.
+        char[] letters = ("##" + word + "#").toCharArray();
+        TestSupport.check(mask.computeDistance(letters, 2, word.length()) == expected,
+                          "PatternMask.computeDistance with offset differs for " + pair);
+
+        for(int maxError = 0; maxError <= MAX_BOUNDED_ERROR; maxError++) {
+            int bounded = LevenshteinDistance.computeBoundedDistance(word, pattern, maxError);
+            TestSupport.check(bounded == Math.min(expected, maxError + 1),
+                              "computeBoundedDistance with maximum error " + maxError + " differs for " + pair);
+        }
+    }
+
+    public static void main(String[] args) {
+        Random random = new Random(26);
+
+        for(int i = 0; i < PAIR_COUNT; i++) {
+            String alphabet = ALPHABETS[i % ALPHABETS.length];
+
+            // Include patterns longer than 64 letters, which use several blocks.
+            int length = (i % 5 == 0) ? 60 + random.nextInt(140) : random.nextInt(20);
+            String pattern = TestSupport.randomWord(random, alphabet, length);
+            // A few random edits, so that the distance is often small.
+            String word = random.nextBoolean() ?
+                          TestSupport.mutate(random, alphabet, pattern, 6, false) :
+                          TestSupport.randomWord(random, alphabet, random.nextInt(length + 5));
+            LevenshteinDistance.PatternMask mask = new LevenshteinDistance.PatternMask(pattern);
+            checkPair(word, pattern, mask);
+
+            // The mask is reused for several words.
+            checkPair(TestSupport.mutate(random, alphabet, word, 6, false), pattern, mask);
+        }
+
+        // Empty words and patterns.
+        checkPair("", "", new LevenshteinDistance.PatternMask(""));
+        checkPair("abc", "", new LevenshteinDistance.PatternMask(""));
+        checkPair("", "abc", new LevenshteinDistance.PatternMask("abc"));
+        System.out.println("LevenshteinDistanceTest passed.");
+    }
+}
@@ -0,0 +1,260 @@
+// Copyright (c) 2013 Gratian Lup. All rights reserved.
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are
+// met:
+//
+// * Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+//
+// * Redistributions in binary form must reproduce the above
+// copyright notice, this list of conditions and the following
+// disclaimer in the documentation and/or other materials provided
+// with the distribution.
+//
+// * The name "FuzzyStringMatching" must not be used to endorse or promote
+// products derived from this software without prior written permission.
+//
+// * Products derived from this software may not be called "FuzzyStringMatching" nor
+// may "FuzzyStringMatching" appear in their names without prior written
+// permission of the author.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+// A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+// OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+// SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+// LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+// DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+// Checks the list-based engines against LevenshteinDistance.computeDistance
+// computed for every word of a random dictionary containing duplicate words,
+// which must be found only once, and that QueryPlanner finds the same words
+// whatever engine it selects. Run without arguments; exits with an error
+// on the first mismatch.
+public class MatchingEngineTest {
+    private static final int WORD_COUNT = 2000;
+    private static final int QUERY_COUNT = 200;
+    private static final String ALPHABET = "abcdef";
+
+    private static List<String> findByDistance(List<String> words, String query, int maxError) {
+        List<String> matches = new ArrayList<String>();
+
+        for(String word : words) {
+            if(LevenshteinDistance.computeDistance(word, query) <= maxError) {
+                matches.add(word);
+            }
+        }
+
+        return matches;
+    }
+
+    private static void checkEngine(MatchingEngine engine, List<String> words,
+                                    List<String> queries, String description) {
+        for(String query : queries) {
+            List<String> expected = TestSupport.sorted(findByDistance(words, query, engine.getMaxError()));
+            List<String> found = TestSupport.sorted(engine.findMatchingWords(query));
+            TestSupport.check(expected.equals(found), description + " with maximum error " +
+                              engine.getMaxError() + " differs for query " + query +
+                              ": expected " + expected + ", found " + found);
+        }
+    }
+
+    private static void checkVariantPostings() {
+        // A popular key is stored once, with all its ordinals in order,
+        // among many keys having a single ordinal.
+        SymmetricDeleteMatching.VariantIndex index = new SymmetricDeleteMatching.VariantIndex(16);
+
+        for(int i = 0; i < 200000; i++) {
+            index.count((i % 2 == 0) ? 7 : 100 + i);
+        }
+
+        index.allocatePostings();
+
+        for(int i = 0; i < 200000; i++) {
+            index.add((i % 2 == 0) ? 7 : 100 + i, i);
+        }
+
+        index.finish();
+        IntList found = new IntList();
+        index.find(7, found);
+        TestSupport.check(found.size() == 100000, "Wrong ordinal count for a popular key: " + found.size());
+
+        for(int i = 0; i < found.size(); i++) {
+            TestSupport.check(found.get(i) == 2 * i, "Wrong ordinal order for a popular key");
+        }
+
+        found.clear();
+        index.find(101, found);
+        TestSupport.check(found.size() == 1 && found.get(0) == 1, "Wrong ordinals for a single key");
+        found.clear();
+        index.find(102, found);
+        TestSupport.check(found.size() == 0, "Ordinals found for a missing key");
+    }
+
+    private static void checkVariantSlots() {
+        // A table with 2^25 slots must use all of them as home slots,
+        // not only the first 2^24 (the hash bits were once cut to 24).
+        SymmetricDeleteMatching.VariantIndex index = new SymmetricDeleteMatching.VariantIndex(1 << 24);
+        int slotCount = index.getSlotCount();
+        TestSupport.check(slotCount == 1 << 25, "Unexpected variant table size " + slotCount);
+        Random random = new Random(30);
+        int upperSlots = 0;
+
+        for(int i = 0; i < 100000; i++) {
+            int slot = index.getSlot(random.nextLong());
+            TestSupport.check(slot >= 0 && slot < slotCount, "Variant slot out of range: " + slot);
+
+            if(slot >= slotCount / 2) {
+                upperSlots++;
+            }
+        }
+
+        TestSupport.check(upperSlots > 45000 && upperSlots < 55000,
+                          "Variant slots not spread over the table: " + upperSlots + " of 100000 in the upper half");
+    }
+
+    private static CompactTrie buildTrie(List<String> words, boolean reversed) {
+        List<String> trieWords = new ArrayList<String>();
+
+        for(String word : words) {
+            trieWords.add(reversed ? new StringBuilder(word).reverse().toString() : word);
+        }
+
+        CompactTrie trie = new CompactTrie();
+        trie.addWords(trieWords);
+        return trie;
+    }
+
+    private static List<MatchingEngine> buildEngines(List<String> words) {
+        CompactTrie trie = buildTrie(words, false);
+        List<MatchingEngine> engines = new ArrayList<MatchingEngine>();
+        engines.add(new FuzzyMatching(trie, 2));
+        engines.add(new FuzzyMatching(trie, buildTrie(words, true), 2));
+        engines.add(new TrieDistanceMatching(trie, 2));
+        engines.add(new BruteForceMatching(words, 2));
+        engines.add(new SymmetricDeleteMatching(words, 2));
+        engines.add(new QGramMatching(words, 2));
+        engines.add(new BKTreeMatching(words, 2));
+        return engines;
+    }
+
+    private static void checkPlanner(List<String> words, List<String> queries) {
+        List<MatchingEngine> engines = buildEngines(words);
+        QueryPlanner planner = new QueryPlanner(new DictionaryStatistics(words));
+
+        for(MatchingEngine engine : engines) {
+            planner.addEngine(engine);
+        }
+
+        // Each query is answered by every engine, then repeatedly by the planner,
+        // which selects each engine in turn while measuring them.
+        for(String query : queries) {
+            List<String> expected = TestSupport.sorted(engines.get(0).findMatchingWords(query));
+
+            for(MatchingEngine engine : engines) {
+                List<String> found = TestSupport.sorted(engine.findMatchingWords(query));
+                TestSupport.check(expected.equals(found), engine.getClass().getName() +
+                                  " differs from FuzzyMatching for query " + query +
+                                  ": expected " + expected + ", found " + found);
+            }
+
+            for(int i = 0; i < engines.size(); i++) {
+                List<String> found = TestSupport.sorted(planner.findMatchingWords(query));
+                TestSupport.check(expected.equals(found), "QueryPlanner differs for query " + query +
+                                  ": expected " + expected + ", found " + found);
+            }
+        }
+
+        for(MatchingEngine engine : engines) {
+            TestSupport.check(planner.getQueryCount(engine) > 0,
+                              engine.getClass().getName() + " never selected by QueryPlanner");
+        }
+    }
+
+    private static void checkStatistics(List<String> words, List<String> distinctWords) {
+        DictionaryStatistics statistics = new DictionaryStatistics(words);
+        DictionaryStatistics distinctStatistics = new DictionaryStatistics(distinctWords);
+        TestSupport.check(statistics.getWordCount() == distinctWords.size() &&
+                          statistics.getWordCount(0, 3) == distinctStatistics.getWordCount(0, 3) &&
+                          statistics.getPrefixCount() == distinctStatistics.getPrefixCount() &&
+                          statistics.getAverageLength() == distinctStatistics.getAverageLength(),
+                          "Duplicate words counted by DictionaryStatistics");
+    }
+
+    private static void checkPlannerDistanceModels(List<String> words) {
+        CompactTrie trie = buildTrie(words, false);
+        QueryPlanner planner = new QueryPlanner(new DictionaryStatistics(words));
+        planner.addEngine(new TrieDistanceMatching(trie, 2));
+        planner.addEngine(new FuzzyMatching(trie, 2, false));
+        MatchingEngine[] otherEngines = {
+            new FuzzyMatching(trie, 2, true),
+            new FuzzyMatching(trie, null, 2, false, new KeyboardEditCosts(), null)
+        };
+
+        for(MatchingEngine engine : otherEngines) {
+            boolean thrown = false;
+
+            try {
+                planner.addEngine(engine);
+            }
+            catch(IllegalArgumentException ex) {
+                thrown = true;
+            }
+
+            TestSupport.check(thrown, "QueryPlanner accepted an engine using the " +
+                              engine.getDistanceModel() + " distance");
+        }
+    }
+
+    public static void main(String[] args) {
+        Random random = new Random(28);
+        List<String> distinctWords = TestSupport.randomWords(random, ALPHABET, 1, 8, WORD_COUNT);
+        List<String> queries = new ArrayList<String>();
+
+        for(int i = 0; i < QUERY_COUNT; i++) {
+            String word = distinctWords.get(random.nextInt(distinctWords.size()));
+            queries.add(TestSupport.mutate(random, ALPHABET, word, 4, false));
+        }
+
+        // Every tenth word appears twice, like duplicate lines of a dictionary file.
+        List<String> words = new ArrayList<String>(distinctWords);
+
+        for(int i = 0; i < distinctWords.size(); i += 10) {
+            words.add(distinctWords.get(i));
+        }
+
+        checkVariantSlots();
+        checkVariantPostings();
+
+        for(int maxError = 1; maxError <= 3; maxError++) {
+            checkEngine(new BruteForceMatching(words, maxError), distinctWords,
+                        queries, "BruteForceMatching");
+
+            checkEngine(new BKTreeMatching(words, maxError), distinctWords,
+                        queries, "BKTreeMatching");
+            checkEngine(new QGramMatching(words, maxError), distinctWords,
+                        queries, "QGramMatching");
+            checkEngine(new QGramMatching(words, 2, maxError), distinctWords,
+                        queries, "QGramMatching with bigrams");
+
+            if(maxError <= 2) {
+                checkEngine(new SymmetricDeleteMatching(words, maxError), distinctWords,
+                            queries, "SymmetricDeleteMatching");
+            }
+        }
+
+        checkStatistics(words, distinctWords);
+        checkPlanner(words, queries);
+        checkPlanner(Arrays.asList("abc", "abc", "abd"), Arrays.asList("abc", "abd", "xbc"));
+        checkPlannerDistanceModels(distinctWords);
+                System.out.println("MatchingEngineTest passed.");
+    }
+}
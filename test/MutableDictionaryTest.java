@@ -0,0 +1,187 @@
+// Copyright (c) 2013 Gratian Lup. All rights reserved.
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are
+// met:
+//
+// * Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+//
+// * Redistributions in binary form must reproduce the above
+// copyright notice, this list of conditions and the following
+// disclaimer in the documentation and/or other materials provided
+// with the distribution.
+//
+// * The name "FuzzyStringMatching" must not be used to endorse or promote
+// products derived from this software without prior written permission.
+//
+// * Products derived from this software may not be called "FuzzyStringMatching" nor
+// may "FuzzyStringMatching" appear in their names without prior written
+// permission of the author.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+// A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+// OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+// SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+// LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+// DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Checks MutableDictionary against a set of words changed the same way,
+// searched with LevenshteinDistance.computeDistance, first from one thread,
+// then with a searching thread running during the changes and compactions.
+// Run without arguments; exits with an error on the first mismatch.
+public class MutableDictionaryTest {
+    private static final int MAX_ERROR = 2;
+
+    private static void checkSearches(MutableDictionary dictionary, Set<String> expectedWords,
+                                      List<String> queries) {
+        for(String query : queries) {
+            Set<String> expected = new HashSet<String>();
+
+            for(String word : expectedWords) {
+                if(LevenshteinDistance.computeDistance(word, query) <= MAX_ERROR) {
+                    expected.add(word);
+                }
+            }
+
+            List<String> found = dictionary.findMatchingWords(query);
+            TestSupport.check(found.size() == expected.size() && expected.equals(new HashSet<String>(found)),
+                              "Different matching words for " + query);
+        }
+    }
+
+    private static void checkSequential(List<String> words, List<String> queries, Random random) {
+        // Compacted inline, every 200 changes.
+        List<String> initialWords = words.subList(0, words.size() / 2);
+        Set<String> expectedWords = new HashSet<String>(initialWords);
+        MutableDictionary dictionary = new MutableDictionary(initialWords, MAX_ERROR, 200, null);
+
+        for(int i = 0; i < 3000; i++) {
+            String word = words.get(random.nextInt(words.size()));
+
+            if(random.nextBoolean()) {
+                dictionary.addWord(word);
+                expectedWords.add(word);
+            }
+            else {
+                dictionary.removeWord(word);
+                expectedWords.remove(word);
+            }
+
+            TestSupport.check(dictionary.contains(word) == expectedWords.contains(word),
+                              "Wrong contains result for " + word);
+
+            if(i % 250 == 0) {
+                checkSearches(dictionary, expectedWords, queries);
+            }
+        }
+
+        dictionary.compact();
+        TestSupport.check(dictionary.getDeltaSize() == 0, "Delta not empty after compaction");
+        checkSearches(dictionary, expectedWords, queries);
+    }
+
+    private static void checkConcurrent(List<String> words, final List<String> queries,
+                                        Random random) throws InterruptedException {
+        // The first quarter of the words is never changed, so it must
+        // always be found, whatever the snapshot used by the search.
+        final List<String> stableWords = words.subList(0, words.size() / 4);
+        List<String> changedWords = words.subList(words.size() / 4, words.size());
+        List<String> initialWords = words.subList(0, words.size() / 2);
+        Set<String> expectedWords = new HashSet<String>(initialWords);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        final MutableDictionary dictionary = new MutableDictionary(initialWords, MAX_ERROR,
+                                                                   100, executor);
+        final AtomicBoolean stop = new AtomicBoolean();
+        final AtomicInteger errorCount = new AtomicInteger();
+
+        Thread searcher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Random searchRandom = new Random(1);
+
+                while(!stop.get()) {
+                    String query = queries.get(searchRandom.nextInt(queries.size()));
+                    List<String> found = dictionary.findMatchingWords(query);
+
+                    if(new HashSet<String>(found).size() != found.size()) {
+                        errorCount.incrementAndGet(); // A word returned twice.
+                    }
+
+                    String stableWord = stableWords.get(searchRandom.nextInt(stableWords.size()));
+
+                    if(!dictionary.contains(stableWord) ||
+                       !dictionary.findMatchingWords(stableWord).contains(stableWord)) {
+                        errorCount.incrementAndGet();
+                    }
+                }
+            }
+        });
+
+        searcher.start();
+
+        for(int i = 0; i < 10000; i++) {
+            String word = changedWords.get(random.nextInt(changedWords.size()));
+
+            if(random.nextBoolean()) {
+                dictionary.addWord(word);
+                expectedWords.add(word);
+            }
+            else {
+                dictionary.removeWord(word);
+                expectedWords.remove(word);
+            }
+        }
+
+        stop.set(true);
+        searcher.join();
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+        TestSupport.check(errorCount.get() == 0, "Inconsistent results while changing the dictionary");
+        TestSupport.check(dictionary.getCompactionFailure() == null, "Background compaction failed");
+        checkSearches(dictionary, expectedWords, queries);
+        dictionary.compact();
+        checkSearches(dictionary, expectedWords, queries);
+    }
+
+    private static void checkRejectedCompaction(List<String> words, List<String> queries) {
+        // A shut down executor rejects the compaction, which then runs inline.
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        executor.shutdown();
+        MutableDictionary dictionary = new MutableDictionary(words.subList(0, 100), MAX_ERROR,
+                                                             50, executor);
+        Set<String> expectedWords = new HashSet<String>(words.subList(0, 100));
+
+        for(String word : words.subList(100, 400)) {
+            dictionary.addWord(word);
+            expectedWords.add(word);
+        }
+
+        TestSupport.check(dictionary.getDeltaSize() < 50, "Rejected compaction did not run inline");
+        TestSupport.check(dictionary.getCompactionFailure() == null, "Inline compaction failed");
+        checkSearches(dictionary, expectedWords, queries);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        Random random = new Random(49);
+        List<String> words = TestSupport.randomWords(random, "abcdefgh", 2, 8, 4000);
+        List<String> queries = TestSupport.randomWords(random, "abcdefgh", 2, 8, 40);
+        checkSequential(words, queries, random);
+        checkConcurrent(words, queries, random);
+        checkRejectedCompaction(words, queries);
+        System.out.println("MutableDictionaryTest passed.");
+    }
+}
@@ -0,0 +1,182 @@
+// Copyright (c) 2013 Gratian Lup. All rights reserved.
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are
+// met:
+//
+// * Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+//
+// * Redistributions in binary form must reproduce the above
+// copyright notice, this list of conditions and the following
+// disclaimer in the documentation and/or other materials provided
+// with the distribution.
+//
+// * The name "FuzzyStringMatching" must not be used to endorse or promote
+// products derived from this software without prior written permission.
+//
+// * Products derived from this software may not be called "FuzzyStringMatching" nor
+// may "FuzzyStringMatching" appear in their names without prior written
+// permission of the author.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+// A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+// OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+// SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+// LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+// DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+// Checks the corrections of SpellingCorrector against a ranking of all
+// dictionary words by (frequency + 1) * p^(cost / default cost), the costs
+// being computed with LevenshteinDistance, for plain, transposition and
+// weighted costs and for relaid-out tries. The frequencies are small,
+// so that many words have equal scores. Run without arguments; exits
+// with an error on the first mismatch.
+public class SpellingCorrectorTest {
+    private static final int WORD_COUNT = 3000;
+    private static final int QUERY_COUNT = 200;
+    private static final String ALPHABET = "abcdefg";
+    private static final int[] RESULT_COUNTS = { 1, 5, 20 };
+
+    // The reference ranking: the best score first, equal scores
+    // ordered alphabetically, like SpellingCorrector does.
+    private static class Candidate {
+        public String word;
+        public int frequency;
+        public int cost;
+        public double score;
+    }
+
+    private static final Comparator<Candidate> RANKING = new Comparator<Candidate>() {
+        @Override
+        public int compare(Candidate a, Candidate b) {
+            if(a.score != b.score) {
+                return (a.score > b.score) ? -1 : 1;
+            }
+
+            return a.word.compareTo(b.word);
+        }
+    };
+
+    private static int computeCost(String word, String query, boolean transpositions,
+                                   EditCosts editCosts) {
+        if(editCosts != null) {
+            return LevenshteinDistance.computeWeightedDistance(word, query, editCosts, transpositions);
+        }
+        else if(transpositions) {
+            return LevenshteinDistance.computeDamerauDistance(word, query);
+        }
+        else return LevenshteinDistance.computeDistance(word, query);
+    }
+
+    private static List<Candidate> rankWords(List<String> words, int[] frequencies, String query,
+                                             int maxCost, boolean transpositions,
+                                             EditCosts editCosts, double editProbability) {
+        int defaultCost = (editCosts != null) ? editCosts.getDefaultCost() : 1;
+        List<Candidate> candidates = new ArrayList<Candidate>();
+
+        for(int i = 0; i < words.size(); i++) {
+            int cost = computeCost(words.get(i), query, transpositions, editCosts);
+
+            if(cost <= maxCost) {
+                Candidate candidate = new Candidate();
+                candidate.word = words.get(i);
+                candidate.frequency = frequencies[i];
+                candidate.cost = cost;
+                candidate.score = (frequencies[i] + 1.0) *
+                                  Math.pow(editProbability, (double)cost / defaultCost);
+                candidates.add(candidate);
+            }
+        }
+
+        Collections.sort(candidates, RANKING);
+        return candidates;
+    }
+
+    private static void checkCorrections(CompactTrie trie, List<String> words, int[] frequencies,
+                                         List<String> queries, int maxCost, boolean transpositions,
+                                         EditCosts editCosts, double editProbability,
+                                         String description) {
+        SpellingCorrector corrector = new SpellingCorrector(trie, maxCost, transpositions,
+                                                            editCosts, editProbability);
+
+        for(String query : queries) {
+            List<Candidate> expected = rankWords(words, frequencies, query, maxCost,
+                                                 transpositions, editCosts, editProbability);
+
+            for(int maxResults : RESULT_COUNTS) {
+                List<Correction> corrections = corrector.findCorrections(query, maxResults);
+                String queryDescription = description + ", query " + query + ", " + maxResults + " results";
+                TestSupport.check(corrections.size() == Math.min(maxResults, expected.size()),
+                                  queryDescription + ": expected " + Math.min(maxResults, expected.size()) +
+                                  " corrections, found " + corrections.size());
+
+                for(int i = 0; i < corrections.size(); i++) {
+                    Candidate candidate = expected.get(i);
+                    Correction correction = corrections.get(i);
+                    TestSupport.check(candidate.word.equals(correction.getWord()) &&
+                                      candidate.cost == correction.getCost() &&
+                                      candidate.frequency == correction.getFrequency() &&
+                                      candidate.score == correction.getScore(),
+                                      queryDescription + ": expected " + candidate.word + " at position " + i +
+                                      ", found " + correction);
+                }
+            }
+        }
+    }
+
+    private static void checkTrie(CompactTrie trie, List<String> words, int[] frequencies,
+                                  List<String> queries, String description) {
+        EditCosts editCosts = new KeyboardEditCosts();
+        checkCorrections(trie, words, frequencies, queries, 2, false, null, 0.01,
+                         description + ", plain costs");
+        checkCorrections(trie, words, frequencies, queries, 2, false, null, 0.3,
+                         description + ", plain costs, edit probability 0.3");
+        checkCorrections(trie, words, frequencies, queries, 2, true, null, 0.01,
+                         description + ", transpositions");
+        checkCorrections(trie, words, frequencies, queries, 4, false, editCosts, 0.01,
+                         description + ", keyboard costs");
+        checkCorrections(trie, words, frequencies, queries, 4, true, editCosts, 0.1,
+                         description + ", keyboard costs and transpositions");
+    }
+
+    public static void main(String[] args) {
+        Random random = new Random(40);
+        List<String> words = TestSupport.randomWords(random, ALPHABET, 1, 8, WORD_COUNT);
+        int[] frequencies = new int[words.size()];
+
+        // Mostly small frequencies with many ties, and a few large ones.
+        for(int i = 0; i < frequencies.length; i++) {
+            frequencies[i] = (random.nextInt(10) == 0) ? random.nextInt(100000) : random.nextInt(5);
+        }
+
+        List<String> queries = new ArrayList<String>();
+
+        for(int i = 0; i < QUERY_COUNT; i++) {
+            String word = words.get(random.nextInt(words.size()));
+            queries.add(TestSupport.mutate(random, ALPHABET, word, 3, true));
+        }
+
+        CompactTrie trie = new CompactTrie();
+        trie.addWords(words, frequencies, null);
+        checkTrie(trie, words, frequencies, queries, "Default layout");
+
+        for(int levels = 0; levels <= 3; levels += 3) {
+            CompactTrie relaidTrie = new CompactTrie();
+            relaidTrie.addWords(words, frequencies, null);
+            relaidTrie.relayout(levels);
+            checkTrie(relaidTrie, words, frequencies, queries, "Relayout with " + levels + " levels");
+        }
+
+        System.out.println("SpellingCorrectorTest passed.");
+    }
+}
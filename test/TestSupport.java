@@ -0,0 +1,109 @@
+// Copyright (c) 2013 Gratian Lup. All rights reserved.
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are
+// met:
+//
+// * Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+//
+// * Redistributions in binary form must reproduce the above
+// copyright notice, this list of conditions and the following
+// disclaimer in the documentation and/or other materials provided
+// with the distribution.
+//
+// * The name "FuzzyStringMatching" must not be used to endorse or promote
+// products derived from this software without prior written permission.
+//
+// * Products derived from this software may not be called "FuzzyStringMatching" nor
+// may "FuzzyStringMatching" appear in their names without prior written
+// permission of the author.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+// A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+// OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+// SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+// LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+// DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+// Helpers shared by the test programs: random words,
+// random edits of a word and the failure check.
+public class TestSupport {
+    private TestSupport() { }
+
+    public static void check(boolean condition, String message) {
+        if(!condition) {
+            throw new AssertionError(message);
+        }
+    }
+
+    public static List<String> sorted(List<String> words) {
+        List<String> sortedWords = new ArrayList<String>(words);
+        Collections.sort(sortedWords);
+        return sortedWords;
+    }
+
+    public static String randomWord(Random random, String alphabet, int length) {
+        StringBuilder builder = new StringBuilder(length);
+
+        for(int i = 0; i < length; i++) {
+            builder.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+
+        return builder.toString();
+    }
+
+    // Returns 'count' distinct words having between 'minLength'
+    // and 'maxLength' letters taken from the alphabet.
+    public static List<String> randomWords(Random random, String alphabet,
+                                           int minLength, int maxLength, int count) {
+        Set<String> words = new HashSet<String>();
+
+        while(words.size() < count) {
+            int length = minLength + random.nextInt(maxLength - minLength + 1);
+            words.add(randomWord(random, alphabet, length));
+        }
+
+        return new ArrayList<String>(words);
+    }
+
+    // Applies less than 'editLimit' random insertions, deletions and substitutions
+    // to the word, and swaps of adjacent letters too if 'transpositions' is set.
+    // The word is never left empty.
+    public static String mutate(Random random, String alphabet, String word,
+                                int editLimit, boolean transpositions) {
+        StringBuilder builder = new StringBuilder(word);
+        int editCount = random.nextInt(editLimit);
+
+        for(int i = 0; i < editCount; i++) {
+            int position = random.nextInt(builder.length() + 1);
+            char letter = alphabet.charAt(random.nextInt(alphabet.length()));
+            int edit = random.nextInt(transpositions ? 4 : 3);
+
+            if(edit == 0 || position == builder.length()) {
+                builder.insert(position, letter);
+            }
+            else if(edit == 1 && builder.length() > 1) {
+                builder.deleteCharAt(position);
+            }
+            else if(edit == 2 && transpositions && position + 1 < builder.length()) {
+                char swapped = builder.charAt(position);
+                builder.setCharAt(position, builder.charAt(position + 1));
+                builder.setCharAt(position + 1, swapped);
+            }
+            else builder.setCharAt(position, letter);
+        }
+
+        return builder.toString();
+    }
+}
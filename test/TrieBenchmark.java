@@ -0,0 +1,578 @@
+// Copyright (c) 2013 Gratian Lup. All rights reserved.
+// Redistribution and use in source and binary forms, with or without
+// modification, are permitted provided that the following conditions are
+// met:
+//
+// * Redistributions of source code must retain the above copyright
+// notice, this list of conditions and the following disclaimer.
+//
+// * Redistributions in binary form must reproduce the above
+// copyright notice, this list of conditions and the following
+// disclaimer in the documentation and/or other materials provided
+// with the distribution.
+//
+// * The name "FuzzyStringMatching" must not be used to endorse or promote
+// products derived from this software without prior written permission.
+//
+// * Products derived from this software may not be called "FuzzyStringMatching" nor
+// may "FuzzyStringMatching" appear in their names without prior written
+// permission of the author.
+//
+// THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+// "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+// LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+// A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT
+// OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+// SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT
+// LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+// DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY
+// THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+// (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+// OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Measures the trie variants and the search pruning on a generated workload:
+// a dictionary of 40000 English-like words built from syllables, and 400 queries
+// made by applying one or two random edits to dictionary words. The generator
+// uses a fixed seed, so the workload is the same on every run. The visited nodes
+// are the ones counted by FuzzyMatching.getVisitedNodeCount; the times are the best
+// of three runs of all queries. The relayout section uses 400000 words instead,
+// so that the trie does not fit in the processor caches. Run with the names of
+// the sections to measure (length, signatures, doublearray, louds, radix, storage,
+// corrections, fanout, batch, relayout), or none for all.
+public class TrieBenchmark {
+    private static final int DICTIONARY_SIZE = 40000;
+    private static final int LARGE_DICTIONARY_SIZE = 400000;
+    private static final int QUERY_COUNT = 400;
+    private static final int BATCH_QUERY_COUNT = 4000;
+    private static final int LONG_WORD_COUNT = 5000;
+    private static final int LONG_WORD_LENGTH = 25;
+    private static final int MAX_ERROR = 3;
+
+    private static final String[] ONSETS = {
+        "", "b", "c", "d", "f", "g", "h", "j", "k", "l", "m", "n", "p", "r", "s", "t", "v", "w",
+        "br", "ch", "cl", "cr", "dr", "fl", "fr", "gr", "pl", "pr", "sh", "st", "str", "th", "tr"
+    };
+    private static final String[] VOWELS = {
+        "a", "e", "i", "o", "u", "y", "ai", "ea", "ee", "io", "oo", "ou"
+    };
+    private static final String[] CODAS = {
+        "", "", "", "b", "ck", "d", "ft", "l", "ll", "m", "n", "nd", "ng", "nt", "r", "rd",
+        "s", "ss", "st", "t", "x"
+    };
+    private static final String[] SUFFIXES = {
+        "", "", "", "", "s", "ed", "er", "ing", "ly", "ness", "tion", "able"
+    };
+
+    public static List<String> generateDictionary(Random random, int wordCount) {
+        Set<String> words = new LinkedHashSet<String>();
+
+        while(words.size() < wordCount) {
+            StringBuilder builder = new StringBuilder();
+            int syllableCount = 1 + random.nextInt(3);
+
+            for(int i = 0; i < syllableCount; i++) {
+                builder.append(ONSETS[random.nextInt(ONSETS.length)]);
+                builder.append(VOWELS[random.nextInt(VOWELS.length)]);
+                builder.append(CODAS[random.nextInt(CODAS.length)]);
+            }
+
+            builder.append(SUFFIXES[random.nextInt(SUFFIXES.length)]);
+            words.add(builder.toString());
+        }
+
+        return new ArrayList<String>(words);
+    }
+
+    public static List<String> generateLongWords(Random random) {
+        Set<String> words = new LinkedHashSet<String>();
+
+        while(words.size() < LONG_WORD_COUNT) {
+            StringBuilder builder = new StringBuilder();
+
+            for(int i = 0; i < LONG_WORD_LENGTH; i++) {
+                builder.append((char)('a' + random.nextInt(12)));
+            }
+
+            words.add(builder.toString());
+        }
+
+        return new ArrayList<String>(words);
+    }
+
+    // Applies one or two random edits to random words of the dictionary.
+    public static List<String> generateQueries(Random random, List<String> words, int count) {
+        List<String> queries = new ArrayList<String>();
+
+        while(queries.size() < count) {
+            StringBuilder builder = new StringBuilder(words.get(random.nextInt(words.size())));
+            int editCount = 1 + random.nextInt(2);
+
+            for(int i = 0; i < editCount; i++) {
+                int position = random.nextInt(builder.length() + 1);
+                char letter = (char)('a' + random.nextInt(26));
+                int edit = random.nextInt(3);
+
+                if(edit == 0 || position == builder.length()) {
+                    builder.insert(position, letter);
+                }
+                else if(edit == 1 && builder.length() > 1) {
+                    builder.deleteCharAt(position);
+                }
+                else builder.setCharAt(position, letter);
+            }
+
+            queries.add(builder.toString());
+        }
+
+        return queries;
+    }
+
+    private static class Result {
+        public long matchCount;
+        public long visitedNodes;
+        public double bestTime; // In milliseconds.
+        public List<Set<String>> matches = new ArrayList<Set<String>>();
+    }
+
+    private static Result search(Trie trie, List<String> queries, int maxError) {
+        Result result = new Result();
+        result.bestTime = Double.MAX_VALUE;
+
+        for(int run = 0; run < 3; run++) {
+            FuzzyMatching matching = new FuzzyMatching(trie, maxError);
+            long startTime = System.nanoTime();
+            long matchCount = 0;
+
+            for(String query : queries) {
+                List<String> found = matching.findMatchingWords(query);
+                matchCount += found.size();
+
+                if(run == 0) {
+                    result.matches.add(new HashSet<String>(found));
+                }
+            }
+
+            result.bestTime = Math.min(result.bestTime, (System.nanoTime() - startTime) / 1.0e6);
+            result.matchCount = matchCount;
+            result.visitedNodes = matching.getVisitedNodeCount();
+        }
+
+        return result;
+    }
+
+    private static List<Set<String>> searchDP(Trie trie, List<String> queries, int maxError) {
+        TrieDistanceMatching matching = new TrieDistanceMatching(trie, maxError);
+        List<Set<String>> matches = new ArrayList<Set<String>>();
+
+        for(String query : queries) {
+            matches.add(new HashSet<String>(matching.findMatchingWords(query)));
+        }
+
+        return matches;
+    }
+
+    private static CompactTrie buildCompactTrie(List<String> words) {
+        CompactTrie trie = new CompactTrie();
+        trie.addWords(new ArrayList<String>(words));
+        return trie;
+    }
+
+    private static void print(String name, int maxError, Result result) {
+        System.out.printf("  %-28s K=%d  matches %7d  visited nodes %9d  time %8.1f ms%n",
+                          name, maxError, result.matchCount, result.visitedNodes, result.bestTime);
+    }
+
+    private static void measureLength(List<String> words, List<String> queries) {
+        // SimpleTrie has the same nodes, but no remaining lengths.
+        System.out.println("Length pruning (SimpleTrie has no length bounds):");
+        SimpleTrie simpleTrie = new SimpleTrie();
+        simpleTrie.addWords(words);
+        CompactTrie compactTrie = buildCompactTrie(words);
+
+        for(int maxError = 1; maxError <= MAX_ERROR; maxError++) {
+            Result without = search(simpleTrie, queries, maxError);
+            Result with = search(compactTrie, queries, maxError);
+            TestSupport.check(without.matches.equals(with.matches), "Length pruning changed the results");
+            print("SimpleTrie", maxError, without);
+            print("CompactTrie", maxError, with);
+        }
+    }
+
+    private static void measureSignatures(List<String> words, List<String> queries) {
+        System.out.println("Letter signatures:");
+        CompactTrie trie = buildCompactTrie(words);
+        CompactTrie signatureTrie = buildCompactTrie(words);
+        signatureTrie.buildLetterSignatures();
+
+        for(int maxError = 1; maxError <= MAX_ERROR; maxError++) {
+            Result without = search(trie, queries, maxError);
+            Result with = search(signatureTrie, queries, maxError);
+            TestSupport.check(without.matches.equals(with.matches), "Letter signatures changed the results");
+            print("CompactTrie", maxError, without);
+            print("CompactTrie with signatures", maxError, with);
+        }
+    }
+
+    private static void measureDoubleArray(List<String> words, List<String> queries)
+                                           throws IOException {
+        System.out.println("Double-array trie:");
+        CompactTrie compactTrie = buildCompactTrie(words);
+        DoubleArrayTrie doubleArrayTrie = new DoubleArrayTrie();
+        doubleArrayTrie.addWords(new ArrayList<String>(words));
+
+        // Also check a trie loaded from the saved one.
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        doubleArrayTrie.save(stream);
+        DoubleArrayTrie loadedTrie = DoubleArrayTrie.load(new ByteArrayInputStream(stream.toByteArray()));
+        System.out.println("  array size " + doubleArrayTrie.getArraySize() +
+                           ", saved size " + stream.size() + " bytes");
+
+        for(int maxError = 1; maxError <= MAX_ERROR; maxError++) {
+            Result compact = search(compactTrie, queries, maxError);
+            Result doubleArray = search(doubleArrayTrie, queries, maxError);
+            Result loaded = search(loadedTrie, queries, maxError);
+            TestSupport.check(compact.matches.equals(doubleArray.matches) && compact.matches.equals(loaded.matches),
+                              "Double-array trie results differ");
+            TestSupport.check(searchDP(compactTrie, queries, maxError).equals(searchDP(doubleArrayTrie, queries, maxError)),
+                              "Double-array trie DP results differ");
+            print("CompactTrie", maxError, compact);
+            print("DoubleArrayTrie", maxError, doubleArray);
+        }
+    }
+
+    private static void measureLouds(List<String> words, List<String> queries) {
+        System.out.println("LOUDS trie:");
+        CompactTrie compactTrie = buildCompactTrie(words);
+        LoudsTrie loudsTrie = new LoudsTrie();
+        loudsTrie.addWords(new ArrayList<String>(words));
+        int nodeCount = compactTrie.getNodeCount();
+        System.out.printf("  %d nodes, CompactTrie %.2f bytes per node, LoudsTrie %.2f bytes per node%n",
+                          nodeCount, (double)compactTrie.getStorage().getSizeInBytes() / nodeCount,
+                          (double)loudsTrie.getSizeInBytes() / loudsTrie.getNodeCount());
+
+        for(int maxError = 1; maxError <= MAX_ERROR; maxError++) {
+            Result compact = search(compactTrie, queries, maxError);
+            Result louds = search(loudsTrie, queries, maxError);
+            TestSupport.check(compact.matches.equals(louds.matches), "LOUDS trie results differ");
+            print("CompactTrie", maxError, compact);
+            print("LoudsTrie", maxError, louds);
+        }
+    }
+
+    private static void measureRadix(List<String> words, List<String> queries,
+                                     List<String> longWords, List<String> longQueries) {
+        System.out.println("Radix trie:");
+        CompactTrie compactTrie = buildCompactTrie(words);
+        CompactRadixTrie radixTrie = new CompactRadixTrie();
+        radixTrie.addWords(new ArrayList<String>(words));
+        System.out.println("  nodes: CompactTrie " + compactTrie.getNodeCount() +
+                           ", CompactRadixTrie " + radixTrie.getNodeCount());
+
+        for(int maxError = 1; maxError <= MAX_ERROR; maxError++) {
+            Result compact = search(compactTrie, queries, maxError);
+            Result radix = search(radixTrie, queries, maxError);
+            TestSupport.check(compact.matches.equals(radix.matches), "Radix trie results differ");
+            print("CompactTrie", maxError, compact);
+            print("CompactRadixTrie", maxError, radix);
+        }
+
+        System.out.println("Radix trie, " + LONG_WORD_COUNT + " words of " +
+                           LONG_WORD_LENGTH + " letters:");
+        CompactTrie longCompactTrie = buildCompactTrie(longWords);
+        CompactRadixTrie longRadixTrie = new CompactRadixTrie();
+        longRadixTrie.addWords(new ArrayList<String>(longWords));
+        Result compact = search(longCompactTrie, longQueries, MAX_ERROR);
+        Result radix = search(longRadixTrie, longQueries, MAX_ERROR);
+        TestSupport.check(compact.matches.equals(radix.matches), "Radix trie results differ");
+        print("CompactTrie", MAX_ERROR, compact);
+        print("CompactRadixTrie", MAX_ERROR, radix);
+    }
+
+    private static void measureStorage(List<String> words, List<String> queries) {
+        System.out.println("CompactTrie storage:");
+        CompactTrie heapTrie = buildCompactTrie(words);
+        CompactTrie offHeapTrie = new CompactTrie(new OffHeapCompactTrieStorage());
+        offHeapTrie.addWords(new ArrayList<String>(words));
+        System.out.println("  heap storage " + heapTrie.getStorage().getSizeInBytes() +
+                           " bytes of heap arrays, off-heap storage " +
+                           offHeapTrie.getStorage().getSizeInBytes() + " bytes of direct buffers");
+
+        for(int maxError = 1; maxError <= MAX_ERROR; maxError++) {
+            Result heap = search(heapTrie, queries, maxError);
+            Result offHeap = search(offHeapTrie, queries, maxError);
+            TestSupport.check(heap.matches.equals(offHeap.matches) && heap.visitedNodes == offHeap.visitedNodes,
+                              "Off-heap storage results differ");
+            print("heap storage", maxError, heap);
+            print("off-heap storage", maxError, offHeap);
+        }
+    }
+
+    private static void measureBatch(List<String> words, List<String> queries) {
+        int threadCount = Runtime.getRuntime().availableProcessors();
+        System.out.println("Batch search, " + queries.size() + " queries, executor with " +
+                           threadCount + " threads:");
+        CompactTrie trie = buildCompactTrie(words);
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+
+        try {
+            for(int maxError = 1; maxError <= 2; maxError++) {
+                FuzzyMatching matching = new FuzzyMatching(trie, maxError);
+                double loopTime = Double.MAX_VALUE;
+                double batchTime = Double.MAX_VALUE;
+                double executorTime = Double.MAX_VALUE;
+                List<List<String>> loopResults = null;
+
+                for(int run = 0; run < 3; run++) {
+                    long startTime = System.nanoTime();
+                    loopResults = new ArrayList<List<String>>();
+
+                    for(String query : queries) {
+                        loopResults.add(matching.findMatchingWords(query));
+                    }
+
+                    loopTime = Math.min(loopTime, (System.nanoTime() - startTime) / 1.0e6);
+                    startTime = System.nanoTime();
+                    List<List<String>> batchResults = matching.findMatchingWordsBatch(queries);
+                    batchTime = Math.min(batchTime, (System.nanoTime() - startTime) / 1.0e6);
+                    startTime = System.nanoTime();
+                    List<List<String>> executorResults = matching.findMatchingWordsBatch(queries, executor);
+                    executorTime = Math.min(executorTime, (System.nanoTime() - startTime) / 1.0e6);
+
+                    for(int i = 0; i < queries.size(); i++) {
+                        Set<String> expected = new HashSet<String>(loopResults.get(i));
+                        TestSupport.check(expected.equals(new HashSet<String>(batchResults.get(i))) &&
+                                          expected.equals(new HashSet<String>(executorResults.get(i))),
+                                          "Batch results differ");
+                    }
+                }
+
+                System.out.printf("  K=%d  loop %8.1f ms  batch %8.1f ms  batch with executor %8.1f ms%n",
+                                  maxError, loopTime, batchTime, executorTime);
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    private static void measureCorrections(List<String> words, List<String> queries) {
+        // Zipf-like frequencies, in the order of the generated words.
+        int[] frequencies = new int[words.size()];
+
+        for(int i = 0; i < frequencies.length; i++) {
+            frequencies[i] = 1000000 / (i + 1);
+        }
+
+        CompactTrie trie = new CompactTrie();
+        trie.addWords(words, frequencies, null);
+        System.out.println("Spelling corrections, 5 best:");
+
+        for(int maxCost = 1; maxCost <= MAX_ERROR; maxCost++) {
+            SpellingCorrector corrector = new SpellingCorrector(trie, maxCost);
+            double prunedTime = Double.MAX_VALUE;
+            double unprunedTime = Double.MAX_VALUE;
+
+            for(int run = 0; run < 3; run++) {
+                List<List<Correction>> pruned = new ArrayList<List<Correction>>();
+                long startTime = System.nanoTime();
+
+                for(String query : queries) {
+                    pruned.add(corrector.findCorrections(query, 5));
+                }
+
+                prunedTime = Math.min(prunedTime, (System.nanoTime() - startTime) / 1.0e6);
+
+                // Asking for all words disables the pruning, since the list is never full.
+                List<List<Correction>> unpruned = new ArrayList<List<Correction>>();
+                startTime = System.nanoTime();
+
+                for(String query : queries) {
+                    List<Correction> corrections = corrector.findCorrections(query, words.size());
+                    unpruned.add(corrections.subList(0, Math.min(5, corrections.size())));
+                }
+
+                unprunedTime = Math.min(unprunedTime, (System.nanoTime() - startTime) / 1.0e6);
+                TestSupport.check(pruned.toString().equals(unpruned.toString()), "Pruning changed the corrections");
+            }
+
+            System.out.printf("  K=%d  pruned %8.1f ms  unpruned %8.1f ms%n",
+                              maxCost, prunedTime, unprunedTime);
+        }
+    }
+
+    private static void measureFanout() {
+        // 8000 CJK characters as words, so that the root has 8000 children,
+        // and 8000 words of two of them, with Zipf-like frequencies.
+        Random random = new Random(47);
+        Set<String> wordSet = new LinkedHashSet<String>();
+
+        for(int i = 0; i < 8000; i++) {
+            wordSet.add(String.valueOf((char)(0x4E00 + i)));
+        }
+
+        while(wordSet.size() < 16000) {
+            wordSet.add(new String(new char[] { (char)(0x4E00 + random.nextInt(8000)),
+                                                (char)(0x4E00 + random.nextInt(8000)) }));
+        }
+
+        List<String> words = new ArrayList<String>(wordSet);
+        Collections.shuffle(words, random);
+        int[] frequencies = new int[words.size()];
+
+        for(int i = 0; i < frequencies.length; i++) {
+            frequencies[i] = 1000000 / (i + 1);
+        }
+
+        // Two-letter words with one letter replaced.
+        List<String> queries = new ArrayList<String>();
+
+        while(queries.size() < QUERY_COUNT) {
+            String word = words.get(random.nextInt(words.size()));
+
+            if(word.length() == 2) {
+                queries.add(word.charAt(0) + String.valueOf((char)(0x4E00 + random.nextInt(8000))));
+            }
+        }
+
+        CompactTrie trie = new CompactTrie();
+        trie.addWords(words, frequencies, null);
+        SpellingCorrector corrector = new SpellingCorrector(trie, 1);
+        FuzzyMatching matching = new FuzzyMatching(trie, 1);
+        double correctionTime = Double.MAX_VALUE;
+        double matchingTime = Double.MAX_VALUE;
+
+        for(int run = 0; run < 3; run++) {
+            long startTime = System.nanoTime();
+
+            for(String query : queries) {
+                corrector.findCorrections(query, 5);
+            }
+
+            correctionTime = Math.min(correctionTime, (System.nanoTime() - startTime) / 1.0e6);
+            startTime = System.nanoTime();
+
+            for(String query : queries) {
+                matching.findMatchingWords(query);
+            }
+
+            matchingTime = Math.min(matchingTime, (System.nanoTime() - startTime) / 1.0e6);
+        }
+
+        System.out.println("Wide root, " + trie.getChildrenCount(0) + " children, " +
+                           queries.size() + " queries, K=1:");
+        System.out.printf("  5 best corrections %8.1f ms  matching words %8.1f ms%n",
+                          correctionTime, matchingTime);
+    }
+
+    // Returns the best time of three lookups of all words, in milliseconds.
+    private static double measureLookups(CompactTrie trie, List<String> words) {
+        double bestTime = Double.MAX_VALUE;
+
+        for(int run = 0; run < 3; run++) {
+            long startTime = System.nanoTime();
+
+            for(String word : words) {
+                TestSupport.check(trie.findNode(word) != -1, "Word " + word + " not found");
+            }
+
+            bestTime = Math.min(bestTime, (System.nanoTime() - startTime) / 1.0e6);
+        }
+
+        return bestTime;
+    }
+
+    private static void measureRelayout() {
+        // A larger dictionary, so that the trie does not fit in the processor caches.
+        Random random = new Random(48);
+        List<String> words = generateDictionary(random, LARGE_DICTIONARY_SIZE);
+        List<String> queries = generateQueries(random, words, QUERY_COUNT);
+        System.out.println("CompactTrie relayout, " + LARGE_DICTIONARY_SIZE + " words, K=2:");
+        Result expected = null;
+
+        for(int levels = -1; levels <= 5; levels++) {
+            CompactTrie trie = buildCompactTrie(words);
+
+            if(levels >= 0) {
+                trie.relayout(levels);
+            }
+
+            Result result = search(trie, queries, 2);
+            double lookupTime = measureLookups(trie, words);
+
+            if(expected == null) {
+                expected = result;
+            }
+
+            TestSupport.check(expected.matches.equals(result.matches) && expected.visitedNodes == result.visitedNodes,
+                              "Relayout changed the results");
+            System.out.printf("  %-28s visited nodes per second %9.0f  lookups %7.1f ms%n",
+                              (levels < 0) ? "default layout" : "relayout(" + levels + ")",
+                              result.visitedNodes / (result.bestTime / 1000), lookupTime);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        Random random = new Random(41);
+        List<String> words = generateDictionary(random, DICTIONARY_SIZE);
+        List<String> queries = generateQueries(random, words, QUERY_COUNT);
+        List<String> longWords = generateLongWords(random);
+        List<String> longQueries = generateQueries(random, longWords, QUERY_COUNT / 4);
+        Set<String> sections = new HashSet<String>();
+
+        for(String arg : args) {
+            sections.add(arg);
+        }
+
+        if(sections.isEmpty() || sections.contains("length")) {
+            measureLength(words, queries);
+        }
+
+        if(sections.isEmpty() || sections.contains("signatures")) {
+            measureSignatures(words, queries);
+        }
+
+        if(sections.isEmpty() || sections.contains("doublearray")) {
+            measureDoubleArray(words, queries);
+        }
+
+        if(sections.isEmpty() || sections.contains("louds")) {
+            measureLouds(words, queries);
+        }
+
+        if(sections.isEmpty() || sections.contains("radix")) {
+            measureRadix(words, queries, longWords, longQueries);
+        }
+
+        if(sections.isEmpty() || sections.contains("storage")) {
+            measureStorage(words, queries);
+        }
+
+        if(sections.isEmpty() || sections.contains("corrections")) {
+            measureCorrections(words, queries);
+        }
+
+        if(sections.isEmpty() || sections.contains("fanout")) {
+            measureFanout();
+        }
+
+        if(sections.isEmpty() || sections.contains("batch")) {
+            measureBatch(words, generateQueries(random, words, BATCH_QUERY_COUNT));
+        }
+
+        if(sections.isEmpty() || sections.contains("relayout")) {
+            measureRelayout();
+        }
+    }
+}